@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link AttributedString} column computations performed on every redisplay.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AttributedStringBenchmark {
+
+    @Param({"80", "1024", "16384"})
+    public int bufferSize;
+
+    @Param({"80"})
+    public int columns;
+
+    private AttributedString singleLine;
+    private AttributedString multiLine;
+    private String ansi;
+
+    @Setup
+    public void setup() {
+        AttributedStringBuilder sb = new AttributedStringBuilder();
+        while (sb.length() < bufferSize) {
+            sb.append(BenchmarkSupport.styledLine(Math.min(columns, bufferSize - sb.length()), sb.length()));
+        }
+        singleLine = sb.toAttributedString();
+        sb.setLength(0);
+        int seed = 0;
+        while (sb.length() < bufferSize) {
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            sb.append(BenchmarkSupport.styledLine(Math.min(columns / 2, bufferSize - sb.length()), seed++));
+        }
+        multiLine = sb.toAttributedString();
+        ansi = multiLine.toAnsi();
+    }
+
+    @Benchmark
+    public List<AttributedString> columnSplitLength() {
+        return singleLine.columnSplitLength(columns);
+    }
+
+    @Benchmark
+    public List<AttributedString> columnSplitLengthWithNewlines() {
+        return multiLine.columnSplitLength(columns, true, false);
+    }
+
+    @Benchmark
+    public int columnLength() {
+        return multiLine.columnLength();
+    }
+
+    @Benchmark
+    public AttributedString fromAnsi() {
+        return AttributedString.fromAnsi(ansi);
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.benchmarks;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compare two JMH reports written in CSV format ({@code -rf csv}).
+ * <p>
+ * Results are matched on the benchmark name and parameters. For each
+ * benchmark present in both reports, the relative change is printed and
+ * flagged when it is worse than the given threshold, taking into account
+ * whether higher scores are better (throughput) or worse (time based modes).
+ * </p>
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar org.jline.benchmarks.BenchmarkComparison \
+ *      baseline-3.18.0.csv current.csv [threshold-percent]
+ * </pre>
+ * The process exits with a non zero status if at least one regression is found.
+ */
+public class BenchmarkComparison {
+
+    public static final double DEFAULT_THRESHOLD = 10.0;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("usage: BenchmarkComparison <baseline.csv> <current.csv> [threshold-percent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+        Map<String, Result> baseline = read(Paths.get(args[0]));
+        Map<String, Result> current = read(Paths.get(args[1]));
+        int regressions = compare(baseline, current, threshold, System.out);
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    /**
+     * Print the comparison of both reports and return the number of regressions.
+     */
+    static int compare(Map<String, Result> baseline, Map<String, Result> current,
+                       double threshold, PrintStream out) {
+        int regressions = 0;
+        out.println(String.format(Locale.ROOT, "%-80s %14s %14s %8s %s",
+                "Benchmark", "Baseline", "Current", "Change", "Unit"));
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result cur = entry.getValue();
+            Result base = baseline.get(entry.getKey());
+            if (base == null) {
+                out.println(String.format(Locale.ROOT, "%-80s %14s %14.3f %8s %s",
+                        entry.getKey(), "-", cur.score, "new", cur.unit));
+                continue;
+            }
+            double change = base.score != 0 ? (cur.score - base.score) * 100.0 / base.score : 0;
+            boolean worse = cur.higherIsBetter() ? change < -threshold : change > threshold;
+            if (worse) {
+                regressions++;
+            }
+            out.println(String.format(Locale.ROOT, "%-80s %14.3f %14.3f %+7.1f%% %s%s",
+                    entry.getKey(), base.score, cur.score, change, cur.unit, worse ? "  REGRESSION" : ""));
+        }
+        out.println(String.format(Locale.ROOT, "%d regression(s) above %.1f%%", regressions, threshold));
+        return regressions;
+    }
+
+    /**
+     * Read a JMH CSV report, keyed by benchmark name and parameters.
+     */
+    static Map<String, Result> read(Path file) throws IOException {
+        Map<String, Result> results = new LinkedHashMap<>();
+        List<String> lines = Files.readAllLines(file);
+        if (lines.isEmpty()) {
+            return results;
+        }
+        List<String> header = split(lines.get(0));
+        int benchmark = header.indexOf("Benchmark");
+        int mode = header.indexOf("Mode");
+        int score = header.indexOf("Score");
+        int unit = header.indexOf("Unit");
+        if (benchmark < 0 || mode < 0 || score < 0 || unit < 0) {
+            throw new IOException("Not a JMH CSV report: " + file);
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            List<String> cols = split(line);
+            StringBuilder key = new StringBuilder(cols.get(benchmark));
+            for (int i = 0; i < header.size() && i < cols.size(); i++) {
+                if (header.get(i).startsWith("Param: ") && !cols.get(i).isEmpty()) {
+                    key.append(' ').append(header.get(i).substring(7)).append('=').append(cols.get(i));
+                }
+            }
+            results.put(key.toString(), new Result(cols.get(mode),
+                    Double.parseDouble(cols.get(score)), cols.get(unit)));
+        }
+        return results;
+    }
+
+    private static List<String> split(String line) {
+        List<String> cols = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    sb.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                cols.add(sb.toString());
+                sb.setLength(0);
+            } else {
+                sb.append(c);
+            }
+        }
+        cols.add(sb.toString());
+        return cols;
+    }
+
+    static class Result {
+        final String mode;
+        final double score;
+        final String unit;
+
+        Result(String mode, double score, String unit) {
+            this.mode = mode;
+            this.score = score;
+            this.unit = unit;
+        }
+
+        boolean higherIsBetter() {
+            return "thrpt".equals(mode);
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jline.terminal.Size;
+import org.jline.terminal.Terminal;
+import org.jline.terminal.impl.DumbTerminal;
+import org.jline.terminal.impl.LineDisciplineTerminal;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+
+/**
+ * Headless terminals and synthetic data shared by the benchmarks.
+ * <p>
+ * All terminals created here discard their output so that the
+ * measurements only account for the work done by JLine itself.
+ * </p>
+ */
+final class BenchmarkSupport {
+
+    /**
+     * The terminal type used for capability lookups.
+     */
+    static final String TERMINAL_TYPE = "xterm-256color";
+
+    private static final String[] WORDS = {
+            "git", "status", "commit", "--amend", "-m", "ls", "-la", "/usr/local/bin",
+            "grep", "-rn", "\"pattern\"", "src/main/java", "mvn", "clean", "install",
+            "echo", "$HOME", "|", "sort", "uniq", "-c", "日本語", "tail", "-f", "build.log"
+    };
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Create a {@link LineDisciplineTerminal} with the given size whose output is discarded.
+     */
+    static LineDisciplineTerminal lineDisciplineTerminal(int columns, int rows) throws IOException {
+        LineDisciplineTerminal terminal = new LineDisciplineTerminal(
+                "benchmark", TERMINAL_TYPE, new NullOutputStream(), StandardCharsets.UTF_8);
+        terminal.setSize(new Size(columns, rows));
+        return terminal;
+    }
+
+    /**
+     * Create a {@link DumbTerminal} with the given size whose output is discarded.
+     */
+    static Terminal dumbTerminal(int columns, int rows) throws IOException {
+        Terminal terminal = new DumbTerminal("benchmark", Terminal.TYPE_DUMB,
+                new ByteArrayInputStream(new byte[0]), new NullOutputStream(), StandardCharsets.UTF_8);
+        terminal.setSize(new Size(columns, rows));
+        return terminal;
+    }
+
+    /**
+     * Build a command-line like string of approximately the given length.
+     * The content is deterministic for a given seed.
+     */
+    static String commandLine(int length, int seed) {
+        StringBuilder sb = new StringBuilder(length + 16);
+        int i = seed;
+        while (sb.length() < length) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[Math.abs(i * 31 + 7) % WORDS.length]);
+            i++;
+        }
+        sb.setLength(length);
+        return sb.toString();
+    }
+
+    /**
+     * Build a multi-line buffer of approximately the given length,
+     * with lines of at most {@code lineLength} characters.
+     */
+    static String multiLine(int length, int lineLength) {
+        StringBuilder sb = new StringBuilder(length + 16);
+        int seed = 0;
+        while (sb.length() < length) {
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            sb.append(commandLine(Math.min(lineLength, length - sb.length()), seed++));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Build a styled line mixing several foreground colors and attributes,
+     * padded to exactly the given number of columns.
+     */
+    static AttributedString styledLine(int columns, int seed) {
+        AttributedStringBuilder sb = new AttributedStringBuilder();
+        String text = commandLine(columns, seed);
+        int start = 0;
+        int color = seed;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i == text.length() || text.charAt(i) == ' ') {
+                AttributedStyle style = AttributedStyle.DEFAULT.foreground(color++ % 8);
+                if ((color & 3) == 0) {
+                    style = style.bold();
+                }
+                sb.styled(style, text.substring(start, i));
+                if (i < text.length()) {
+                    sb.append(' ');
+                }
+                start = i + 1;
+            }
+        }
+        AttributedString line = sb.toAttributedString().columnSubSequence(0, columns);
+        if (line.columnLength() < columns) {
+            sb.setLength(0);
+            sb.append(line);
+            while (sb.columnLength() < columns) {
+                sb.append(' ');
+            }
+            line = sb.toAttributedString();
+        }
+        return line;
+    }
+
+    /**
+     * Build a full screen of styled lines.
+     */
+    static List<AttributedString> screen(int rows, int columns, int seed) {
+        List<AttributedString> lines = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            lines.add(styledLine(columns, seed + i));
+        }
+        return lines;
+    }
+
+    /**
+     * An output stream discarding everything written to it.
+     */
+    static class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+}
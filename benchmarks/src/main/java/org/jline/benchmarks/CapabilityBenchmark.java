@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jline.terminal.Terminal;
+import org.jline.utils.InfoCmp.Capability;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Terminal#puts} of the parameterized capabilities used when moving the cursor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CapabilityBenchmark {
+
+    private Terminal terminal;
+    private int counter;
+
+    @Setup
+    public void setup() throws IOException {
+        terminal = BenchmarkSupport.lineDisciplineTerminal(120, 40);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        terminal.close();
+    }
+
+    @Benchmark
+    public boolean cursorAddress() {
+        int n = counter++ & 63;
+        return terminal.puts(Capability.cursor_address, n, n + 1);
+    }
+
+    @Benchmark
+    public boolean parmRightCursor() {
+        return terminal.puts(Capability.parm_right_cursor, (counter++ & 63) + 1);
+    }
+
+    @Benchmark
+    public boolean setAForeground() {
+        return terminal.puts(Capability.set_a_foreground, counter++ & 255);
+    }
+
+}
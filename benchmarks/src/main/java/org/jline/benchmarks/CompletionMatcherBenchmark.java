@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.jline.reader.Candidate;
+import org.jline.reader.CompletingParsedLine;
+import org.jline.reader.LineReader;
+import org.jline.reader.Parser.ParseContext;
+import org.jline.reader.impl.CompletionMatcherImpl;
+import org.jline.reader.impl.DefaultParser;
+import org.jline.reader.impl.LineReaderImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link CompletionMatcherImpl#matches(List)} against large static vocabularies.
+ * <p>
+ * The {@code prefix} word matches a handful of candidates, the {@code typo}
+ * word only matches through the typo matcher, which is the worst case.
+ * The matcher indexes the candidates on first use, {@code matchesNewMatcher}
+ * includes the cost of building that index.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompletionMatcherBenchmark {
+
+    @Param({"100", "10000", "50000"})
+    public int candidateCount;
+
+    @Param({"prefix", "typo"})
+    public String query;
+
+    private final Map<LineReader.Option, Boolean> options = new HashMap<>();
+    private List<Candidate> candidates;
+    private CompletingParsedLine line;
+    private CompletionMatcherImpl matcher;
+
+    @Setup
+    public void setup() {
+        candidates = new ArrayList<>(candidateCount);
+        for (int i = 0; i < candidateCount; i++) {
+            String value = BenchmarkSupport.commandLine(12, i).replace(' ', '-') + i;
+            candidates.add(new Candidate(value));
+        }
+        String word = "prefix".equals(query)
+                ? candidates.get(candidateCount / 2).value().substring(0, 8)
+                : "zzcommitx";
+        line = (CompletingParsedLine) new DefaultParser().parse(word, word.length(), ParseContext.COMPLETE);
+        matcher = new CompletionMatcherImpl();
+    }
+
+    @Benchmark
+    public List<Candidate> matches() {
+        matcher.compile(options, false, line, false, LineReaderImpl.DEFAULT_ERRORS,
+                LineReaderImpl.DEFAULT_ORIGINAL_GROUP_NAME);
+        return matcher.matches(candidates);
+    }
+
+    @Benchmark
+    public List<Candidate> matchesCaseInsensitive() {
+        matcher.compile(options, false, line, true, LineReaderImpl.DEFAULT_ERRORS,
+                LineReaderImpl.DEFAULT_ORIGINAL_GROUP_NAME);
+        return matcher.matches(candidates);
+    }
+
+    @Benchmark
+    public List<Candidate> matchesNewMatcher() {
+        CompletionMatcherImpl matcher = new CompletionMatcherImpl();
+        matcher.compile(options, false, line, false, LineReaderImpl.DEFAULT_ERRORS,
+                LineReaderImpl.DEFAULT_ORIGINAL_GROUP_NAME);
+        return matcher.matches(candidates);
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jline.terminal.Terminal;
+import org.jline.utils.AttributedString;
+import org.jline.utils.Display;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full screen {@link Display#update(List, int, boolean)} as used by
+ * {@code Nano}, {@code Less} and {@code Tmux}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DisplayBenchmark {
+
+    @Param({"24", "80"})
+    public int rows;
+
+    @Param({"80", "200"})
+    public int columns;
+
+    private Terminal terminal;
+    private Display display;
+    private List<AttributedString> screen;
+    private List<AttributedString> oneLineChanged;
+    private List<AttributedString> otherScreen;
+    private BitSet dirtyRows;
+    private boolean toggle;
+
+    @Setup
+    public void setup() throws IOException {
+        terminal = BenchmarkSupport.lineDisciplineTerminal(columns, rows);
+        display = new Display(terminal, true);
+        display.resize(rows, columns);
+        screen = BenchmarkSupport.screen(rows, columns, 0);
+        oneLineChanged = new ArrayList<>(screen);
+        oneLineChanged.set(rows / 2, BenchmarkSupport.styledLine(columns, rows * 7));
+        otherScreen = BenchmarkSupport.screen(rows, columns, rows);
+        dirtyRows = new BitSet();
+        dirtyRows.set(rows / 2);
+        display.update(screen, 0, true);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        terminal.close();
+    }
+
+    @Benchmark
+    public void unchanged() {
+        display.update(screen, 0, true);
+    }
+
+    @Benchmark
+    public void singleLineChanged() {
+        toggle = !toggle;
+        display.update(toggle ? oneLineChanged : screen, 0, true);
+    }
+
+    @Benchmark
+    public void singleLineChangedDirtyRows() {
+        toggle = !toggle;
+        display.update(toggle ? oneLineChanged : screen, 0, true, dirtyRows);
+    }
+
+    @Benchmark
+    public void fullRepaint() {
+        toggle = !toggle;
+        display.update(toggle ? otherScreen : screen, 0, true);
+    }
+
+}
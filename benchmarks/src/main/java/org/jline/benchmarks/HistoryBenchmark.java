@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.benchmarks;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.jline.reader.History;
+import org.jline.reader.LineReader;
+import org.jline.reader.impl.LineReaderImpl;
+import org.jline.reader.impl.history.DefaultHistory;
+import org.jline.terminal.Terminal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * In-memory {@link DefaultHistory} operations: adding with eviction,
+ * indexed access and the backward scans used by history search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int historySize;
+
+    private Terminal terminal;
+    private History history;
+    private String[] lines;
+    private int counter;
+
+    @Setup
+    public void setup() throws IOException {
+        terminal = BenchmarkSupport.dumbTerminal(120, 40);
+        LineReader reader = new LineReaderImpl(terminal, "benchmark");
+        reader.setVariable(LineReader.HISTORY_SIZE, historySize);
+        history = new DefaultHistory(reader);
+        lines = new String[1024];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = BenchmarkSupport.commandLine(40, i);
+        }
+        Instant now = Instant.now();
+        for (int i = 0; i < historySize; i++) {
+            history.add(now, lines[i % lines.length] + " " + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        terminal.close();
+    }
+
+    @Benchmark
+    public int add() {
+        history.add(Instant.now(), lines[counter++ & (lines.length - 1)]);
+        return history.size();
+    }
+
+    @Benchmark
+    public String getMiddle() {
+        return history.get(history.first() + history.size() / 2);
+    }
+
+    @Benchmark
+    public String moveToMiddle() {
+        history.moveTo(history.first() + history.size() / 2);
+        return history.current();
+    }
+
+    @Benchmark
+    public void reverseIterateFromMiddle(Blackhole blackhole) {
+        Iterator<History.Entry> it = history.reverseIterator(history.first() + history.size() / 2);
+        for (int i = 0; i < 100 && it.hasNext(); i++) {
+            blackhole.consume(it.next());
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.jline.reader.History;
+import org.jline.reader.LineReader;
+import org.jline.reader.impl.LineReaderImpl;
+import org.jline.reader.impl.history.DefaultHistory;
+import org.jline.reader.impl.history.MappedHistory;
+import org.jline.terminal.Terminal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading a {@link DefaultHistory} or a {@link MappedHistory} from disk,
+ * as done when every shell starts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryFileBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int historySize;
+
+    private Terminal terminal;
+    private Path file;
+    private Path binaryFile;
+    private LineReader fileReader;
+    private LineReader plainReader;
+    private History history;
+    private History mappedHistory;
+
+    @Setup
+    public void setup() throws IOException {
+        terminal = BenchmarkSupport.dumbTerminal(120, 40);
+        file = Files.createTempFile("jline-history", ".txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < historySize; i++) {
+                // one line out of four is a duplicate
+                int id = (i & 3) == 0 ? i / 2 : i;
+                writer.append(Long.toString(1600000000000L + i)).append(':')
+                        .append(BenchmarkSupport.commandLine(40, i)).append(' ')
+                        .append(Integer.toString(id)).append('\n');
+            }
+        }
+        fileReader = new LineReaderImpl(terminal, "benchmark");
+        fileReader.setVariable(LineReader.HISTORY_SIZE, historySize);
+        fileReader.setVariable(LineReader.HISTORY_FILE_SIZE, historySize);
+        fileReader.setVariable(LineReader.HISTORY_FILE, file);
+        plainReader = new LineReaderImpl(terminal, "benchmark");
+        plainReader.setVariable(LineReader.HISTORY_SIZE, historySize);
+        history = new DefaultHistory(fileReader);
+        binaryFile = Files.createTempFile("jline-history", ".bin");
+        MappedHistory.convert(file, binaryFile, true);
+        LineReader mappedReader = new LineReaderImpl(terminal, "benchmark");
+        mappedReader.setVariable(LineReader.HISTORY_SIZE, historySize);
+        mappedReader.setVariable(LineReader.HISTORY_FILE_SIZE, historySize * 2);
+        mappedReader.setVariable(LineReader.HISTORY_FILE, binaryFile);
+        mappedHistory = new MappedHistory(mappedReader);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        terminal.close();
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(binaryFile);
+        Files.deleteIfExists(binaryFile.resolveSibling(binaryFile.getFileName() + ".idx"));
+    }
+
+    @Benchmark
+    public int load() throws IOException {
+        history.load();
+        return history.size();
+    }
+
+    @Benchmark
+    public String loadMapped() throws IOException {
+        mappedHistory.load();
+        return mappedHistory.get(mappedHistory.last());
+    }
+
+    @Benchmark
+    public int readDeduplicated() throws IOException {
+        History h = new DefaultHistory(plainReader);
+        h.read(file, true);
+        return h.size();
+    }
+
+}
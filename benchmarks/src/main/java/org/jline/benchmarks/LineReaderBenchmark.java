@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jline.reader.LineReader;
+import org.jline.reader.impl.LineReaderImpl;
+import org.jline.terminal.Terminal;
+import org.jline.utils.AttributedString;
+import org.jline.utils.Display;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link LineReaderImpl#redisplay()} on single and multi-line buffers,
+ * which is what every widget invocation ends with.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineReaderBenchmark {
+
+    @Param({"64", "1024", "16384"})
+    public int bufferSize;
+
+    @Param({"false", "true"})
+    public boolean multiLine;
+
+    @Param({"lineDiscipline", "dumb"})
+    public String terminalType;
+
+    private Terminal terminal;
+    private BenchmarkLineReader reader;
+
+    @Setup
+    public void setup() throws IOException {
+        terminal = "dumb".equals(terminalType)
+                ? BenchmarkSupport.dumbTerminal(120, 40)
+                : BenchmarkSupport.lineDisciplineTerminal(120, 40);
+        reader = new BenchmarkLineReader(terminal);
+        reader.setVariable(LineReader.FEATURES_MAX_BUFFER_SIZE, Integer.MAX_VALUE);
+        String text = multiLine
+                ? BenchmarkSupport.multiLine(bufferSize, 60)
+                : BenchmarkSupport.commandLine(bufferSize, 0);
+        reader.start(new AttributedString("prompt> "), text);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        terminal.close();
+    }
+
+    @Benchmark
+    public boolean redisplayUnchanged() {
+        return reader.redisplay();
+    }
+
+    @Benchmark
+    public boolean insertAndRedisplay() {
+        reader.getBuffer().write('x');
+        reader.redisplay();
+        reader.getBuffer().backspace();
+        return reader.redisplay();
+    }
+
+    /**
+     * Exposes the display setup normally done by {@code readLine} so that
+     * the redisplay path can be driven without an input thread.
+     */
+    static class BenchmarkLineReader extends LineReaderImpl {
+
+        BenchmarkLineReader(Terminal terminal) throws IOException {
+            super(terminal, "benchmark");
+        }
+
+        void start(AttributedString prompt, String text) {
+            size.copy(terminal.getBufferSize());
+            display = new Display(terminal, false);
+            display.resize(size.getRows(), size.getColumns());
+            this.prompt = prompt;
+            buf.clear();
+            buf.write(text);
+            redisplay();
+        }
+    }
+
+}
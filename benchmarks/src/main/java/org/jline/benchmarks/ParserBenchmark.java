@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jline.reader.ParsedLine;
+import org.jline.reader.Parser.ParseContext;
+import org.jline.reader.impl.DefaultParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link DefaultParser#parse(String, int, ParseContext)} of a multi-line buffer
+ * edited at its end, as done on each keystroke, with and without the
+ * incremental mode.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int bufferSize;
+
+    private final String[] buffers = new String[2];
+    private DefaultParser parser;
+    private DefaultParser incrementalParser;
+    private int keystroke;
+
+    @Setup
+    public void setup() {
+        // lines are truncated, and could leave a quote open until the end of the buffer
+        String text = BenchmarkSupport.multiLine(bufferSize, 80).replace("\"", "");
+        // two successive states of the buffer, while typing at its end
+        buffers[0] = text + " fo";
+        buffers[1] = text + " foo";
+        parser = new DefaultParser();
+        incrementalParser = new DefaultParser().incremental(true);
+    }
+
+    @Benchmark
+    public ParsedLine parse() {
+        String buffer = buffers[keystroke++ & 1];
+        return parser.parse(buffer, buffer.length(), ParseContext.COMPLETE);
+    }
+
+    @Benchmark
+    public ParsedLine parseIncremental() {
+        String buffer = buffers[keystroke++ & 1];
+        return incrementalParser.parse(buffer, buffer.length(), ParseContext.COMPLETE);
+    }
+
+}
@@ -11,7 +11,6 @@ package org.jline.builtins;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Array;
-import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -30,6 +29,7 @@ import java.util.function.Supplier;
 import org.jline.reader.Candidate;
 import org.jline.reader.LineReader;
 import org.jline.reader.LineReader.Option;
+import org.jline.reader.impl.completer.DirectoryListingCache;
 import org.jline.reader.impl.completer.NullCompleter;
 import org.jline.reader.impl.completer.StringsCompleter;
 import org.jline.reader.ParsedLine;
@@ -260,7 +260,8 @@ public class Completers {
 
         @Override
         protected boolean accept(Path path) {
-            return Files.isDirectory(path) && super.accept(path);
+            DirectoryListingCache.Entry entry = getListingCache().getEntry(path);
+            return (entry != null ? entry.isDirectory() : Files.isDirectory(path)) && super.accept(path);
         }
     }
 
@@ -355,10 +356,14 @@ public class Completers {
                     curBuf = "";
                     current = getUserDir();
                 }
-                try (DirectoryStream<Path> directory = Files.newDirectoryStream(current, this::accept)) {
-                    directory.forEach(p -> {
+                try {
+                    for (DirectoryListingCache.Entry entry : getListingCache().list(current)) {
+                        Path p = entry.path();
+                        if (!accept(p)) {
+                            continue;
+                        }
                         String value = curBuf + p.getFileName().toString();
-                        if (Files.isDirectory(p)) {
+                        if (entry.isDirectory()) {
                             candidates.add(
                                     new Candidate(value + (reader.isSet(LineReader.Option.AUTO_PARAM_SLASH) ? sep : ""),
                                             getDisplay(reader.getTerminal(), p, resolver, sep), null, null,
@@ -367,7 +372,7 @@ public class Completers {
                             candidates.add(new Candidate(value, getDisplay(reader.getTerminal(), p, resolver, sep), null, null, null, null,
                                     true));
                         }
-                    });
+                    }
                 } catch (IOException e) {
                     // Ignore
                 }
@@ -377,6 +382,10 @@ public class Completers {
         }
 
         protected boolean accept(Path path) {
+            DirectoryListingCache.Entry entry = getListingCache().getEntry(path);
+            if (entry != null) {
+                return !entry.isHidden();
+            }
             try {
                 return !Files.isHidden(path);
             } catch (IOException e) {
@@ -384,6 +393,14 @@ public class Completers {
             }
         }
 
+        /**
+         * The cache used to list directories, the entries of which
+         * are used by {@link #accept(Path)} and {@link #getDisplay}.
+         */
+        protected DirectoryListingCache getListingCache() {
+            return DirectoryListingCache.getDefault();
+        }
+
         protected Path getUserDir() {
             return Paths.get(System.getProperty("user.dir"));
         }
@@ -401,15 +418,16 @@ public class Completers {
             String name = p.getFileName().toString();
             int idx = name.lastIndexOf(".");
             String type = idx != -1 ? ".*" + name.substring(idx): null;
-            if (Files.isSymbolicLink(p)) {
+            DirectoryListingCache.Entry entry = getListingCache().getEntry(p);
+            if (entry != null ? entry.isSymbolicLink() : Files.isSymbolicLink(p)) {
                 sb.styled(resolver.resolve(".ln"), name).append("@");
-            } else if (Files.isDirectory(p)) {
+            } else if (entry != null ? entry.isDirectory() : Files.isDirectory(p)) {
                 sb.styled(resolver.resolve(".di"), name).append(separator);
-            } else if (Files.isExecutable(p) && !OSUtils.IS_WINDOWS) {
+            } else if ((entry != null ? entry.isExecutable() : Files.isExecutable(p)) && !OSUtils.IS_WINDOWS) {
                 sb.styled(resolver.resolve(".ex"), name).append("*");
             } else if (type != null && resolver.resolve(type).getStyle() != 0) {
                 sb.styled(resolver.resolve(type), name);
-            } else if (Files.isRegularFile(p)) {
+            } else if (entry != null ? entry.isRegularFile() : Files.isRegularFile(p)) {
                 sb.styled(resolver.resolve(".fi"), name);
             } else {
                 sb.append(name);
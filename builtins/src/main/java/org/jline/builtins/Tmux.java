@@ -433,7 +433,7 @@ public class Tmux {
         terminal.puts(Capability.keypad_xmit);
         terminal.trackMouse(Terminal.MouseTracking.Any);
         terminal.flush();
-        executor = Executors.newSingleThreadScheduledExecutor();
+        executor = Executors.newSingleThreadScheduledExecutor(Threads.getThreadFactory());
         try {
             // Create first pane
             size.copy(terminal.getSize());
@@ -441,7 +441,9 @@ public class Tmux {
             activeWindow = 0;
             runner.accept(active().getConsole());
             // Start input loop
-            new Thread(this::inputLoop, "Mux input loop").start();
+            Thread inputThread = Threads.getThreadFactory().newThread(this::inputLoop);
+            inputThread.setName("Mux input loop");
+            inputThread.start();
             // Redraw loop
             redrawLoop();
         } catch (RuntimeException e) {
@@ -1858,6 +1860,11 @@ public class Tmux {
                 public void write(int b) throws IOException {
                     console.processInputByte(b);
                 }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    console.processInputBytes(b, off, len);
+                }
             };
             this.console = new LineDisciplineTerminal(
                     name,
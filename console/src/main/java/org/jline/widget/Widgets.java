@@ -178,7 +178,7 @@ public abstract class Widgets {
      * @return command line arguments
      */
     public List<String> args() {
-        return reader.getParser().parse(buffer().toString(), 0, ParseContext.COMPLETE).words();
+        return reader.parseBuffer(0, ParseContext.COMPLETE).words();
     }
 
     /**
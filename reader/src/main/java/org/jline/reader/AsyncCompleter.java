@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * A completer which finds its candidates asynchronously.
+ * <p>
+ * The line reader does not block on such a completer: it waits for the
+ * returned future while watching the input, and cancels the completion
+ * as soon as a key is pressed.  If the {@link LineReader#COMPLETION_TIMEOUT}
+ * variable is set, the candidates given before the timeout are used and the
+ * completion is cancelled.  Implementations should thus stop their work
+ * when the returned future is cancelled.
+ * </p>
+ */
+public interface AsyncCompleter extends Completer
+{
+    /**
+     * Start looking for the candidates for the given command line.
+     * Candidates can be given to the <i>candidates</i> consumer from any
+     * thread, as soon as they are found.
+     *
+     * @param reader        The line reader
+     * @param line          The parsed command line
+     * @param candidates    The consumer of candidates
+     * @return a future completed once all the candidates have been given
+     */
+    CompletableFuture<?> completeAsync(LineReader reader, ParsedLine line, Consumer<Candidate> candidates);
+
+    /**
+     * Populates <i>candidates</i> by waiting for {@link #completeAsync}.
+     *
+     * @param reader        The line reader
+     * @param line          The parsed command line
+     * @param candidates    The {@link List} of candidates to populate
+     */
+    @Override
+    default void complete(LineReader reader, ParsedLine line, List<Candidate> candidates) {
+        completeAsync(reader, line, candidate -> {
+            synchronized (candidates) {
+                candidates.add(candidate);
+            }
+        }).join();
+    }
+}
@@ -17,4 +17,35 @@ public interface Highlighter {
     AttributedString highlight(LineReader reader, String buffer);
     public void setErrorPattern(Pattern errorPattern);
     public void setErrorIndex(int errorIndex);
+
+    /**
+     * Whether the lines of the buffer can currently be highlighted one by one
+     * with {@link #highlightLine(LineReader, String)}.
+     * <p>
+     * This is the case when the styling of a line only depends on its own text.
+     * The reader then keeps the highlighted lines and, on each redisplay, only
+     * highlights the lines which have been edited.  Buffers larger than
+     * {@link LineReader#FEATURES_MAX_BUFFER_SIZE} are highlighted too, as the
+     * cost no longer depends on the size of the buffer.
+     * </p>
+     *
+     * @param reader the reader
+     * @return <code>true</code> if the lines can be highlighted independently
+     */
+    default boolean canHighlightLines(LineReader reader) {
+        return false;
+    }
+
+    /**
+     * Highlight a single line of the buffer.  This is only called when
+     * {@link #canHighlightLines(LineReader)} returns <code>true</code>,
+     * and the result is reused as long as the line is not modified.
+     *
+     * @param reader the reader
+     * @param line the line, without its line separator
+     * @return the highlighted line
+     */
+    default AttributedString highlightLine(LineReader reader, String line) {
+        return highlight(reader, line);
+    }
 }
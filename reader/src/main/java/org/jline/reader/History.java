@@ -147,6 +147,56 @@ public interface History extends Iterable<History.Entry>
         };
     }
 
+    /**
+     * Returns an iterator going backward, starting at the given index inclusive,
+     * over the entries which may contain the given text.
+     * <p>
+     * Implementations may use an index to skip entries which can not contain
+     * the text, compared ignoring case, but callers still need to check each
+     * returned entry.  The default implementation returns all entries.
+     * </p>
+     *
+     * @param index the index of the first entry to return
+     * @param text  the searched text
+     * @return an iterator over the candidate entries
+     */
+    default Iterator<Entry> reverseSearchIterator(int index, String text) {
+        return reverseIterator(index);
+    }
+
+    /**
+     * Returns an iterator going forward, starting at the given index inclusive,
+     * over the entries which may contain the given text.
+     *
+     * @param index the index of the first entry to return
+     * @param text  the searched text
+     * @return an iterator over the candidate entries
+     * @see #reverseSearchIterator(int, String)
+     */
+    default Iterator<Entry> searchIterator(int index, String text) {
+        return iterator(index);
+    }
+
+    /**
+     * Returns the most recent entry starting with the given prefix.
+     * <p>
+     * This is used to suggest the end of the line being typed.  The default
+     * implementation scans the entries backward.
+     * </p>
+     *
+     * @param prefix the prefix of the entry
+     * @return the most recent entry starting with the prefix, or <code>null</code> if none
+     */
+    default Entry lastStartingWith(String prefix) {
+        for (Iterator<Entry> it = reverseIterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (entry.line().startsWith(prefix)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
     //
     // Navigation
     //
@@ -12,6 +12,7 @@ import java.io.File;
 import java.io.InputStream;
 import java.util.Collection;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.function.IntConsumer;
 
 import org.jline.keymap.KeyMap;
@@ -365,6 +366,18 @@ public interface LineReader {
      */
     String HISTORY_FILE_SIZE = "history-file-size";
 
+    /**
+     * Maximum time in milliseconds a history entry waits before being
+     * written when {@link Option#HISTORY_ASYNC_SAVE} is set.
+     */
+    String HISTORY_SAVE_DELAY = "history-save-delay";
+
+    /**
+     * Number of pending history entries which triggers a write
+     * when {@link Option#HISTORY_ASYNC_SAVE} is set.
+     */
+    String HISTORY_SAVE_BATCH = "history-save-batch";
+
     /**
      * New line automatic indentation after opening/closing bracket.
      */
@@ -373,8 +386,8 @@ public interface LineReader {
     /**
      * Max buffer size for advanced features.
      * Once the length of the buffer reaches this threshold, no
-     * advanced features will be enabled. This includes the undo
-     * buffer, syntax highlighting, parsing, etc....
+     * advanced features will be enabled. This includes syntax
+     * highlighting, parsing, etc.... Undo is available at any buffer size.
      */
     String FEATURES_MAX_BUFFER_SIZE = "features-max-buffer-size";
 
@@ -384,6 +397,24 @@ public interface LineReader {
      */
     String SUGGESTIONS_MIN_BUFFER_SIZE = "suggestions-min-buffer-size";
 
+    /**
+     * Maximum number of redisplays per second.
+     * Redisplay requests made in between, for example while pasting text,
+     * replaying a macro or printing above the line from other threads, are
+     * coalesced into a single one.  Zero, the default, disables the limit.
+     */
+    String REDISPLAY_RATE = "redisplay-rate";
+
+    /**
+     * Maximum time in milliseconds to wait for completion candidates.
+     * Once elapsed, the completion is cancelled and the candidates found
+     * so far are used.  When set, completers which are not an
+     * {@link AsyncCompleter} are run in a background thread, so that
+     * the completion can also be cancelled by pressing a key.
+     * Zero, the default, waits for the completer to return.
+     */
+    String COMPLETION_TIMEOUT = "completion-timeout";
+
     Map<String, KeyMap<Binding>> defaultKeyMaps();
 
     enum Option {
@@ -397,6 +428,12 @@ public interface LineReader {
         HISTORY_BEEP(true),
         HISTORY_INCREMENTAL(true),
         HISTORY_TIMESTAMPED(true),
+        /** maintain a trigram index of the history to speed up history searches */
+        HISTORY_SEARCH_INDEX,
+        /** with {@link #HISTORY_INCREMENTAL}, write new entries to the history file in a background thread */
+        HISTORY_ASYNC_SAVE,
+        /** force the history file to the storage device after each write */
+        HISTORY_FSYNC,
         /** when displaying candidates, group them by {@link Candidate#group()} */
         AUTO_GROUP(true),
         AUTO_MENU(true),
@@ -736,4 +773,46 @@ public interface LineReader {
     void setAutosuggestion(SuggestionType type);
 
     SuggestionType getAutosuggestion();
+
+    /**
+     * Parse the buffer with the parser of this reader.
+     * <p>
+     * The result, or the syntax error, is shared by all the callers parsing with
+     * the same cursor and context, as long as the buffer is unchanged and the
+     * parser is not set again, so that the buffer is only parsed once per keystroke
+     * for a given cursor and context.  Since the cursor is part of the parse, the
+     * completion, which parses at the cursor, does not share the result of the
+     * callers parsing from the start of the buffer, such as the widgets.
+     * </p>
+     * <p>
+     * Changes to the configuration of the parser are not detected: they only
+     * apply once the buffer changes, or once the parser is set again on the reader.
+     * </p>
+     *
+     * @param cursor the cursor position to parse the buffer with
+     * @param context the parse context
+     * @return the parsed buffer
+     * @throws SyntaxError if the buffer can not be parsed in the given context
+     */
+    default ParsedLine parseBuffer(int cursor, Parser.ParseContext context) throws SyntaxError {
+        return getParser().parse(getBuffer().toString(), cursor, context);
+    }
+
+    /**
+     * Compute a value from the content of the buffer, or return the value already
+     * computed for the same key since the buffer was last modified.
+     * <p>
+     * This allows components to share the results derived from the buffer, such
+     * as command descriptions.  The function must only depend on the given buffer
+     * content and on the key.
+     * </p>
+     *
+     * @param key the key of the value, compared with <code>equals</code>
+     * @param function the function computing the value from the buffer content
+     * @param <T> the type of the value
+     * @return the value
+     */
+    default <T> T computeFromBuffer(Object key, Function<String, T> function) {
+        return function.apply(getBuffer().toString());
+    }
 }
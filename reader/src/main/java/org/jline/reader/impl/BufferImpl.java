@@ -21,11 +21,16 @@ import org.jline.reader.Buffer;
  */
 public class BufferImpl implements Buffer
 {
+    private static final int[] EMPTY = new int[0];
+
     private int cursor = 0;
     private int cursorCol = -1;
     private int[] buffer;
     private int g0;
     private int g1;
+    private UndoLog undoLog;
+    private long version;
+    private String string;
 
     public BufferImpl() {
         this(64);
@@ -43,12 +48,33 @@ public class BufferImpl implements Buffer
         this.buffer = buffer.buffer.clone();
         this.g0 = buffer.g0;
         this.g1 = buffer.g1;
+        this.string = buffer.string;
     }
 
     public BufferImpl copy () {
         return new BufferImpl(this);
     }
 
+    void setUndoLog(UndoLog undoLog) {
+        this.undoLog = undoLog;
+    }
+
+    private boolean recording() {
+        return undoLog != null && undoLog.isRecording();
+    }
+
+    /**
+     * Returns a number which changes each time the content of the buffer is modified.
+     */
+    long version() {
+        return version;
+    }
+
+    private void modified() {
+        version++;
+        string = null;
+    }
+
     public int cursor() {
         return cursor;
     }
@@ -61,7 +87,14 @@ public class BufferImpl implements Buffer
         if (cursor == length()) {
             return false;
         } else {
-            buffer[adjust(cursor)] = ch;
+            int i = adjust(cursor);
+            if (buffer[i] != ch) {
+                if (recording()) {
+                    undoLog.record(cursor, new int[] { buffer[i] }, new int[] { ch });
+                }
+                modified();
+            }
+            buffer[i] = ch;
             return true;
         }
     }
@@ -141,6 +174,12 @@ public class BufferImpl implements Buffer
     }
 
     private void write(int[] ucps) {
+        if (ucps.length > 0) {
+            if (recording()) {
+                undoLog.record(cursor, EMPTY, ucps);
+            }
+            modified();
+        }
         moveGapToCursor();
         int len = length() + ucps.length;
         int sz = buffer.length;
@@ -164,6 +203,10 @@ public class BufferImpl implements Buffer
         if (length() == 0) {
             return false;
         }
+        if (recording()) {
+            undoLog.record(0, codePoints(0, length()), EMPTY);
+        }
+        modified();
         g0 = 0;
         g1 = buffer.length;
         cursor = 0;
@@ -311,6 +354,12 @@ public class BufferImpl implements Buffer
      */
     public int backspace(final int num) {
         int count = Math.max(Math.min(cursor, num), 0);
+        if (count > 0) {
+            if (recording()) {
+                undoLog.record(cursor - count, codePoints(cursor - count, cursor), EMPTY);
+            }
+            modified();
+        }
         moveGapToCursor();
         cursor -= count;
         g0 -= count;
@@ -329,6 +378,12 @@ public class BufferImpl implements Buffer
 
     public int delete(int num) {
         int count = Math.max(Math.min(length() - cursor, num), 0);
+        if (count > 0) {
+            if (recording()) {
+                undoLog.record(cursor, codePoints(cursor, cursor + count), EMPTY);
+            }
+            modified();
+        }
         moveGapToCursor();
         g1 += count;
         cursorCol = -1;
@@ -341,7 +396,10 @@ public class BufferImpl implements Buffer
 
     @Override
     public String toString() {
-        return substring(0, length());
+        if (string == null) {
+            string = substring(0, length());
+        }
+        return string;
     }
 
     public void copyFrom(Buffer buf) {
@@ -349,6 +407,24 @@ public class BufferImpl implements Buffer
             throw new IllegalStateException();
         }
         BufferImpl that = (BufferImpl) buf;
+        if (recording()) {
+            // only record the part which differs
+            int l1 = this.length();
+            int l2 = that.length();
+            int prefix = 0;
+            while (prefix < l1 && prefix < l2 && this.atChar(prefix) == that.atChar(prefix)) {
+                prefix++;
+            }
+            int suffix = 0;
+            while (suffix < l1 - prefix && suffix < l2 - prefix
+                    && this.atChar(l1 - suffix - 1) == that.atChar(l2 - suffix - 1)) {
+                suffix++;
+            }
+            if (prefix < l1 - suffix || prefix < l2 - suffix) {
+                undoLog.record(prefix, this.codePoints(prefix, l1 - suffix), that.codePoints(prefix, l2 - suffix));
+            }
+        }
+        modified();
         this.g0 = that.g0;
         this.g1 = that.g1;
         this.buffer = that.buffer.clone();
@@ -356,6 +432,24 @@ public class BufferImpl implements Buffer
         this.cursorCol = that.cursorCol;
     }
 
+    /**
+     * Replace <code>length</code> characters at the given position,
+     * leaving the cursor at the end of the inserted characters.
+     */
+    void replace(int position, int length, int[] ucps) {
+        cursor(position);
+        delete(length);
+        write(ucps);
+    }
+
+    private int[] codePoints(int start, int end) {
+        int[] cps = new int[end - start];
+        for (int i = start; i < end; i++) {
+            cps[i - start] = buffer[adjust(i)];
+        }
+        return cps;
+    }
+
     private void moveGapToCursor() {
         if (cursor < g0) {
             int l = g0 - cursor;
@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.jline.reader.Candidate;
+import org.jline.utils.AttributedString;
+import org.jline.utils.Levenshtein;
+
+/**
+ * Index of completion candidates used by {@link CompletionMatcherImpl}.
+ * <p>
+ * Candidates are grouped by their value, stripped from ANSI sequences, and
+ * the values are kept sorted, both as is and lower cased, so that prefix
+ * queries are answered with a binary search, and other queries do not need
+ * to normalize the values again.  The index is immutable and can be reused
+ * as long as the completer gives the same candidates.
+ * </p>
+ * <p>
+ * Typo tolerant queries only compare the word with the values whose length
+ * is close enough to the word's, and look up the prefixes of the longer
+ * values in BK-trees.  As building those costs more than a single scan, it
+ * is only done once the index has served a first typo query, that is when
+ * the completer gives the same candidates again.
+ * </p>
+ */
+final class CandidateIndex {
+
+    private final Candidate[] source;
+    /** Sorted distinct values */
+    private final String[] keys;
+    /** Candidates for each value */
+    private final List<List<Candidate>> groups;
+    /** Lower cased values, in the same order as keys */
+    private final String[] folded;
+    /** Indexes of the values, sorted by lower cased value */
+    private final Integer[] foldedOrder;
+    private Map<String, List<Candidate>> map;
+    private boolean typoQueried;
+    private Typos typos;
+    private Typos foldedTypos;
+
+    CandidateIndex(List<Candidate> candidates) {
+        this.source = candidates.toArray(new Candidate[0]);
+        Map<String, List<Candidate>> byKey = new HashMap<>();
+        for (Candidate candidate : source) {
+            byKey.computeIfAbsent(strip(candidate.value()), s -> new ArrayList<>(1)).add(candidate);
+        }
+        keys = byKey.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        groups = new ArrayList<>(keys.length);
+        folded = new String[keys.length];
+        foldedOrder = new Integer[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            groups.add(byKey.get(keys[i]));
+            folded[i] = keys[i].toLowerCase();
+            foldedOrder[i] = i;
+        }
+        Arrays.sort(foldedOrder, (i1, i2) -> folded[i1].compareTo(folded[i2]));
+    }
+
+    private static String strip(String value) {
+        return value.indexOf('\033') >= 0 ? AttributedString.fromAnsi(value).toString() : value;
+    }
+
+    /**
+     * Check if this index has been built for the given candidates.
+     */
+    boolean isFor(List<Candidate> candidates) {
+        if (candidates.size() != source.length) {
+            return false;
+        }
+        int i = 0;
+        for (Candidate candidate : candidates) {
+            if (candidate != source[i++]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Candidates grouped by value.
+     */
+    Map<String, List<Candidate>> asMap() {
+        if (map == null) {
+            Map<String, List<Candidate>> m = new LinkedHashMap<>();
+            for (int i = 0; i < keys.length; i++) {
+                m.put(keys[i], groups.get(i));
+            }
+            map = Collections.unmodifiableMap(m);
+        }
+        return map;
+    }
+
+    /**
+     * Find the candidates whose value starts with the given prefix, if not null,
+     * and matches the given predicate.
+     *
+     * @param prefix the prefix, lower cased if <code>fold</code> is set
+     * @param predicate the predicate to test the values with
+     * @param fold whether the prefix and the predicate apply to lower cased values
+     * @return the matching candidates grouped by value
+     */
+    Map<String, List<Candidate>> match(String prefix, Predicate<String> predicate, boolean fold) {
+        Map<String, List<Candidate>> result = new LinkedHashMap<>();
+        int from = 0;
+        int to = keys.length;
+        if (prefix != null && !prefix.isEmpty()) {
+            from = lowerBound(prefix, fold);
+            to = from;
+            while (to < keys.length && key(to, fold).startsWith(prefix)) {
+                to++;
+            }
+        }
+        for (int i = from; i < to; i++) {
+            int k = fold ? foldedOrder[i] : i;
+            if (predicate == null || predicate.test(fold ? folded[k] : keys[k])) {
+                result.put(keys[k], groups.get(k));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find the candidates whose value, or its prefix of the same length as
+     * the word, is within <code>max</code> edits of the word, as computed
+     * by {@link ReaderUtils#distance(String, String)}.
+     *
+     * @param word the word, lower cased if <code>fold</code> is set
+     * @param max the maximum distance
+     * @param fold whether to compare the word with the lower cased values
+     * @return the matching candidates grouped by value
+     */
+    Map<String, List<Candidate>> typos(String word, int max, boolean fold) {
+        BitSet found = new BitSet(keys.length);
+        if (max < 0) {
+            return new LinkedHashMap<>();
+        }
+        String[] values = fold ? folded : keys;
+        if (!typoQueried || word.isEmpty()) {
+            typoQueried = true;
+            for (int i = 0; i < keys.length; i++) {
+                if (ReaderUtils.distance(word, values[i], max) <= max) {
+                    found.set(i);
+                }
+            }
+        } else if (fold) {
+            if (foldedTypos == null) {
+                foldedTypos = new Typos(values);
+            }
+            foldedTypos.find(word, max, found);
+        } else {
+            if (typos == null) {
+                typos = new Typos(values);
+            }
+            typos.find(word, max, found);
+        }
+        Map<String, List<Candidate>> result = new LinkedHashMap<>();
+        for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+            result.put(keys[i], groups.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Typo index of the values.
+     * <p>
+     * A value is within <code>max</code> edits of a word if the value itself
+     * is, which requires its length to be within <code>max</code> of the
+     * word's, or if its prefix of the word length is.  The values are thus
+     * sorted by length, and the prefixes of each length are kept in a BK-tree
+     * built on first use.
+     * </p>
+     */
+    private static final class Typos {
+        private final String[] values;
+        /** Indexes of the values, sorted by length */
+        private final int[] byLength;
+        private final int[] lengths;
+        private final Map<Integer, BkNode> prefixes = new HashMap<>();
+
+        Typos(String[] values) {
+            this.values = values;
+            Integer[] order = new Integer[values.length];
+            for (int i = 0; i < values.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (i1, i2) -> Integer.compare(values[i1].length(), values[i2].length()));
+            byLength = new int[values.length];
+            lengths = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                byLength[i] = order[i];
+                lengths[i] = values[order[i]].length();
+            }
+        }
+
+        void find(String word, int max, BitSet found) {
+            int from = lowerBound(word.length() - max);
+            int to = lowerBound(word.length() + max + 1);
+            for (int i = from; i < to; i++) {
+                int index = byLength[i];
+                if (!found.get(index) && Levenshtein.distance(word, values[index], max) <= max) {
+                    found.set(index);
+                }
+            }
+            prefixes.computeIfAbsent(word.length(), this::tree).find(word, max, found);
+        }
+
+        private int lowerBound(int length) {
+            int low = 0;
+            int high = lengths.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (lengths[mid] < length) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Build the BK-tree of the prefixes of the given length of the longer values.
+         */
+        private BkNode tree(int length) {
+            BkNode root = null;
+            for (int i = lowerBound(length + 1); i < byLength.length; i++) {
+                String term = values[byLength[i]].substring(0, length);
+                if (root == null) {
+                    root = new BkNode(term);
+                }
+                root.add(term, byLength[i]);
+            }
+            return root != null ? root : new BkNode("");
+        }
+    }
+
+    /**
+     * Node of a BK-tree: the children are indexed by their distance to the
+     * node term, so that the triangle inequality bounds the subtrees where
+     * terms close to a word can be found.
+     */
+    private static final class BkNode {
+        final String term;
+        final List<Integer> indexes = new ArrayList<>(1);
+        BkNode[] children = new BkNode[0];
+
+        BkNode(String term) {
+            this.term = term;
+        }
+
+        void add(String term, int index) {
+            BkNode node = this;
+            while (true) {
+                int d = Levenshtein.distance(term, node.term);
+                if (d == 0) {
+                    node.indexes.add(index);
+                    return;
+                }
+                if (d >= node.children.length) {
+                    node.children = Arrays.copyOf(node.children, d + 1);
+                }
+                if (node.children[d] == null) {
+                    node.children[d] = new BkNode(term);
+                }
+                node = node.children[d];
+            }
+        }
+
+        void find(String word, int max, BitSet found) {
+            Deque<BkNode> nodes = new ArrayDeque<>();
+            nodes.push(this);
+            while (!nodes.isEmpty()) {
+                BkNode node = nodes.pop();
+                // the exact distance is only needed while it allows to reach a child
+                int limit = Math.max(node.children.length - 1, 0) + max;
+                int d = Levenshtein.distance(word, node.term, limit);
+                if (d <= max) {
+                    for (int index : node.indexes) {
+                        found.set(index);
+                    }
+                }
+                if (d <= limit) {
+                    for (int i = Math.max(1, d - max); i <= d + max && i < node.children.length; i++) {
+                        if (node.children[i] != null) {
+                            nodes.push(node.children[i]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private String key(int i, boolean fold) {
+        return fold ? folded[foldedOrder[i]] : keys[i];
+    }
+
+    private int lowerBound(String prefix, boolean fold) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (key(mid, fold).compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+}
@@ -12,7 +12,6 @@ import org.jline.reader.Candidate;
 import org.jline.reader.CompletingParsedLine;
 import org.jline.reader.CompletionMatcher;
 import org.jline.reader.LineReader;
-import org.jline.utils.AttributedString;
 
 import java.util.*;
 import java.util.function.Function;
@@ -25,6 +24,7 @@ public class CompletionMatcherImpl implements CompletionMatcher {
     protected List<Function<Map<String, List<Candidate>>, Map<String, List<Candidate>>>> matchers;
     private Map<String, List<Candidate>> matching;
     private boolean caseInsensitive;
+    private CandidateIndex index;
 
     public CompletionMatcherImpl() {
     }
@@ -49,10 +49,18 @@ public class CompletionMatcherImpl implements CompletionMatcher {
     @Override
     public List<Candidate> matches(List<Candidate> candidates) {
         matching = Collections.emptyMap();
-        Map<String, List<Candidate>> sortedCandidates = sort(candidates);
+        // Completers with a static vocabulary give the same candidates
+        // each time, so that the index can be reused
+        if (index == null || !index.isFor(candidates)) {
+            index = new CandidateIndex(candidates);
+        }
         for (Function<Map<String, List<Candidate>>,
                 Map<String, List<Candidate>>> matcher : matchers) {
-            matching = matcher.apply(sortedCandidates);
+            if (matcher instanceof IndexedMatcher) {
+                matching = ((IndexedMatcher) matcher).apply(index);
+            } else {
+                matching = matcher.apply(index.asMap());
+            }
             if (!matching.isEmpty()) {
                 break;
             }
@@ -96,8 +104,8 @@ public class CompletionMatcherImpl implements CompletionMatcher {
             String wdi = caseInsensitive ? wd.toLowerCase() : wd;
             String wp = wdi.substring(0, line.wordCursor());
             matchers = new ArrayList<>(Arrays.asList(
-                    simpleMatcher(s -> (caseInsensitive ? s.toLowerCase() : s).startsWith(wp)),
-                    simpleMatcher(s -> (caseInsensitive ? s.toLowerCase() : s).contains(wp)),
+                    new IndexedMatcher(wp, null, caseInsensitive),
+                    new IndexedMatcher(null, s -> s.contains(wp), caseInsensitive),
                     typoMatcher(wp, errors, caseInsensitive, originalGroupName)
             ));
             exact = s -> caseInsensitive ? s.equalsIgnoreCase(wp) : s.equals(wp);
@@ -109,8 +117,8 @@ public class CompletionMatcherImpl implements CompletionMatcher {
             Pattern p1 = Pattern.compile(Pattern.quote(wp) + ".*" + Pattern.quote(ws) + ".*");
             Pattern p2 = Pattern.compile(".*" + Pattern.quote(wp) + ".*" + Pattern.quote(ws) + ".*");
             matchers = new ArrayList<>(Arrays.asList(
-                    simpleMatcher(s -> p1.matcher(caseInsensitive ? s.toLowerCase() : s).matches()),
-                    simpleMatcher(s -> p2.matcher(caseInsensitive ? s.toLowerCase() : s).matches()),
+                    new IndexedMatcher(wp, s -> p1.matcher(s).matches(), caseInsensitive),
+                    new IndexedMatcher(null, s -> p2.matcher(s).matches(), caseInsensitive),
                     typoMatcher(wdi, errors, caseInsensitive, originalGroupName)
             ));
             exact = s -> caseInsensitive ? s.equalsIgnoreCase(wd) : s.equals(wd);
@@ -119,12 +127,13 @@ public class CompletionMatcherImpl implements CompletionMatcher {
             String wdi = caseInsensitive ? wd.toLowerCase() : wd;
             if (LineReader.Option.EMPTY_WORD_OPTIONS.isSet(options) || wd.length() > 0) {
                 matchers = new ArrayList<>(Arrays.asList(
-                        simpleMatcher(s -> (caseInsensitive ? s.toLowerCase() : s).startsWith(wdi)),
-                        simpleMatcher(s -> (caseInsensitive ? s.toLowerCase() : s).contains(wdi)),
+                        new IndexedMatcher(wdi, null, caseInsensitive),
+                        new IndexedMatcher(null, s -> s.contains(wdi), caseInsensitive),
                         typoMatcher(wdi, errors, caseInsensitive, originalGroupName)
                 ));
             } else {
-                matchers = new ArrayList<>(Collections.singletonList(simpleMatcher(s -> !s.startsWith("-"))));
+                matchers = new ArrayList<>(Collections.singletonList(
+                        new IndexedMatcher(null, s -> !s.startsWith("-"), false)));
             }
             exact = s -> caseInsensitive ? s.equalsIgnoreCase(wd) : s.equals(wd);
         }
@@ -139,18 +148,67 @@ public class CompletionMatcherImpl implements CompletionMatcher {
 
     protected Function<Map<String, List<Candidate>>,
             Map<String, List<Candidate>>> typoMatcher(String word, int errors, boolean caseInsensitive, String originalGroupName) {
-        return m -> {
-            Map<String, List<Candidate>> map = m.entrySet().stream()
-                    .filter(e -> ReaderUtils.distance(word, caseInsensitive ? e.getKey() : e.getKey().toLowerCase()) < errors)
-                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-            if (map.size() > 1) {
-                map.computeIfAbsent(word, w -> new ArrayList<>())
-                        .add(new Candidate(word, word, originalGroupName, null, null, null, false));
+        return new IndexedMatcher(null, s -> ReaderUtils.distance(word, s, errors - 1) < errors, !caseInsensitive) {
+            @Override
+            Map<String, List<Candidate>> apply(CandidateIndex index) {
+                return finish(index.typos(word, errors - 1, !caseInsensitive));
+            }
+
+            @Override
+            protected Map<String, List<Candidate>> finish(Map<String, List<Candidate>> map) {
+                if (map.size() > 1) {
+                    map.computeIfAbsent(word, w -> new ArrayList<>())
+                            .add(new Candidate(word, word, originalGroupName, null, null, null, false));
+                }
+                return map;
             }
-            return map;
         };
     }
 
+    /**
+     * Matcher testing the candidate values, which uses the index built
+     * by {@link #matches(List)} to avoid normalizing the values on each
+     * completion, and to find the values having a given prefix with a
+     * binary search.
+     */
+    private static class IndexedMatcher implements Function<Map<String, List<Candidate>>, Map<String, List<Candidate>>> {
+        private final String prefix;
+        private final Predicate<String> predicate;
+        private final boolean fold;
+
+        /**
+         * @param prefix the prefix of the values, or <code>null</code>
+         * @param predicate the predicate the values must match, or <code>null</code>
+         * @param fold whether the prefix and predicate apply to the lower cased values
+         */
+        IndexedMatcher(String prefix, Predicate<String> predicate, boolean fold) {
+            this.prefix = prefix;
+            this.predicate = predicate;
+            this.fold = fold;
+        }
+
+        Map<String, List<Candidate>> apply(CandidateIndex index) {
+            return finish(index.match(prefix, predicate, fold));
+        }
+
+        @Override
+        public Map<String, List<Candidate>> apply(Map<String, List<Candidate>> candidates) {
+            Map<String, List<Candidate>> result = new LinkedHashMap<>();
+            for (Map.Entry<String, List<Candidate>> entry : candidates.entrySet()) {
+                String key = fold ? entry.getKey().toLowerCase() : entry.getKey();
+                if ((prefix == null || key.startsWith(prefix))
+                        && (predicate == null || predicate.test(key))) {
+                    result.put(entry.getKey(), entry.getValue());
+                }
+            }
+            return finish(result);
+        }
+
+        protected Map<String, List<Candidate>> finish(Map<String, List<Candidate>> map) {
+            return map;
+        }
+    }
+
     protected boolean camelMatch(String word, int i, String candidate, int j) {
         if (word.length() <= i) {
             return true;
@@ -177,17 +235,6 @@ public class CompletionMatcherImpl implements CompletionMatcher {
         }
     }
 
-    private Map<String, List<Candidate>> sort(List<Candidate> candidates) {
-        // Build a list of sorted candidates
-        Map<String, List<Candidate>> sortedCandidates = new HashMap<>();
-        for (Candidate candidate : candidates) {
-            sortedCandidates
-                    .computeIfAbsent(AttributedString.fromAnsi(candidate.value()).toString(), s -> new ArrayList<>())
-                    .add(candidate);
-        }
-        return sortedCandidates;
-    }
-
     private String getCommonStart(String str1, String str2, boolean caseInsensitive) {
         int[] s1 = str1.codePoints().toArray();
         int[] s2 = str2.codePoints().toArray();
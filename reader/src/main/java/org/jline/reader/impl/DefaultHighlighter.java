@@ -32,6 +32,20 @@ public class DefaultHighlighter implements Highlighter {
         this.errorIndex = errorIndex;
     }
 
+    /**
+     * Lines are highlighted independently unless a search term, a region or an error
+     * is highlighted, as those are located in the whole buffer.  As subclasses may
+     * style the buffer as a whole, they have to override this method to enable it.
+     */
+    @Override
+    public boolean canHighlightLines(LineReader reader) {
+        String search = reader.getSearchTerm();
+        return getClass() == DefaultHighlighter.class
+                && (search == null || search.isEmpty())
+                && reader.getRegionActive() == RegionType.NONE
+                && errorIndex < 0 && errorPattern == null;
+    }
+
     @Override
     public AttributedString highlight(LineReader reader, String buffer) {
         int underlineStart = -1;
@@ -43,17 +43,24 @@ public class DefaultParser implements Parser {
     private String regexCommand = "[:]?[a-zA-Z]+[a-zA-Z0-9_-]*";
     private int commandGroup = 4;
 
+    private boolean incremental;
+
+    /**
+     * The state of the last parse, used to resume lexing in incremental mode
+     */
+    private volatile Lexed lexed;
+
     //
     // Chainable setters
     //
 
     public DefaultParser quoteChars(final char[] chars) {
-        this.quoteChars = chars;
+        setQuoteChars(chars);
         return this;
     }
 
     public DefaultParser escapeChars(final char[] chars) {
-        this.escapeChars = chars;
+        setEscapeChars(chars);
         return this;
     }
 
@@ -87,12 +94,18 @@ public class DefaultParser implements Parser {
         return this;
     }
 
+    public DefaultParser incremental(boolean incremental) {
+        setIncremental(incremental);
+        return this;
+    }
+
     //
     // Java bean getters and setters
     //
 
     public void setQuoteChars(final char[] chars) {
         this.quoteChars = chars;
+        this.lexed = null;
     }
 
     public char[] getQuoteChars() {
@@ -101,6 +114,7 @@ public class DefaultParser implements Parser {
 
     public void setEscapeChars(final char[] chars) {
         this.escapeChars = chars;
+        this.lexed = null;
     }
 
     public char[] getEscapeChars() {
@@ -124,6 +138,7 @@ public class DefaultParser implements Parser {
     }
 
     public void setEofOnUnclosedBracket(Bracket... brackets) {
+        lexed = null;
         if (brackets == null) {
             openingBrackets = null;
             closingBrackets = null;
@@ -168,6 +183,32 @@ public class DefaultParser implements Parser {
         this.commandGroup = commandGroup;
     }
 
+    /**
+     * Enable the incremental mode, used when the same line is parsed again after each edit.
+     * <p>
+     * In this mode, the parser keeps the state of the lexer at the end of each
+     * word of the last parsed line.  When the next line starts with the same
+     * characters, lexing resumes from the last word ending before both the first
+     * modified character and the cursor, instead of from the start of the line.
+     * </p>
+     * <p>
+     * Subclasses overriding {@link #isDelimiter}, {@link #isQuoted}, {@link #isQuoteChar},
+     * {@link #isEscapeChar(CharSequence, int)}, {@link #isEscaped} or {@link #isDelimiterChar}
+     * can only use this mode if their result only depends on the characters up to
+     * the given position.
+     * </p>
+     *
+     * @param incremental whether to reuse the state of the last parse
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        this.lexed = null;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
     @Override
     public boolean validCommandName(String name) {
         return name != null && name.matches(regexCommand);
@@ -215,7 +256,8 @@ public class DefaultParser implements Parser {
     }
 
     public ParsedLine parse(final String line, final int cursor, ParseContext context) {
-        List<String> words = new LinkedList<>();
+        List<String> words = new ArrayList<>();
+        List<Integer> wordStarts = new ArrayList<>();
         StringBuilder current = new StringBuilder();
         int wordCursor = -1;
         int wordIndex = -1;
@@ -225,8 +267,26 @@ public class DefaultParser implements Parser {
         int rawWordStart = 0;
         BracketChecker bracketChecker = new BracketChecker(cursor);
         boolean quotedWord = false;
+        boolean splitLine = context == ParseContext.SPLIT_LINE;
+        List<Checkpoint> checkpoints = null;
+        int from = 0;
+
+        if (incremental && line != null) {
+            checkpoints = new ArrayList<>();
+            Lexed last = lexed;
+            Checkpoint checkpoint = last != null && last.splitLine == splitLine
+                    ? last.resumeFrom(line, cursor) : null;
+            if (checkpoint != null) {
+                words.addAll(last.words.subList(0, checkpoint.words));
+                wordStarts.addAll(last.wordStarts.subList(0, checkpoint.words));
+                checkpoints.addAll(last.checkpoints.subList(0, checkpoint.index + 1));
+                bracketChecker.restore(checkpoint);
+                rawWordStart = checkpoint.pos;
+                from = checkpoint.pos;
+            }
+        }
 
-        for (int i = 0; (line != null) && (i < line.length()); i++) {
+        for (int i = from; (line != null) && (i < line.length()); i++) {
             // once we reach the cursor, set the
             // position of the selected index
             if (i == cursor) {
@@ -261,10 +321,14 @@ public class DefaultParser implements Parser {
                 // Delimiter
                 if (current.length() > 0) {
                     words.add(current.toString());
+                    wordStarts.add(rawWordStart);
                     current.setLength(0); // reset the arg
                     if (rawWordCursor >= 0 && rawWordLength < 0) {
                         rawWordLength = i - rawWordStart;
                     }
+                    if (checkpoints != null) {
+                        checkpoints.add(new Checkpoint(checkpoints.size(), i + 1, words.size(), bracketChecker));
+                    }
                 }
                 rawWordStart = i + 1;
             } else {
@@ -281,6 +345,7 @@ public class DefaultParser implements Parser {
 
         if (current.length() > 0 || cursor == line.length()) {
             words.add(current.toString());
+            wordStarts.add(rawWordStart);
             if (rawWordCursor >= 0 && rawWordLength < 0) {
                 rawWordLength = line.length() - rawWordStart;
             }
@@ -293,6 +358,10 @@ public class DefaultParser implements Parser {
             rawWordLength = rawWordCursor;
         }
 
+        if (checkpoints != null) {
+            lexed = new Lexed(line, splitLine, words, wordStarts, checkpoints);
+        }
+
         if (context != ParseContext.COMPLETE && context != ParseContext.SPLIT_LINE) {
             if (eofOnEscapedNewLine && isEscapeChar(line, line.length() - 1)) {
                 throw new EOFError(-1, -1, "Escaped new line", "newline");
@@ -317,7 +386,78 @@ public class DefaultParser implements Parser {
         }
 
         String openingQuote = quotedWord ? line.substring(quoteStart, quoteStart + 1) : null;
-        return new ArgumentList(line, words, wordIndex, wordCursor, cursor, openingQuote, rawWordCursor, rawWordLength);
+        return new ArgumentList(line, words, wordIndex, wordCursor, cursor, openingQuote, rawWordCursor, rawWordLength,
+                wordStarts);
+    }
+
+    /**
+     * The state of the lexer after a delimiter ending a word.
+     */
+    private static final class Checkpoint {
+        final int index;
+        /** The position of the next character to lex */
+        final int pos;
+        final int words;
+        final int[] nested;
+        final int missingOpeningBracket;
+        final String lastClosingBracket;
+
+        Checkpoint(int index, int pos, int words, BracketChecker bracketChecker) {
+            this.index = index;
+            this.pos = pos;
+            this.words = words;
+            this.nested = new int[bracketChecker.nested.size()];
+            for (int i = 0; i < nested.length; i++) {
+                nested[i] = bracketChecker.nested.get(i);
+            }
+            this.missingOpeningBracket = bracketChecker.missingOpeningBracket;
+            this.lastClosingBracket = bracketChecker.lastClosingBracket;
+        }
+    }
+
+    /**
+     * A parsed line along with the checkpoints of its lexing.
+     */
+    private static final class Lexed {
+        final String line;
+        final boolean splitLine;
+        final List<String> words;
+        final List<Integer> wordStarts;
+        final List<Checkpoint> checkpoints;
+
+        Lexed(String line, boolean splitLine, List<String> words, List<Integer> wordStarts,
+              List<Checkpoint> checkpoints) {
+            this.line = line;
+            this.splitLine = splitLine;
+            this.words = words;
+            this.wordStarts = wordStarts;
+            this.checkpoints = checkpoints;
+        }
+
+        /**
+         * Find the last checkpoint which is still valid for the given line and cursor:
+         * the characters before it must be unchanged, and must all be before the cursor,
+         * as the bracket state depends on it.
+         */
+        Checkpoint resumeFrom(String newLine, int cursor) {
+            int max = Math.min(line.length(), newLine.length());
+            int common = 0;
+            while (common < max && line.charAt(common) == newLine.charAt(common)) {
+                common++;
+            }
+            int limit = Math.min(common, cursor);
+            int low = 0;
+            int high = checkpoints.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (checkpoints.get(mid).pos <= limit) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low > 0 ? checkpoints.get(low - 1) : null;
+        }
     }
 
     /**
@@ -441,6 +581,8 @@ public class DefaultParser implements Parser {
         private int openBrackets = 0;
         private int cursor;
         private String nextClosingBracket;
+        /** The value of nextClosingBracket if the cursor were at the end of the line */
+        private String lastClosingBracket;
 
         public BracketChecker(int cursor) {
             this.cursor = cursor;
@@ -463,12 +605,26 @@ public class DefaultParser implements Parser {
                     }
                 }
             }
+            if (nested.size() > 0) {
+                lastClosingBracket = String.valueOf(closingBrackets[nested.get(nested.size() - 1)]);
+            }
             if (cursor > pos) {
                 openBrackets = nested.size();
-                if (nested.size() > 0) {
-                    nextClosingBracket = String.valueOf(closingBrackets[nested.get(nested.size() - 1)]);
-                }
+                nextClosingBracket = lastClosingBracket;
+            }
+        }
+
+        /**
+         * Restore the state at a checkpoint located before the cursor.
+         */
+        public void restore(Checkpoint checkpoint) {
+            for (int bid : checkpoint.nested) {
+                nested.add(bid);
             }
+            missingOpeningBracket = checkpoint.missingOpeningBracket;
+            lastClosingBracket = checkpoint.lastClosingBracket;
+            openBrackets = nested.size();
+            nextClosingBracket = lastClosingBracket;
         }
 
         public boolean isOpeningBracketMissing() {
@@ -538,6 +694,8 @@ public class DefaultParser implements Parser {
 
         private final int rawWordLength;
 
+        private final List<Integer> wordStarts;
+
         @Deprecated
         public ArgumentList(final String line, final List<String> words,
                             final int wordIndex, final int wordCursor,
@@ -561,6 +719,26 @@ public class DefaultParser implements Parser {
                             final int wordIndex, final int wordCursor,
                             final int cursor, final String openingQuote,
                             final int rawWordCursor, final int rawWordLength) {
+            this(line, words, wordIndex, wordCursor, cursor, openingQuote, rawWordCursor, rawWordLength, null);
+        }
+
+        /**
+         *
+         * @param line the command line being edited
+         * @param words the list of words
+         * @param wordIndex the index of the current word in the list of words
+         * @param wordCursor the cursor position within the current word
+         * @param cursor the cursor position within the line
+         * @param openingQuote the opening quote (usually '\"' or '\'') or null
+         * @param rawWordCursor the cursor position inside the raw word (i.e. including quotes and escape characters)
+         * @param rawWordLength the raw word length, including quotes and escape characters
+         * @param wordStarts the position in the line of each word, including its opening quote, or null
+         */
+        public ArgumentList(final String line, final List<String> words,
+                            final int wordIndex, final int wordCursor,
+                            final int cursor, final String openingQuote,
+                            final int rawWordCursor, final int rawWordLength,
+                            final List<Integer> wordStarts) {
             this.line = line;
             this.words = Collections.unmodifiableList(Objects.requireNonNull(words));
             this.wordIndex = wordIndex;
@@ -569,6 +747,7 @@ public class DefaultParser implements Parser {
             this.openingQuote = openingQuote;
             this.rawWordCursor = rawWordCursor;
             this.rawWordLength = rawWordLength;
+            this.wordStarts = wordStarts != null ? Collections.unmodifiableList(wordStarts) : null;
         }
 
         public int wordIndex() {
@@ -591,6 +770,17 @@ public class DefaultParser implements Parser {
             return this.words;
         }
 
+        /**
+         * Returns the position in the line of the given word, including its opening
+         * quote, so that the raw word can be located without parsing the line again.
+         *
+         * @param index the index of the word
+         * @return the position of the word, or <code>-1</code> if unknown
+         */
+        public int wordStart(int index) {
+            return wordStarts != null && index >= 0 && index < wordStarts.size() ? wordStarts.get(index) : -1;
+        }
+
         public int cursor() {
             return this.cursor;
         }
@@ -20,6 +20,15 @@ import java.io.InterruptedIOException;
 import java.lang.reflect.Constructor;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.*;
@@ -46,9 +55,11 @@ import org.jline.utils.Curses;
 import org.jline.utils.Display;
 import org.jline.utils.InfoCmp.Capability;
 import org.jline.utils.Log;
+import org.jline.utils.NonBlockingReader;
 import org.jline.utils.Status;
 import org.jline.utils.StyleResolver;
 import org.jline.utils.WCWidth;
+import org.jline.utils.Threads;
 
 import static org.jline.keymap.KeyMap.alt;
 import static org.jline.keymap.KeyMap.ctrl;
@@ -72,6 +83,8 @@ public class LineReaderImpl implements LineReader, Flushable
 
     public static final int TAB_WIDTH = 4;
 
+    private static final long COMPLETION_POLL_INTERVAL = 20L;
+
 
     public static final String DEFAULT_WORDCHARS = "*?_-.[]~=/&;!#$%^(){}<>";
     public static final String DEFAULT_REMOVE_SUFFIX_CHARS = " \t\n;&|";
@@ -99,6 +112,8 @@ public class LineReaderImpl implements LineReader, Flushable
     public static final int    DEFAULT_INDENTATION = 0;
     public static final int    DEFAULT_FEATURES_MAX_BUFFER_SIZE = 1000;
     public static final int    DEFAULT_SUGGESTIONS_MIN_BUFFER_SIZE = 1;
+    public static final int    DEFAULT_REDISPLAY_RATE = 0;
+    public static final long   DEFAULT_COMPLETION_TIMEOUT = 0L;
 
     private static final int MIN_ROWS = 3;
 
@@ -197,6 +212,18 @@ public class LineReaderImpl implements LineReader, Flushable
     protected int searchIndex = -1;
     protected boolean doAutosuggestion;
 
+    /**
+     * Lines highlighted during the last redisplay, and their highlighter
+     */
+    private Map<String, AttributedString> highlightedLines = new HashMap<>();
+    private Highlighter linesHighlighter;
+
+    /**
+     * Values computed from the buffer, and the buffer version they are valid for
+     */
+    private final Map<Object, Object> bufferValues = new HashMap<>();
+    private long bufferValuesVersion = -1;
+
 
     // Reading buffers
     protected final BindingReader bindingReader;
@@ -232,7 +259,12 @@ public class LineReaderImpl implements LineReader, Flushable
 
     protected KillRing killRing = new KillRing();
 
-    protected UndoTree<Buffer> undo = new UndoTree<>(this::setBuffer);
+    protected UndoLog undoLog = new UndoLog((BufferImpl) buf);
+    /**
+     * The undo history as an {@link UndoTree}, kept for subclasses,
+     * which is backed by {@link #undoLog}.
+     */
+    protected UndoTree<Buffer> undo = new UndoLogTree();
     protected boolean isUndo;
 
     /**
@@ -262,6 +294,19 @@ public class LineReaderImpl implements LineReader, Flushable
     protected boolean skipRedisplay;
     protected Display display;
 
+    /*
+     * Coalescing of redisplays, see REDISPLAY_RATE
+     */
+    protected boolean redisplayPending;
+    protected long lastRedisplay;
+    private ScheduledExecutorService redisplayScheduler;
+    private ScheduledFuture<?> scheduledRedisplay;
+
+    /*
+     * Runs the completers when a completion timeout is set
+     */
+    private ExecutorService completionExecutor;
+
     protected boolean overTyping = false;
 
     protected String keyMap;
@@ -418,6 +463,11 @@ public class LineReaderImpl implements LineReader, Flushable
 
     public void setParser(Parser parser) {
         this.parser = parser;
+        // the parser may be the same one with a different configuration
+        synchronized (bufferValues) {
+            bufferValues.clear();
+            bufferValuesVersion = -1;
+        }
     }
 
     @Override
@@ -595,7 +645,7 @@ public class LineReaderImpl implements LineReader, Flushable
                 nextHistoryId = -1;
             }
             nextCommandFromHistory = false;
-            undo.clear();
+            undoLog.clear();
             parsedLine = null;
             keyMap = MAIN;
 
@@ -633,7 +683,7 @@ public class LineReaderImpl implements LineReader, Flushable
 
                 callWidget(CALLBACK_INIT);
 
-                undo.newState(buf.copy());
+                undoLog.clear();
 
                 // Draw initial prompt
                 redrawLine();
@@ -644,6 +694,10 @@ public class LineReaderImpl implements LineReader, Flushable
 
             while (true) {
 
+                if (redisplayPending) {
+                    awaitRedisplay();
+                }
+
                 KeyMap<Binding> local = null;
                 if (isInViCmdMode() && regionActive != RegionType.NONE) {
                     local = keyMaps.get(VISUAL);
@@ -674,15 +728,12 @@ public class LineReaderImpl implements LineReader, Flushable
                 try {
                     lock.lock();
                     // Get executable widget
-                    Buffer copy = buf.length() <= getInt(FEATURES_MAX_BUFFER_SIZE, DEFAULT_FEATURES_MAX_BUFFER_SIZE) ? buf.copy() : null;
                     Widget w = getWidget(o);
                     if (!w.apply()) {
                         beep();
                     }
-                    if (!isUndo && copy != null && buf.length() <= getInt(FEATURES_MAX_BUFFER_SIZE, DEFAULT_FEATURES_MAX_BUFFER_SIZE)
-                            && !copy.toString().equals(buf.toString())) {
-                        undo.newState(buf.copy());
-                    }
+                    // All the edits made by the widget are undone together
+                    undoLog.commit();
 
                     switch (state) {
                         case DONE:
@@ -705,7 +756,7 @@ public class LineReaderImpl implements LineReader, Flushable
                     }
 
                     if (!dumb) {
-                        redisplay();
+                        requestRedisplay();
                     }
                 } finally {
                     lock.unlock();
@@ -725,6 +776,15 @@ public class LineReaderImpl implements LineReader, Flushable
                 this.reading = false;
 
                 cleanup();
+                if (redisplayScheduler != null) {
+                    redisplayScheduler.shutdownNow();
+                    redisplayScheduler = null;
+                    scheduledRedisplay = null;
+                }
+                if (completionExecutor != null) {
+                    completionExecutor.shutdownNow();
+                    completionExecutor = null;
+                }
                 if (originalAttributes != null) {
                     terminal.setAttributes(originalAttributes);
                 }
@@ -775,7 +835,13 @@ public class LineReaderImpl implements LineReader, Flushable
                 terminal.writer().println(str);
             }
             if (reading) {
-                redisplay(false);
+                if (redisplayInterval() > 0) {
+                    // coalesce redisplays of bursts of messages
+                    redisplayPending = true;
+                    scheduleRedisplay();
+                } else {
+                    redisplay(false);
+                }
             }
             terminal.flush();
         } finally {
@@ -977,6 +1043,44 @@ public class LineReaderImpl implements LineReader, Flushable
         return parsedLine;
     }
 
+    @Override
+    public ParsedLine parseBuffer(int cursor, ParseContext context) throws SyntaxError {
+        Parser parser = this.parser;
+        Object result = computeFromBuffer(Arrays.asList(parser, cursor, context), line -> {
+            try {
+                return parser.parse(line, cursor, context);
+            } catch (SyntaxError e) {
+                return e;
+            }
+        });
+        if (result instanceof SyntaxError) {
+            throw (SyntaxError) result;
+        }
+        return (ParsedLine) result;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T computeFromBuffer(Object key, Function<String, T> function) {
+        long version = ((BufferImpl) buf).version();
+        synchronized (bufferValues) {
+            if (version != bufferValuesVersion) {
+                bufferValues.clear();
+                bufferValuesVersion = version;
+            } else if (bufferValues.containsKey(key)) {
+                return (T) bufferValues.get(key);
+            }
+        }
+        // computed outside of the lock, as the function may compute other values
+        T value = function.apply(buf.toString());
+        synchronized (bufferValues) {
+            if (version == bufferValuesVersion) {
+                bufferValues.put(key, value);
+            }
+        }
+        return value;
+    }
+
     @Override
     public String getLastBinding() {
         return bindingReader.getLastBinding();
@@ -2340,8 +2444,8 @@ public class LineReaderImpl implements LineReader, Flushable
 
     protected boolean undo() {
         isUndo = true;
-        if (undo.canUndo()) {
-            undo.undo();
+        if (undoLog.canUndo()) {
+            undoLog.undo();
             return true;
         }
         return false;
@@ -2349,13 +2453,56 @@ public class LineReaderImpl implements LineReader, Flushable
 
     protected boolean redo() {
         isUndo = true;
-        if (undo.canRedo()) {
-            undo.redo();
+        if (undoLog.canRedo()) {
+            undoLog.redo();
             return true;
         }
         return false;
     }
 
+    /**
+     * Exposes the undo log through the {@link UndoTree} api.
+     * A new state is recorded by closing the current group of edits.
+     */
+    private class UndoLogTree extends UndoTree<Buffer> {
+        UndoLogTree() {
+            super(LineReaderImpl.this::setBuffer);
+        }
+
+        @Override
+        public void clear() {
+            undoLog.clear();
+        }
+
+        @Override
+        public void newState(Buffer state) {
+            if (state != buf) {
+                setBuffer(state);
+            }
+            undoLog.commit();
+        }
+
+        @Override
+        public boolean canUndo() {
+            return undoLog.canUndo();
+        }
+
+        @Override
+        public boolean canRedo() {
+            return undoLog.canRedo();
+        }
+
+        @Override
+        public void undo() {
+            undoLog.undo();
+        }
+
+        @Override
+        public void redo() {
+            undoLog.redo();
+        }
+    }
+
     protected boolean sendBreak() {
         if (searchTerm == null) {
             buf.clear();
@@ -2617,6 +2764,8 @@ public class LineReaderImpl implements LineReader, Flushable
                         + ": " + searchTerm + "_");
 
         redisplay();
+        String compiledPattern = null;
+        Pattern pat = null;
         try {
             while (true) {
                 int prevSearchIndex = searchIndex;
@@ -2660,36 +2809,42 @@ public class LineReaderImpl implements LineReader, Flushable
                     searchFailing = false;
                 } else {
                     boolean caseInsensitive = isSet(Option.CASE_INSENSITIVE_SEARCH);
-                    Pattern pat = Pattern.compile(pattern, caseInsensitive ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE
-                                                                           : Pattern.UNICODE_CASE);
+                    int flags = caseInsensitive ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE
+                                                : Pattern.UNICODE_CASE;
+                    if (pat == null || pat.flags() != flags || !pattern.equals(compiledPattern)) {
+                        pat = Pattern.compile(pattern, flags);
+                        compiledPattern = pattern;
+                    }
+                    Pattern p = pat;
+                    String term = searchTerm.toString();
                     Pair<Integer, Integer> pair = null;
                     if (searchBackward) {
                         boolean nextOnly = next;
-                        pair = matches(pat, buf.toString(), searchIndex).stream()
-                                .filter(p -> nextOnly ? p.v < buf.cursor() : p.v <= buf.cursor())
+                        pair = matches(p, buf.toString(), searchIndex).stream()
+                                .filter(m -> nextOnly ? m.v < buf.cursor() : m.v <= buf.cursor())
                                 .max(Comparator.comparing(Pair::getV))
                                 .orElse(null);
                         if (pair == null) {
                             pair = StreamSupport.stream(
-                                    Spliterators.spliteratorUnknownSize(history.reverseIterator(searchIndex < 0 ? history.last() : searchIndex - 1), Spliterator.ORDERED), false)
-                                    .flatMap(e -> matches(pat, e.line(), e.index()).stream())
+                                    Spliterators.spliteratorUnknownSize(history.reverseSearchIterator(searchIndex < 0 ? history.last() : searchIndex - 1, term), Spliterator.ORDERED), false)
+                                    .flatMap(e -> matches(p, e.line(), e.index()).stream())
                                     .findFirst()
                                     .orElse(null);
                         }
                     } else {
                         boolean nextOnly = next;
-                        pair = matches(pat, buf.toString(), searchIndex).stream()
-                                .filter(p -> nextOnly ? p.v > buf.cursor() : p.v >= buf.cursor())
+                        pair = matches(p, buf.toString(), searchIndex).stream()
+                                .filter(m -> nextOnly ? m.v > buf.cursor() : m.v >= buf.cursor())
                                 .min(Comparator.comparing(Pair::getV))
                                 .orElse(null);
                         if (pair == null) {
                             pair = StreamSupport.stream(
-                                    Spliterators.spliteratorUnknownSize(history.iterator((searchIndex < 0 ? history.last() : searchIndex) + 1), Spliterator.ORDERED), false)
-                                    .flatMap(e -> matches(pat, e.line(), e.index()).stream())
+                                    Spliterators.spliteratorUnknownSize(history.searchIterator((searchIndex < 0 ? history.last() : searchIndex) + 1, term), Spliterator.ORDERED), false)
+                                    .flatMap(e -> matches(p, e.line(), e.index()).stream())
                                     .findFirst()
                                     .orElse(null);
                             if (pair == null && searchIndex >= 0) {
-                                pair = matches(pat, originalBuffer.toString(), -1).stream()
+                                pair = matches(p, originalBuffer.toString(), -1).stream()
                                         .min(Comparator.comparing(Pair::getV))
                                         .orElse(null);
                             }
@@ -2870,9 +3025,9 @@ public class LineReaderImpl implements LineReader, Flushable
         if (caseInsensitive) {
             searchTerm = searchTerm.toLowerCase();
         }
-        ListIterator<History.Entry> it = history.iterator(startIndex);
-        while (it.hasPrevious()) {
-            History.Entry e = it.previous();
+        Iterator<History.Entry> it = history.reverseSearchIterator(startIndex - 1, searchTerm);
+        while (it.hasNext()) {
+            History.Entry e = it.next();
             String line = e.line();
             if (caseInsensitive) {
                 line = line.toLowerCase();
@@ -2893,10 +3048,7 @@ public class LineReaderImpl implements LineReader, Flushable
         if (startIndex > history.last()) {
             startIndex = history.last();
         }
-        ListIterator<History.Entry> it = history.iterator(startIndex);
-        if (searchIndex != -1 && it.hasNext()) {
-            it.next();
-        }
+        Iterator<History.Entry> it = history.searchIterator(searchIndex != -1 ? startIndex + 1 : startIndex, searchTerm);
         while (it.hasNext()) {
             History.Entry e = it.next();
             String line = e.line();
@@ -2992,7 +3144,7 @@ public class LineReaderImpl implements LineReader, Flushable
         }
         try {
             curPos = buf.cursor();
-            parsedLine = parser.parse(buf.toString(), buf.cursor(), ParseContext.ACCEPT_LINE);
+            parsedLine = parseBuffer(buf.cursor(), ParseContext.ACCEPT_LINE);
         } catch (EOFError e) {
             StringBuilder sb = new StringBuilder("\n");
             indention(e.getOpenBrackets(), sb);
@@ -3816,10 +3968,75 @@ public class LineReaderImpl implements LineReader, Flushable
         return true;
     }
 
+    /**
+     * Redisplay the line, unless the line has been redisplayed less than
+     * the interval given by the {@link #REDISPLAY_RATE} variable ago.
+     * In such a case, the redisplay is deferred until no more input is
+     * received for the remaining of the interval, or until
+     * {@link #flushRedisplay()} is called.
+     */
+    protected void requestRedisplay() {
+        try {
+            lock.lock();
+            long interval = redisplayInterval();
+            if (interval <= 0 || System.nanoTime() - lastRedisplay >= interval) {
+                redisplay();
+            } else {
+                redisplayPending = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Immediately perform a redisplay which has been deferred.
+     */
+    public void flushRedisplay() {
+        try {
+            lock.lock();
+            if (redisplayPending && reading) {
+                redisplay();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long redisplayInterval() {
+        int rate = getInt(REDISPLAY_RATE, DEFAULT_REDISPLAY_RATE);
+        return rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+    }
+
+    /*
+     * Wait for more input until the deferred redisplay is due
+     */
+    private void awaitRedisplay() {
+        long remaining = lastRedisplay + redisplayInterval() - System.nanoTime();
+        long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining));
+        if (remaining <= 0 || peekCharacter(millis) == NonBlockingReader.READ_EXPIRED) {
+            flushRedisplay();
+        }
+    }
+
+    private void scheduleRedisplay() {
+        if (scheduledRedisplay != null && !scheduledRedisplay.isDone()) {
+            return;
+        }
+        if (redisplayScheduler == null) {
+            redisplayScheduler = Executors.newSingleThreadScheduledExecutor(r -> Threads.newThread(r, "JLine redisplay"));
+        }
+        long delay = lastRedisplay + redisplayInterval() - System.nanoTime();
+        scheduledRedisplay = redisplayScheduler.schedule(this::flushRedisplay, delay, TimeUnit.NANOSECONDS);
+    }
+
     protected void redisplay(boolean flush) {
         try {
             lock.lock();
 
+            redisplayPending = false;
+            lastRedisplay = System.nanoTime();
+
             if (skipRedisplay) {
                 skipRedisplay = false;
                 return;
@@ -3974,31 +4191,8 @@ public class LineReaderImpl implements LineReader, Flushable
         if (buffer.length() == 0) {
             return "";
         }
-        History history = getHistory();
-        StringBuilder sb = new StringBuilder();
-        for (char c: buffer.replace("\\", "\\\\").toCharArray()) {
-            if (c == '(' || c == ')' || c == '[' || c == ']' || c == '{' || c == '}' || c == '^' || c == '*'
-                     || c == '$' || c == '.' || c == '?' || c == '+') {
-                sb.append('\\');
-            }
-            sb.append(c);
-        }
-        Pattern pattern = Pattern.compile(sb.toString() + ".*", Pattern.DOTALL);
-        Iterator<History.Entry> iter = history.reverseIterator(history.last());
-        String suggestion = "";
-        int tot = 0;
-        while (iter.hasNext()) {
-            History.Entry entry = iter.next();
-            Matcher matcher = pattern.matcher(entry.line());
-            if (matcher.matches()) {
-                suggestion = entry.line().substring(buffer.length());
-                break;
-            } else if (tot > 200) {
-                break;
-            }
-            tot++;
-        }
-        return suggestion;
+        History.Entry entry = getHistory().lastStartingWith(buffer);
+        return entry != null ? entry.line().substring(buffer.length()) : "";
     }
 
     /**
@@ -4066,13 +4260,52 @@ public class LineReaderImpl implements LineReader, Flushable
         if (maskingCallback != null) {
             buffer = maskingCallback.display(buffer);
         }
-        if (highlighter != null && !isSet(Option.DISABLE_HIGHLIGHTER)
-                && buffer.length() < getInt(FEATURES_MAX_BUFFER_SIZE, DEFAULT_FEATURES_MAX_BUFFER_SIZE)) {
-            return highlighter.highlight(this, buffer);
+        if (highlighter != null && !isSet(Option.DISABLE_HIGHLIGHTER)) {
+            if (highlighter.canHighlightLines(this)) {
+                return highlightLines(buffer);
+            }
+            if (buffer.length() < getInt(FEATURES_MAX_BUFFER_SIZE, DEFAULT_FEATURES_MAX_BUFFER_SIZE)) {
+                return highlighter.highlight(this, buffer);
+            }
         }
         return new AttributedString(buffer);
     }
 
+    /**
+     * Highlight the buffer line by line, reusing the lines which have not
+     * changed since the last redisplay.
+     */
+    private AttributedString highlightLines(String buffer) {
+        Map<String, AttributedString> previous = highlightedLines;
+        if (linesHighlighter != highlighter) {
+            previous = Collections.emptyMap();
+            linesHighlighter = highlighter;
+        }
+        Map<String, AttributedString> lines = new HashMap<>();
+        AttributedStringBuilder sb = new AttributedStringBuilder(buffer.length());
+        int start = 0;
+        while (true) {
+            int end = buffer.indexOf('\n', start);
+            String line = buffer.substring(start, end >= 0 ? end : buffer.length());
+            AttributedString highlighted = lines.get(line);
+            if (highlighted == null) {
+                highlighted = previous.get(line);
+                if (highlighted == null) {
+                    highlighted = highlighter.highlightLine(this, line);
+                }
+                lines.put(line, highlighted);
+            }
+            sb.append(highlighted);
+            if (end < 0) {
+                break;
+            }
+            sb.append('\n');
+            start = end + 1;
+        }
+        highlightedLines = lines;
+        return sb.toAttributedString();
+    }
+
     private AttributedString expandPromptPattern(String pattern, int padToWidth,
                                                  String message, int line) {
         ArrayList<AttributedString> parts = new ArrayList<>();
@@ -4374,6 +4607,73 @@ public class LineReaderImpl implements LineReader, Flushable
         }
     }
 
+    /**
+     * Find the completion candidates for the given line.
+     * Asynchronous completers, and other completers when the
+     * {@link #COMPLETION_TIMEOUT} variable is set, are waited for
+     * until the timeout elapses, in which case the candidates found
+     * so far are returned, or until a key is pressed, in which case
+     * the completion is cancelled.
+     *
+     * @param line the line to complete
+     * @return the candidates, or <code>null</code> if the completion has been cancelled
+     * @throws Exception if the completer failed
+     */
+    protected List<Candidate> findCandidates(ParsedLine line) throws Exception {
+        Completer completer = this.completer;
+        List<Candidate> candidates = Collections.synchronizedList(new ArrayList<>());
+        long timeout = getLong(COMPLETION_TIMEOUT, DEFAULT_COMPLETION_TIMEOUT);
+        Future<?> future;
+        if (completer == null) {
+            return candidates;
+        } else if (completer instanceof AsyncCompleter) {
+            future = ((AsyncCompleter) completer).completeAsync(this, line, candidates::add);
+        } else if (timeout > 0) {
+            if (completionExecutor == null) {
+                completionExecutor = Executors.newCachedThreadPool(r -> Threads.newThread(r, "JLine completion"));
+            }
+            future = completionExecutor.submit(() -> completer.complete(this, line, candidates));
+        } else {
+            completer.complete(this, line, candidates);
+            return candidates;
+        }
+        long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+        while (true) {
+            try {
+                future.get(COMPLETION_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                break;
+            } catch (TimeoutException e) {
+                if (System.currentTimeMillis() >= deadline) {
+                    // take the partial results before cancelling
+                    List<Candidate> partial;
+                    synchronized (candidates) {
+                        partial = new ArrayList<>(candidates);
+                    }
+                    Log.debug("Completion timed out, using ", partial.size(), " candidates");
+                    future.cancel(true);
+                    return partial;
+                }
+                if (peekCharacter(1) != NonBlockingReader.READ_EXPIRED) {
+                    future.cancel(true);
+                    return null;
+                }
+            } catch (CancellationException e) {
+                break;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+        synchronized (candidates) {
+            return new ArrayList<>(candidates);
+        }
+    }
+
     protected boolean doComplete(CompletionType lst, boolean useMenu, boolean prefix) {
         return doComplete(lst, useMenu, prefix, false);
     }
@@ -4399,17 +4699,19 @@ public class LineReaderImpl implements LineReader, Flushable
         // Parse the command line
         CompletingParsedLine line;
         try {
-            line = wrap(parser.parse(buf.toString(), buf.cursor(), ParseContext.COMPLETE));
+            line = wrap(parseBuffer(buf.cursor(), ParseContext.COMPLETE));
         } catch (Exception e) {
             Log.info("Error while parsing line", e);
             return false;
         }
 
         // Find completion candidates
-        List<Candidate> candidates = new ArrayList<>();
+        List<Candidate> candidates;
         try {
-            if (completer != null) {
-                completer.complete(this, line, candidates);
+            candidates = findCandidates(line);
+            if (candidates == null) {
+                // cancelled by a key press
+                return true;
             }
         } catch (Exception e) {
             Log.info("Error while finding completion candidates", e);
@@ -4671,6 +4973,14 @@ public class LineReaderImpl implements LineReader, Flushable
         int lines;
         int columns;
         String completed;
+        // Layout used when only the displayed rows are rendered
+        int layoutWidth = -1;
+        int maxWidth;
+        int pageLines;
+        int pageColumns;
+        final Map<Integer, AttributedString> rows = new HashMap<>();
+        int renderedSelection = -1;
+        final boolean singleList;
 
         public MenuSupport(List<Candidate> original, String completed, BiFunction<CharSequence, Boolean, CharSequence> escaper) {
             this.possible = new ArrayList<>();
@@ -4680,6 +4990,7 @@ public class LineReaderImpl implements LineReader, Flushable
             this.word = "";
             this.completed = completed;
             computePost(original, null, possible, completed);
+            this.singleList = isSingleList(possible);
             next();
         }
 
@@ -4778,9 +5089,14 @@ public class LineReaderImpl implements LineReader, Flushable
             word = escaper.apply(completion().value(), true).toString();
             buf.write(word);
 
+            int displaySize = displayRows() - promptLines();
+            if (isPaged(displaySize)) {
+                updatePage(displaySize);
+                return;
+            }
+
             // Compute displayed prompt
             PostResult pr = computePost(possible, completion(), null, completed);
-            int displaySize = displayRows() - promptLines();
             if (pr.lines > displaySize) {
                 int displayed = displaySize - 1;
                 if (pr.selectedLine >= 0) {
@@ -4797,16 +5113,12 @@ public class LineReaderImpl implements LineReader, Flushable
                 }
                 List<AttributedString> lines = post.columnSplitLength(size.getColumns(), true, display.delayLineWrap());
                 List<AttributedString> sub = new ArrayList<>(lines.subList(topLine, topLine + displayed));
-                sub.add(new AttributedStringBuilder()
-                        .style(AttributedStyle.DEFAULT.foreground(AttributedStyle.CYAN))
-                        .append("rows ")
-                        .append(Integer.toString(topLine + 1))
-                        .append(" to ")
-                        .append(Integer.toString(topLine + displayed))
-                        .append(" of ")
-                        .append(Integer.toString(lines.size()))
-                        .append("\n")
-                        .style(AttributedStyle.DEFAULT).toAttributedString());
+                int total = lines.size();
+                if (lines.get(total - 1).length() == 0) {
+                    // the empty line after the final newline
+                    total--;
+                }
+                sub.add(footer(displayed, total));
                 computed = AttributedString.join(AttributedString.EMPTY, sub);
             } else {
                 computed = pr.post;
@@ -4815,6 +5127,100 @@ public class LineReaderImpl implements LineReader, Flushable
             columns = (possible.size() + lines - 1) / lines;
         }
 
+        /**
+         * Check if {@link #computePost(List, Candidate, List, String)} lays out
+         * the candidates in a single list without group names.
+         */
+        private boolean isSingleList(List<Candidate> candidates) {
+            boolean autoGroup = isSet(Option.AUTO_GROUP);
+            if (isSet(Option.GROUP)) {
+                Set<String> groups = new HashSet<>();
+                for (Candidate cand : candidates) {
+                    groups.add(cand.group() != null ? cand.group() : "");
+                }
+                // a single group is only named with auto group
+                return groups.size() <= 1 && (!autoGroup || groups.isEmpty() || groups.contains(""));
+            } else {
+                return !autoGroup || candidates.stream().allMatch(c -> c.group() == null);
+            }
+        }
+
+        /**
+         * Check if the menu can be rendered one page at a time, which is the
+         * case when the candidates are laid out in a single list without group
+         * names, each row fits on a terminal line, and there are more rows than
+         * can be displayed.  The column width is computed once for all the
+         * candidates, and only changes with the terminal width.
+         */
+        private boolean isPaged(int displaySize) {
+            if (!singleList || possible.size() < displaySize) {
+                // the candidates are grouped or may be displayed as a menu list
+                return false;
+            }
+            int width = size.getColumns();
+            if (width != layoutWidth) {
+                layoutWidth = width;
+                maxWidth = 0;
+                for (Candidate cand : possible) {
+                    maxWidth = Math.max(maxWidth, candidateWidth(cand, display::wcwidth));
+                }
+                if (maxWidth > 0) {
+                    int[] layout = columnLayout(possible.size(), width, maxWidth);
+                    pageLines = layout[0];
+                    pageColumns = layout[1];
+                }
+                rows.clear();
+            }
+            return maxWidth > 0 && maxWidth < width && pageLines > displaySize;
+        }
+
+        /**
+         * Render the displayed rows, reusing the ones already rendered,
+         * except for the rows of the previous and new selections.
+         */
+        private void updatePage(int displaySize) {
+            boolean rowsFirst = isSet(Option.LIST_ROWS_FIRST);
+            int selectedLine = rowsFirst ? selection / pageColumns : selection % pageLines;
+            int displayed = displaySize - 1;
+            if (selectedLine < topLine) {
+                topLine = selectedLine;
+            } else if (selectedLine >= topLine + displayed) {
+                topLine = selectedLine - displayed + 1;
+            }
+            if (renderedSelection >= 0) {
+                rows.remove(rowsFirst ? renderedSelection / pageColumns : renderedSelection % pageLines);
+            }
+            rows.remove(selectedLine);
+            rows.keySet().removeIf(l -> l < topLine || l >= topLine + displayed);
+            renderedSelection = selection;
+            List<AttributedString> sub = new ArrayList<>(displayed + 1);
+            for (int i = topLine; i < topLine + displayed; i++) {
+                sub.add(rows.computeIfAbsent(i, l -> {
+                    AttributedStringBuilder sb = new AttributedStringBuilder();
+                    toColumns(possible, layoutWidth, maxWidth, sb, completion(), completed,
+                            rowsFirst, false, new int[2], l, l + 1);
+                    return sb.toAttributedString();
+                }));
+            }
+            sub.add(footer(displayed, pageLines));
+            computed = AttributedString.join(AttributedString.EMPTY, sub);
+            lines = pageLines;
+            columns = pageColumns;
+        }
+
+        private AttributedString footer(int displayed, int total) {
+            return new AttributedStringBuilder()
+                    .style(AttributedStyle.DEFAULT.foreground(AttributedStyle.CYAN))
+                    .append("rows ")
+                    .append(Integer.toString(topLine + 1))
+                    .append(" to ")
+                    .append(Integer.toString(topLine + displayed))
+                    .append(" of ")
+                    .append(Integer.toString(total))
+                    .append("\n")
+                    .style(AttributedStyle.DEFAULT).toAttributedString();
+        }
+
         @Override
         public AttributedString get() {
             return computed;
@@ -5223,14 +5629,7 @@ public class LineReaderImpl implements LineReader, Flushable
             else if (item instanceof List) {
                 for (Candidate cand : (List<Candidate>) item) {
                     listSize++;
-                    int len = wcwidth.apply(cand.displ());
-                    if (cand.descr() != null) {
-                        len += MARGIN_BETWEEN_DISPLAY_AND_DESC;
-                        len += DESC_PREFIX.length();
-                        len += wcwidth.apply(cand.descr());
-                        len += DESC_SUFFIX.length();
-                    }
-                    maxWidth = Math.max(maxWidth, len);
+                    maxWidth = Math.max(maxWidth, candidateWidth(cand, wcwidth));
                 }
             }
         }
@@ -5270,9 +5669,48 @@ public class LineReaderImpl implements LineReader, Flushable
         return new PostResult(sb.toAttributedString(), out[0], out[1]);
     }
 
-    @SuppressWarnings("unchecked")
+    private static int candidateWidth(Candidate cand, Function<String, Integer> wcwidth) {
+        int len = wcwidth.apply(cand.displ());
+        if (cand.descr() != null) {
+            len += MARGIN_BETWEEN_DISPLAY_AND_DESC;
+            len += DESC_PREFIX.length();
+            len += wcwidth.apply(cand.descr());
+            len += DESC_SUFFIX.length();
+        }
+        return len;
+    }
+
+    /**
+     * Compute the number of rows and columns used to lay out candidates.
+     *
+     * @return the number of rows and columns
+     */
+    private static int[] columnLayout(int size, int width, int maxWidth) {
+        maxWidth = Math.min(width, maxWidth);
+        int c = width / maxWidth;
+        while (c > 1 && c * maxWidth + (c - 1) * MARGIN_BETWEEN_COLUMNS >= width) {
+            c--;
+        }
+        int lines = (size + c - 1) / c;
+        // Try to minimize the number of columns for the given number of rows
+        // Prevents eg 9 candiates being split 6/3 instead of 5/4.
+        int columns = (size + lines - 1) / lines;
+        return new int[] { lines, columns };
+    }
+
     protected void toColumns(Object items, int width, int maxWidth, AttributedStringBuilder sb, Candidate selection, String completed
                            , boolean rowsFirst, boolean doMenuList, int[] out) {
+        toColumns(items, width, maxWidth, sb, selection, completed, rowsFirst, doMenuList, out, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Same as {@link #toColumns(Object, int, int, AttributedStringBuilder, Candidate, String, boolean, boolean, int[])},
+     * but only renders the rows of a candidate list from <code>fromLine</code> (inclusive)
+     * to <code>toLine</code> (exclusive).
+     */
+    @SuppressWarnings("unchecked")
+    private void toColumns(Object items, int width, int maxWidth, AttributedStringBuilder sb, Candidate selection, String completed
+                           , boolean rowsFirst, boolean doMenuList, int[] out, int fromLine, int toLine) {
         if (maxWidth <= 0 || width <= 0) {
             return;
         }
@@ -5300,21 +5738,16 @@ public class LineReaderImpl implements LineReader, Flushable
         else if (items instanceof List) {
             List<Candidate> candidates = (List<Candidate>) items;
             maxWidth = Math.min(width, maxWidth);
-            int c = width / maxWidth;
-            while (c > 1 && c * maxWidth + (c - 1) * MARGIN_BETWEEN_COLUMNS >= width) {
-                c--;
-            }
-            int lines = (candidates.size() + c - 1) / c;
-            // Try to minimize the number of columns for the given number of rows
-            // Prevents eg 9 candiates being split 6/3 instead of 5/4.
-            final int columns = (candidates.size() + lines - 1) / lines;
+            int[] layout = columnLayout(candidates.size(), width, maxWidth);
+            final int lines = layout[0];
+            final int columns = layout[1];
             IntBinaryOperator index;
             if (rowsFirst) {
                 index = (i, j) -> i * columns + j;
             } else {
                 index = (i, j) -> j * lines + i;
             }
-            for (int i = 0; i < lines; i++) {
+            for (int i = Math.max(0, fromLine); i < Math.min(lines, toLine); i++) {
                 if (doMenuList) {
                     sb.style(AttributedStyle.DEFAULT);
                     sb.append('\t');
@@ -68,6 +68,33 @@ public class ReaderUtils {
         return nb;
     }
 
+    /**
+     * Check if a line matches the colon separated patterns used by
+     * the {@link LineReader#HISTORY_IGNORE} variable.
+     *
+     * @param patterns the patterns
+     * @param line the line to check
+     * @return <code>true</code> if the line matches one of the patterns
+     */
+    public static boolean matchPatterns(String patterns, String line) {
+        if (patterns == null || patterns.isEmpty()) {
+            return false;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < patterns.length(); i++) {
+            char ch = patterns.charAt(i);
+            if (ch == '\\') {
+                ch = patterns.charAt(++i);
+                sb.append(ch);
+            } else if (ch == ':') {
+                sb.append('|');
+            } else if (ch == '*') {
+                sb.append('.').append('*');
+            }
+        }
+        return line.matches(sb.toString());
+    }
+
     public static int distance(String word, String cand) {
         if (word.length() < cand.length()) {
             int d1 = Levenshtein.distance(word, cand.substring(0, Math.min(cand.length(), word.length())));
@@ -78,4 +105,19 @@ public class ReaderUtils {
         }
     }
 
+    /**
+     * Same as {@link #distance(String, String)}, but gives up once the
+     * distance is known to exceed <code>max</code>.
+     *
+     * @return the distance if it does not exceed <code>max</code>, a greater value otherwise
+     */
+    public static int distance(String word, String cand, int max) {
+        int d2 = Levenshtein.distance(word, cand, max);
+        if (word.length() < cand.length()) {
+            int d1 = Levenshtein.distance(word, cand.subSequence(0, word.length()), max);
+            return Math.min(d1, d2);
+        }
+        return d2;
+    }
+
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Undo log recording the edits made to a {@link BufferImpl}.
+ * <p>
+ * Instead of keeping a snapshot of the whole buffer for each state, only
+ * the inserted and removed characters are recorded, so that the cost of
+ * an edit and of its undo is proportional to the size of the edit, not to
+ * the size of the buffer.  Edits are grouped: all the edits recorded
+ * between two calls to {@link #commit()} are undone and redone together.
+ * </p>
+ * <p>
+ * Like {@link UndoTree}, undoing a group restores the cursor position
+ * the buffer had when the previous group was committed.
+ * </p>
+ */
+public class UndoLog {
+
+    private final BufferImpl buffer;
+    private final List<Group> groups = new ArrayList<>();
+    private List<Edit> pending = new ArrayList<>();
+    private int current;
+    private int initialCursor;
+    private boolean applying;
+
+    public UndoLog(BufferImpl buffer) {
+        this.buffer = buffer;
+        buffer.setUndoLog(this);
+    }
+
+    /**
+     * Forget all recorded edits, the current state of the buffer
+     * becomes the initial state.
+     */
+    public void clear() {
+        groups.clear();
+        pending = new ArrayList<>();
+        current = 0;
+        initialCursor = buffer.cursor();
+    }
+
+    /**
+     * Close the current group of edits.
+     * Edits which have been undone can not be redone anymore
+     * once a new group has been committed.
+     *
+     * @return <code>true</code> if a new group has been created
+     */
+    public boolean commit() {
+        if (pending.isEmpty()) {
+            return false;
+        }
+        while (groups.size() > current) {
+            groups.remove(groups.size() - 1);
+        }
+        groups.add(new Group(pending, buffer.cursor()));
+        pending = new ArrayList<>();
+        current++;
+        return true;
+    }
+
+    public boolean canUndo() {
+        return current > 0 || !pending.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return current < groups.size() && pending.isEmpty();
+    }
+
+    public void undo() {
+        commit();
+        if (!canUndo()) {
+            throw new IllegalStateException("Cannot undo.");
+        }
+        List<Edit> edits = groups.get(--current).edits;
+        applying = true;
+        try {
+            for (int i = edits.size() - 1; i >= 0; i--) {
+                Edit edit = edits.get(i);
+                buffer.replace(edit.position, edit.inserted.length, edit.removed);
+            }
+        } finally {
+            applying = false;
+        }
+        buffer.cursor(current > 0 ? groups.get(current - 1).cursor : initialCursor);
+    }
+
+    public void redo() {
+        if (!canRedo()) {
+            throw new IllegalStateException("Cannot redo.");
+        }
+        Group group = groups.get(current++);
+        applying = true;
+        try {
+            for (Edit edit : group.edits) {
+                buffer.replace(edit.position, edit.removed.length, edit.inserted);
+            }
+        } finally {
+            applying = false;
+        }
+        buffer.cursor(group.cursor);
+    }
+
+    /**
+     * Called by the buffer when <code>removed</code> characters at the
+     * given position have been replaced with <code>inserted</code>.
+     */
+    void record(int position, int[] removed, int[] inserted) {
+        if (!applying) {
+            pending.add(new Edit(position, removed, inserted));
+        }
+    }
+
+    boolean isRecording() {
+        return !applying;
+    }
+
+    private static class Edit {
+        final int position;
+        final int[] removed;
+        final int[] inserted;
+
+        Edit(int position, int[] removed, int[] inserted) {
+            this.position = position;
+            this.removed = removed;
+            this.inserted = inserted;
+        }
+    }
+
+    private static class Group {
+        final List<Edit> edits;
+        final int cursor;
+
+        Group(List<Edit> edits, int cursor) {
+            this.edits = edits;
+            this.cursor = cursor;
+        }
+    }
+
+}
@@ -8,15 +8,26 @@
  */
 package org.jline.reader.impl.completer;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import org.jline.reader.AsyncCompleter;
 import org.jline.reader.Candidate;
 import org.jline.reader.Completer;
 import org.jline.reader.LineReader;
 import org.jline.reader.ParsedLine;
+import org.jline.utils.Log;
 
 /**
  * Completer which contains multiple completers and aggregates them together.
@@ -28,6 +39,8 @@ public class AggregateCompleter
     implements Completer
 {
     private final Collection<Completer> completers;
+    private Executor executor;
+    private long timeout;
 
     /**
      * Construct an AggregateCompleter with the given completers.
@@ -59,18 +72,110 @@ public class AggregateCompleter
         return completers;
     }
 
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Run the aggregated completers in parallel on the given executor,
+     * so that the completion takes as long as the slowest completer
+     * instead of the sum of all of them.  The completers must then be
+     * thread safe.  A bounded pool is usually appropriate, such as the
+     * ones created by {@link java.util.concurrent.Executors#newFixedThreadPool(int)}.
+     * Asynchronous completers are started directly without using the executor.
+     *
+     * @param executor the executor, or <code>null</code> to run the completers sequentially
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Set the maximum time in milliseconds to wait for the completers when
+     * running them in parallel.  The candidates found by a completer
+     * which did not finish in time are used and the completer is cancelled.
+     *
+     * @param timeout the timeout in milliseconds, or zero to wait for all completers
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
     /**
      * Perform a completion operation across all aggregated completers.
      *
      * The effect is similar to the following code:
      * <blockquote><pre>{@code completers.forEach(c -> c.complete(reader, line, candidates));}</pre></blockquote>
      *
+     * When an executor has been set, the completers are run in parallel, but
+     * the candidates are still added in the order of the completers.
+     *
      * @see Completer#complete(LineReader, ParsedLine, List)
      */
     public void complete(LineReader reader, final ParsedLine line, final List<Candidate> candidates) {
         Objects.requireNonNull(line);
         Objects.requireNonNull(candidates);
-        completers.forEach(c -> c.complete(reader, line, candidates));
+        Executor executor = this.executor;
+        if (executor == null || completers.size() < 2) {
+            completers.forEach(c -> c.complete(reader, line, candidates));
+            return;
+        }
+
+        // Start all completers, each one with its own list of candidates
+        List<Completer> list = new ArrayList<>(completers);
+        List<List<Candidate>> results = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (Completer completer : list) {
+            List<Candidate> result = Collections.synchronizedList(new ArrayList<>());
+            if (completer instanceof AsyncCompleter) {
+                futures.add(((AsyncCompleter) completer).completeAsync(reader, line, result::add));
+            } else {
+                FutureTask<Void> task = new FutureTask<>(() -> completer.complete(reader, line, result), null);
+                executor.execute(task);
+                futures.add(task);
+            }
+            results.add(result);
+        }
+
+        // Wait for them and merge the candidates in order
+        long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                Future<?> future = futures.get(i);
+                List<Candidate> result = results.get(i);
+                try {
+                    if (deadline == Long.MAX_VALUE) {
+                        future.get();
+                    } else {
+                        future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                    }
+                } catch (TimeoutException e) {
+                    Log.debug("Completer timed out: ", list.get(i));
+                } catch (CancellationException e) {
+                    // use the candidates found so far
+                }
+                synchronized (result) {
+                    candidates.addAll(result);
+                }
+                future.cancel(true);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            futures.forEach(f -> f.cancel(true));
+        }
     }
 
     /**
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.completer;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Cache of directory listings, shared by the file name completers.
+ * <p>
+ * Each entry is listed with the attributes the completers need, read in a
+ * single call per file, plus one for the target of symbolic links.  A
+ * listing is reused as long as the modification time of its directory is
+ * unchanged, which costs a single call per completion.  As the timestamps
+ * of some file systems are coarse, a listing made shortly after the last
+ * modification of its directory is not trusted, and made again on the next
+ * completion.
+ * </p>
+ * <p>
+ * Changes to the attributes of the files themselves do not modify their
+ * directory, and thus are only seen once the listing is made again.
+ * </p>
+ */
+public class DirectoryListingCache {
+
+    /** Delay after a modification during which a listing is not trusted */
+    static final long RACY_DELAY = 2000;
+
+    private static final DirectoryListingCache DEFAULT = new DirectoryListingCache(32);
+
+    private static final Set<PosixFilePermission> EXECUTE = Collections.unmodifiableSet(
+            EnumSet.of(PosixFilePermission.OWNER_EXECUTE,
+                    PosixFilePermission.GROUP_EXECUTE, PosixFilePermission.OTHERS_EXECUTE));
+
+    private final Map<Path, Listing> listings;
+
+    /**
+     * The cache shared by the file name completers.
+     */
+    public static DirectoryListingCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param maxDirectories the number of listings to keep
+     */
+    public DirectoryListingCache(int maxDirectories) {
+        this.listings = new LinkedHashMap<Path, Listing>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Listing> eldest) {
+                return size() > maxDirectories;
+            }
+        };
+    }
+
+    /**
+     * List the given directory.
+     *
+     * @param dir the directory
+     * @return the entries of the directory
+     * @throws IOException if the directory can not be read
+     */
+    public synchronized Collection<Entry> list(Path dir) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(dir, BasicFileAttributes.class);
+        Listing listing = listings.get(dir);
+        if (listing == null || !listing.isValid(attrs)) {
+            listing = new Listing(dir, attrs);
+            listings.put(dir, listing);
+        }
+        return listing.values;
+    }
+
+    /**
+     * Get the cached entry of a file, if its directory has been listed.
+     *
+     * @param path the file, as given by {@link Entry#path()}
+     * @return the entry, or <code>null</code> if not cached
+     */
+    public synchronized Entry getEntry(Path path) {
+        Path parent = path.getParent();
+        Listing listing = parent != null ? listings.get(parent) : null;
+        return listing != null ? listing.entries.get(path) : null;
+    }
+
+    /**
+     * Discard the listing of the given directory.
+     */
+    public synchronized void invalidate(Path dir) {
+        listings.remove(dir);
+    }
+
+    /**
+     * Discard all the listings.
+     */
+    public synchronized void clear() {
+        listings.clear();
+    }
+
+    private static class Listing {
+        final Map<Path, Entry> entries = new LinkedHashMap<>();
+        final Collection<Entry> values = Collections.unmodifiableCollection(entries.values());
+        final FileTime modified;
+        final Object fileKey;
+        final long listed;
+
+        Listing(Path dir, BasicFileAttributes attrs) throws IOException {
+            this.modified = attrs.lastModifiedTime();
+            this.fileKey = attrs.fileKey();
+            this.listed = System.currentTimeMillis();
+            Set<String> views = dir.getFileSystem().supportedFileAttributeViews();
+            Class<? extends BasicFileAttributes> type = views.contains("posix") ? PosixFileAttributes.class
+                    : views.contains("dos") ? DosFileAttributes.class
+                    : BasicFileAttributes.class;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path path : stream) {
+                    entries.put(path, new Entry(path, type));
+                }
+            }
+        }
+
+        boolean isValid(BasicFileAttributes attrs) {
+            return modified.equals(attrs.lastModifiedTime())
+                    && Objects.equals(fileKey, attrs.fileKey())
+                    && listed - modified.toMillis() > RACY_DELAY;
+        }
+    }
+
+    /**
+     * A file and the attributes used by the file name completers.
+     */
+    public static final class Entry {
+        private final Path path;
+        private final boolean directory;
+        private final boolean regularFile;
+        private final boolean symbolicLink;
+        private final boolean executable;
+        private final boolean hidden;
+
+        Entry(Path path, Class<? extends BasicFileAttributes> type) {
+            this.path = path;
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(path, type, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException | UnsupportedOperationException e) {
+                attrs = null;
+            }
+            BasicFileAttributes target = attrs;
+            if (attrs != null && attrs.isSymbolicLink()) {
+                try {
+                    target = Files.readAttributes(path, type);
+                } catch (IOException e) {
+                    // Dangling link
+                    target = null;
+                }
+            }
+            this.symbolicLink = attrs != null && attrs.isSymbolicLink();
+            this.directory = target != null && target.isDirectory();
+            this.regularFile = target != null && target.isRegularFile();
+            if (target instanceof PosixFileAttributes) {
+                Set<PosixFilePermission> permissions = ((PosixFileAttributes) target).permissions();
+                this.executable = !Collections.disjoint(permissions, EXECUTE);
+            } else {
+                this.executable = false;
+            }
+            if (attrs instanceof DosFileAttributes) {
+                this.hidden = ((DosFileAttributes) attrs).isHidden();
+            } else if (attrs instanceof PosixFileAttributes) {
+                this.hidden = path.getFileName().toString().startsWith(".");
+            } else {
+                this.hidden = isHidden(path);
+            }
+        }
+
+        private static boolean isHidden(Path path) {
+            try {
+                return Files.isHidden(path);
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        public boolean isRegularFile() {
+            return regularFile;
+        }
+
+        public boolean isSymbolicLink() {
+            return symbolicLink;
+        }
+
+        /**
+         * Whether any of the execute permissions is set, as with <code>ls -F</code>.
+         * This is always false on file systems without POSIX permissions.
+         */
+        public boolean isExecutable() {
+            return executable;
+        }
+
+        public boolean isHidden() {
+            return hidden;
+        }
+    }
+
+}
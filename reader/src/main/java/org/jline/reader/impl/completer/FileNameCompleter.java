@@ -73,9 +73,13 @@ public class FileNameCompleter implements Completer
             current = getUserDir();
         }
         try {
-            Files.newDirectoryStream(current, this::accept).forEach(p -> {
+            for (DirectoryListingCache.Entry entry : getListingCache().list(current)) {
+                Path p = entry.path();
+                if (!accept(p)) {
+                    continue;
+                }
                 String value = curBuf + p.getFileName().toString();
-                if (Files.isDirectory(p)) {
+                if (entry.isDirectory()) {
                     candidates.add(new Candidate(
                             value + (reader.isSet(Option.AUTO_PARAM_SLASH) ? sep : ""),
                             getDisplay(reader.getTerminal(), p),
@@ -87,13 +91,17 @@ public class FileNameCompleter implements Completer
                     candidates.add(new Candidate(value, getDisplay(reader.getTerminal(), p),
                             null, null, null, null, true));
                 }
-            });
+            }
         } catch (IOException e) {
             // Ignore
         }
     }
 
     protected boolean accept(Path path) {
+        DirectoryListingCache.Entry entry = getListingCache().getEntry(path);
+        if (entry != null) {
+            return !entry.isHidden();
+        }
         try {
             return !Files.isHidden(path);
         } catch (IOException e) {
@@ -101,6 +109,10 @@ public class FileNameCompleter implements Completer
         }
     }
 
+    protected DirectoryListingCache getListingCache() {
+        return DirectoryListingCache.getDefault();
+    }
+
     protected Path getUserDir() {
         return Paths.get(System.getProperty("user.dir"));
     }
@@ -112,12 +124,13 @@ public class FileNameCompleter implements Completer
     protected String getDisplay(Terminal terminal, Path p) {
         // TODO: use $LS_COLORS for output
         String name = p.getFileName().toString();
-        if (Files.isDirectory(p)) {
+        DirectoryListingCache.Entry entry = getListingCache().getEntry(p);
+        if (entry != null ? entry.isDirectory() : Files.isDirectory(p)) {
             AttributedStringBuilder sb = new AttributedStringBuilder();
             sb.styled(AttributedStyle.BOLD.foreground(AttributedStyle.RED), name);
             sb.append("/");
             name = sb.toAnsi(terminal);
-        } else if (Files.isSymbolicLink(p)) {
+        } else if (entry != null ? entry.isSymbolicLink() : Files.isSymbolicLink(p)) {
             AttributedStringBuilder sb = new AttributedStringBuilder();
             sb.styled(AttributedStyle.BOLD.foreground(AttributedStyle.RED), name);
             sb.append("@");
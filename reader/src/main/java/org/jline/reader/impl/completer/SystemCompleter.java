@@ -9,6 +9,7 @@
 package org.jline.reader.impl.completer;
 
 import java.util.*;
+import java.util.concurrent.Executor;
 
 import org.jline.reader.Candidate;
 import org.jline.reader.Completer;
@@ -26,6 +27,8 @@ public class SystemCompleter implements Completer {
     private Map<String,String> aliasCommand = new HashMap<>();
     private StringsCompleter commands;
     private boolean compiled = false;
+    private Executor executor;
+    private final List<AggregateCompleter> aggregates = new ArrayList<>();
 
     public SystemCompleter() {}
 
@@ -58,6 +61,24 @@ public class SystemCompleter implements Completer {
         }
     }
 
+    /**
+     * Run the completers registered for a same command in parallel
+     * on the given executor.
+     *
+     * @param executor the executor, or <code>null</code> to run them sequentially
+     * @see AggregateCompleter#setExecutor(Executor)
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+        for (AggregateCompleter aggregate : aggregates) {
+            aggregate.setExecutor(executor);
+        }
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
     public boolean isCompiled() {
         return compiled;
     }
@@ -132,8 +153,11 @@ public class SystemCompleter implements Completer {
             if (entry.getValue().size() == 1) {
                 compiledCompleters.put(entry.getKey(), entry.getValue());
             } else {
+                AggregateCompleter aggregate = new AggregateCompleter(entry.getValue());
+                aggregate.setExecutor(executor);
+                aggregates.add(aggregate);
                 compiledCompleters.put(entry.getKey(), new ArrayList<Completer>());
-                compiledCompleters.get(entry.getKey()).add(new AggregateCompleter(entry.getValue()));
+                compiledCompleters.get(entry.getKey()).add(aggregate);
             }
         }
         completers = compiledCompleters;
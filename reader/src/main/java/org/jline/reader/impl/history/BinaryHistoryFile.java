@@ -0,0 +1,529 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.history;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jline.reader.History;
+
+/**
+ * Append-only binary history file.
+ * <p>
+ * The data file starts with an 8 bytes header (magic and version) followed by
+ * records made of the length of the line in bytes (int), the entry time in
+ * milliseconds (long) and the UTF-8 encoded line.  A companion file, with the
+ * same name and an <code>.idx</code> extension, holds an 8 bytes header
+ * followed by the offset (long) of each record in the data file.
+ * </p>
+ * <p>
+ * Both files are memory-mapped and records are decoded on access, so that
+ * opening a file does not depend on its size, and appending a record only
+ * writes the record and its offset.  The files are mapped in windows, so
+ * that their size is not limited by the 2 GiB a mapped buffer can address.
+ * If the index is missing or behind the data file, for example after a crash,
+ * it is rebuilt from the last indexed record when opening the file.
+ * </p>
+ * <p>
+ * Several processes can share the same file: appends are done while holding
+ * a lock on the data file.  When the file is rewritten, the new files are
+ * moved in place and the magic of the old data file is then replaced, while
+ * still holding its lock, so that the processes which still have the old
+ * file open notice it and reopen the file before their next append, and
+ * when refreshed.
+ * </p>
+ */
+final class BinaryHistoryFile implements Closeable {
+
+    static final int MAGIC = 0x4A4C4842;          // "JLHB"
+    static final int INDEX_MAGIC = 0x4A4C4849;    // "JLHI"
+    static final int RETIRED_MAGIC = 0x4A4C4858;  // "JLHX"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 12;
+    static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final Path path;
+    private final int windowSize;
+    private FileChannel data;
+    private FileChannel index;
+    private Region dataMap;
+    private Region indexMap;
+    private int count;
+    private int generation;
+
+    BinaryHistoryFile(Path path) throws IOException {
+        this(path, WINDOW_SIZE);
+    }
+
+    BinaryHistoryFile(Path path, int windowSize) throws IOException {
+        this.path = path;
+        this.windowSize = windowSize;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null && !Files.exists(parent)) {
+            Files.createDirectories(parent);
+        }
+        open();
+    }
+
+    private void open() throws IOException {
+        while (true) {
+            FileChannel data = FileChannel.open(path,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+            FileChannel index;
+            try {
+                index = FileChannel.open(indexPath(path),
+                        StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+            } catch (IOException e) {
+                data.close();
+                throw e;
+            }
+            this.data = data;
+            this.index = index;
+            this.dataMap = new Region(data, windowSize);
+            this.indexMap = new Region(index, windowSize);
+            boolean retired;
+            try {
+                synchronized (BinaryHistoryFile.class) {
+                    FileLock lock = data.lock();
+                    try {
+                        // the file may have been replaced since it has been opened
+                        retired = isRetired();
+                        if (!retired) {
+                            init();
+                        }
+                    } finally {
+                        lock.release();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+            if (!retired) {
+                return;
+            }
+            close();
+        }
+    }
+
+    static Path indexPath(Path path) {
+        return path.resolveSibling(path.getFileName().toString() + ".idx");
+    }
+
+    /**
+     * Check if the given file is a binary history file.
+     */
+    static boolean isBinary(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            return read(channel, header, 0) && header.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Write the given entries to a new binary history file, replacing any existing one.
+     */
+    static void write(Path path, Iterable<History.Entry> entries) throws IOException {
+        if (Files.exists(path) && Files.size(path) > 0 && isBinary(path)) {
+            try (BinaryHistoryFile file = new BinaryHistoryFile(path)) {
+                file.replace(entries);
+            }
+        } else {
+            writeFiles(path, entries);
+        }
+    }
+
+    /**
+     * Write the given entries to new files and move them in place.
+     */
+    private static void writeFiles(Path path, Iterable<History.Entry> entries) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null && !Files.exists(parent)) {
+            Files.createDirectories(parent);
+        }
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        Path tempIndex = indexPath(temp);
+        try {
+            try (FileChannel data = FileChannel.open(temp, StandardOpenOption.WRITE);
+                 FileChannel index = FileChannel.open(tempIndex, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+                writeHeader(data, MAGIC);
+                writeHeader(index, INDEX_MAGIC);
+                long position = HEADER_SIZE;
+                ByteBuffer offsets = ByteBuffer.allocate(8 * 1024);
+                for (History.Entry entry : entries) {
+                    ByteBuffer record = record(entry.time().toEpochMilli(), entry.line());
+                    int length = record.remaining();
+                    writeFully(data, record, position);
+                    if (!offsets.hasRemaining()) {
+                        offsets.flip();
+                        writeFully(index, offsets, index.size());
+                        offsets.clear();
+                    }
+                    offsets.putLong(position);
+                    position += length;
+                }
+                offsets.flip();
+                writeFully(index, offsets, index.size());
+            }
+            Files.move(tempIndex, indexPath(path), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+            Files.deleteIfExists(tempIndex);
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    /**
+     * Number of records in the file, as of the last append or refresh.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Number of times the file has been reopened after being replaced.
+     * Indexes of records obtained before a change are no longer valid.
+     */
+    int generation() {
+        return generation;
+    }
+
+    /**
+     * Pick up the records appended by other processes, reopening the file
+     * if it has been replaced.
+     */
+    int refresh() throws IOException {
+        if (isRetired()) {
+            reopen();
+        } else {
+            updateCount();
+        }
+        return count;
+    }
+
+    long time(int i) throws IOException {
+        return dataMap.getLong(offset(i) + 4);
+    }
+
+    String line(int i) throws IOException {
+        long offset = offset(i);
+        int length = dataMap.getInt(offset);
+        return StandardCharsets.UTF_8.decode(dataMap.slice(offset + RECORD_HEADER_SIZE, length)).toString();
+    }
+
+    void append(long time, String line) throws IOException {
+        ByteBuffer record = record(time, line);
+        locked(() -> {
+            long position = data.size();
+            writeFully(data, record, position);
+            ByteBuffer offset = ByteBuffer.allocate(8);
+            offset.putLong(0, position);
+            writeFully(index, offset, index.size());
+            updateCount();
+        });
+    }
+
+    /**
+     * Remove the last record.
+     */
+    void removeLast() throws IOException {
+        locked(() -> {
+            updateCount();
+            if (count > 0) {
+                long offset = offset(count - 1);
+                dataMap.reset();
+                indexMap.reset();
+                data.truncate(offset);
+                index.truncate(HEADER_SIZE + (count - 1) * 8L);
+                count--;
+            }
+        });
+    }
+
+    /**
+     * Rewrite the file with its most recent records, removing duplicates,
+     * if it holds more than the given threshold of records.
+     */
+    void trim(int max, int threshold) throws IOException {
+        locked(() -> {
+            updateCount();
+            if (count > threshold) {
+                List<History.Entry> entries = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    entries.add(new DefaultHistory.EntryImpl(i, Instant.ofEpochMilli(time(i)), line(i)));
+                }
+                DefaultHistory.doTrimHistory(entries, max);
+                writeFiles(path, entries);
+                retire();
+            }
+        });
+        refresh();
+    }
+
+    /**
+     * Replace the content of the file with the given entries.
+     */
+    void replace(Iterable<History.Entry> entries) throws IOException {
+        locked(() -> {
+            writeFiles(path, entries);
+            retire();
+        });
+        refresh();
+    }
+
+    /**
+     * Remove all the records.
+     */
+    void clear() throws IOException {
+        replace(Collections.emptyList());
+    }
+
+    void force() throws IOException {
+        data.force(false);
+        index.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        dataMap.reset();
+        indexMap.reset();
+        try {
+            data.close();
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * Run the given action while holding the lock on the data file,
+     * reopening the file first if it has been replaced.
+     */
+    private void locked(IOAction action) throws IOException {
+        synchronized (BinaryHistoryFile.class) {
+            while (true) {
+                FileLock lock = data.lock();
+                try {
+                    if (!isRetired()) {
+                        action.run();
+                        return;
+                    }
+                } finally {
+                    lock.release();
+                }
+                reopen();
+            }
+        }
+    }
+
+    private boolean isRetired() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        return read(data, header, 0) && header.getInt(0) == RETIRED_MAGIC;
+    }
+
+    /**
+     * Mark this file as replaced, the lock on the data file being held.
+     */
+    private void retire() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        header.putInt(0, RETIRED_MAGIC);
+        writeFully(data, header, 0);
+    }
+
+    private void reopen() throws IOException {
+        close();
+        open();
+        generation++;
+    }
+
+    private void updateCount() throws IOException {
+        count = (int) ((index.size() - HEADER_SIZE) / 8);
+    }
+
+    private void init() throws IOException {
+        if (data.size() == 0) {
+            writeHeader(data, MAGIC);
+            index.truncate(0);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (!read(data, header, 0) || header.getInt(0) != MAGIC) {
+                throw new IOException("Not a binary history file: " + path);
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported binary history file version " + header.getInt(4) + ": " + path);
+            }
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (index.size() < HEADER_SIZE || !read(index, header, 0) || header.getInt(0) != INDEX_MAGIC) {
+            index.truncate(0);
+            writeHeader(index, INDEX_MAGIC);
+        }
+        // drop any partially written offset
+        index.truncate(HEADER_SIZE + (index.size() - HEADER_SIZE) / 8 * 8);
+        updateCount();
+        // drop offsets of records which are not entirely in the data file
+        long dataSize = data.size();
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        long end = HEADER_SIZE;
+        while (count > 0) {
+            buffer.clear();
+            buffer.limit(8);
+            long offset = read(index, buffer, HEADER_SIZE + (count - 1) * 8L) ? buffer.getLong(0) : -1;
+            buffer.clear();
+            if (offset >= HEADER_SIZE && read(data, buffer, offset)) {
+                int length = buffer.getInt(0);
+                if (length >= 0 && offset + RECORD_HEADER_SIZE + length <= dataSize) {
+                    end = offset + RECORD_HEADER_SIZE + length;
+                    break;
+                }
+            }
+            count--;
+        }
+        index.truncate(HEADER_SIZE + count * 8L);
+        // index records which have been written to the data file but not to the index
+        while (end + RECORD_HEADER_SIZE <= dataSize) {
+            buffer.clear();
+            if (!read(data, buffer, end)) {
+                break;
+            }
+            int length = buffer.getInt(0);
+            if (length < 0 || end + RECORD_HEADER_SIZE + length > dataSize) {
+                break;
+            }
+            ByteBuffer offset = ByteBuffer.allocate(8);
+            offset.putLong(0, end);
+            writeFully(index, offset, index.size());
+            count++;
+            end += RECORD_HEADER_SIZE + length;
+        }
+        // drop any partially written record
+        if (end < dataSize) {
+            data.truncate(end);
+        }
+    }
+
+    private long offset(int i) throws IOException {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + count);
+        }
+        return indexMap.getLong(HEADER_SIZE + i * 8L);
+    }
+
+    @FunctionalInterface
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    private static ByteBuffer record(long time, String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + bytes.length);
+        record.putInt(bytes.length);
+        record.putLong(time);
+        record.put(bytes);
+        record.flip();
+        return record;
+    }
+
+    private static void writeHeader(FileChannel channel, int magic) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(magic);
+        header.putInt(VERSION);
+        header.flip();
+        writeFully(channel, header, 0);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * A read-only mapping of a window of a file, which is moved to cover
+     * the accessed bytes and grown when the file grows.  Positions are
+     * relative to the start of the file.
+     */
+    private static final class Region {
+        private final FileChannel channel;
+        private final int windowSize;
+        private MappedByteBuffer buffer;
+        private long base;
+
+        Region(FileChannel channel, int windowSize) {
+            this.channel = channel;
+            this.windowSize = windowSize;
+        }
+
+        int getInt(long position) throws IOException {
+            int index = map(position, 4);
+            return buffer.getInt(index);
+        }
+
+        long getLong(long position) throws IOException {
+            int index = map(position, 8);
+            return buffer.getLong(index);
+        }
+
+        ByteBuffer slice(long position, int length) throws IOException {
+            int start = map(position, length);
+            ByteBuffer slice = buffer.duplicate();
+            slice.limit(start + length);
+            slice.position(start);
+            return slice;
+        }
+
+        void reset() {
+            buffer = null;
+        }
+
+        /**
+         * Map the given bytes and return the index of the first one in the buffer.
+         */
+        private int map(long position, int length) throws IOException {
+            if (buffer == null || position < base || position + length > base + buffer.capacity()) {
+                // start at a window boundary, and map at least two windows so that
+                // the next records are mapped too, or up to the end of the file
+                long start = position - position % windowSize;
+                long size = Math.max(position + length - start, Math.min(channel.size() - start, 2L * windowSize));
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+                base = start;
+            }
+            return (int) (position - base);
+        }
+    }
+
+    private static boolean read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                return false;
+            }
+            position += n;
+        }
+        return true;
+    }
+
+}
@@ -9,13 +9,17 @@
 package org.jline.reader.impl.history;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.time.DateTimeException;
 import java.time.Instant;
 import java.util.*;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
 
 import org.jline.reader.History;
 import org.jline.reader.LineReader;
+import org.jline.reader.impl.ReaderUtils;
 import org.jline.utils.Log;
 
 import static org.jline.reader.LineReader.HISTORY_IGNORE;
@@ -32,11 +36,32 @@ public class DefaultHistory implements History {
 
     public static final int DEFAULT_HISTORY_SIZE = 500;
     public static final int DEFAULT_HISTORY_FILE_SIZE = 10000;
+    public static final long DEFAULT_HISTORY_SAVE_DELAY = 100;
+    public static final int DEFAULT_HISTORY_SAVE_BATCH = 64;
 
-    private final LinkedList<Entry> items = new LinkedList<>();
+    private final RingBuffer<Entry> items = new RingBuffer<>();
+
+    /**
+     * Number of occurrences of each trimmed line in {@link #items},
+     * used to check for duplicates without scanning the whole history.
+     */
+    private final Map<String, Integer> trimmedLines = new HashMap<>();
+
+    /**
+     * Trigram index used to speed up searches, lazily created when
+     * {@link LineReader.Option#HISTORY_SEARCH_INDEX} is set.
+     */
+    private HistorySearchIndex searchIndex;
+
+    private HistoryPrefixIndex prefixIndex;
 
     private LineReader reader;
 
+    /**
+     * Background writer used when {@link LineReader.Option#HISTORY_ASYNC_SAVE} is set.
+     */
+    private HistoryWriter writer;
+
     private Map<String, HistoryFileData> historyFiles = new HashMap<>();
     private int offset = 0;
     private int index = 0;
@@ -77,6 +102,7 @@ public class DefaultHistory implements History {
     @Override
     public void load() throws IOException {
         Path path = getPath();
+        flushWriter();
         if (path != null) {
             try {
                 if (Files.exists(path)) {
@@ -99,6 +125,7 @@ public class DefaultHistory implements History {
     @Override
     public void read(Path file, boolean incremental) throws IOException {
         Path path = file != null ? file : getPath();
+        flushWriter();
         if (path != null) {
             try {
                 if (Files.exists(path)) {
@@ -195,6 +222,7 @@ public class DefaultHistory implements History {
 
     @Override
     public void purge() throws IOException {
+        flushWriter();
         internalClear();
         Path path = getPath();
         if (path != null) {
@@ -206,6 +234,7 @@ public class DefaultHistory implements History {
     @Override
     public void write(Path file, boolean incremental) throws IOException {
         Path path = file != null ? file : getPath();
+        flushWriter();
         if (path != null && Files.exists(path)) {
             path.toFile().delete();
         }
@@ -214,15 +243,53 @@ public class DefaultHistory implements History {
 
     @Override
     public void append(Path file, boolean incremental) throws IOException {
+        flushWriter();
         internalWrite(file != null ? file : getPath(), 
                       incremental ? getLastLoaded(file) : 0);
     }
 
     @Override
     public void save() throws IOException {
+        flushWriter();
         internalWrite(getPath(), getLastLoaded(getPath()));
     }
 
+    /**
+     * Queue the new entries to be written by the background writer.
+     */
+    private void saveAsync() throws IOException {
+        Path path = getPath();
+        if (path == null) {
+            return;
+        }
+        if (writer == null || !writer.path().equals(path)) {
+            flushWriter();
+            writer = new HistoryWriter(path);
+        }
+        writer.configure(
+                getLong(reader, LineReader.HISTORY_SAVE_DELAY, DEFAULT_HISTORY_SAVE_DELAY),
+                getInt(reader, LineReader.HISTORY_SAVE_BATCH, DEFAULT_HISTORY_SAVE_BATCH),
+                isSet(reader, LineReader.Option.HISTORY_FSYNC),
+                getInt(reader, LineReader.HISTORY_FILE_SIZE, DEFAULT_HISTORY_FILE_SIZE),
+                isSet(reader, LineReader.Option.HISTORY_TIMESTAMPED));
+        int from = getLastLoaded(path);
+        for (Entry entry : items.subList(from, items.size())) {
+            if (isPersistable(entry)) {
+                writer.add(format(entry));
+            }
+        }
+        setLastLoaded(path, items.size());
+    }
+
+    /**
+     * Wait for the background writer, if any, to write the pending entries.
+     */
+    private void flushWriter() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
     private void internalWrite(Path path, int from) throws IOException {
         if (path != null) {
             Log.trace("Saving history to: ", path);
@@ -239,6 +306,11 @@ public class DefaultHistory implements History {
                     }
                 }
             }
+            if (isSet(reader, LineReader.Option.HISTORY_FSYNC)) {
+                try (FileChannel channel = FileChannel.open(path.toAbsolutePath(), StandardOpenOption.WRITE)) {
+                    channel.force(false);
+                }
+            }
             incEntriesInFile(path, items.size() - from);
             int max = getInt(reader, LineReader.HISTORY_FILE_SIZE, DEFAULT_HISTORY_FILE_SIZE);
             if (getEntriesInFile(path) > max + max / 4) {
@@ -251,7 +323,7 @@ public class DefaultHistory implements History {
     protected void trimHistory(Path path, int max) throws IOException {
         Log.trace("Trimming history path: ", path);
         // Load all history entries
-        LinkedList<Entry> allItems = new LinkedList<>();
+        List<Entry> allItems = new ArrayList<>();
         try (BufferedReader reader = Files.newBufferedReader(path)) {
             reader.lines().forEach(l -> {
                 int idx = l.indexOf(':');
@@ -274,7 +346,9 @@ public class DefaultHistory implements History {
         if (isLineReaderHistory(path)) {
             internalClear();
             offset = allItems.get(0).index();
-            items.addAll(allItems);
+            for (Entry entry : allItems) {
+                addEntry(entry);
+            }
             setHistoryFileData(path, new HistoryFileData(items.size(), items.size()));
         } else {
             setEntriesInFile(path, allItems.size());
@@ -298,25 +372,62 @@ public class DefaultHistory implements History {
         index = 0;
         historyFiles = new HashMap<>();
         items.clear();
+        trimmedLines.clear();
+        searchIndex = null;
+        prefixIndex = null;
+    }
+
+    private void addEntry(Entry entry) {
+        items.add(entry);
+        trimmedLines.merge(entry.line().trim(), 1, Integer::sum);
+        if (searchIndex != null) {
+            searchIndex.add(offset + items.size() - 1, entry.line());
+        }
+        if (prefixIndex != null) {
+            prefixIndex.add(offset + items.size() - 1, entry.line());
+        }
     }
 
+    private void removeFirstEntry() {
+        Entry entry = items.removeFirst();
+        trimmedLines.computeIfPresent(entry.line().trim(), (l, c) -> c > 1 ? c - 1 : null);
+        if (searchIndex != null) {
+            searchIndex.remove(offset, entry.line());
+        }
+        if (prefixIndex != null) {
+            prefixIndex.remove(offset, entry.line());
+        }
+    }
+
+    /**
+     * Rebuild the lookup structures after the entries have been modified
+     * through an iterator.
+     */
+    private void reindex() {
+        trimmedLines.clear();
+        for (Entry entry : items) {
+            trimmedLines.merge(entry.line().trim(), 1, Integer::sum);
+        }
+        searchIndex = null;
+        prefixIndex = null;
+    }
+
+    /**
+     * Remove duplicates, keeping the most recent occurrence of each line,
+     * then remove the oldest entries so that at most <code>max</code> remain.
+     */
     static void doTrimHistory(List<Entry> allItems, int max) {
-        int idx = 0;
-        while (idx < allItems.size()) {
-            int ridx = allItems.size() - idx - 1;
-            String line = allItems.get(ridx).line().trim();
-            ListIterator<Entry> iterator = allItems.listIterator(ridx);
-            while (iterator.hasPrevious()) {
-                String l = iterator.previous().line();
-                if (line.equals(l.trim())) {
-                    iterator.remove();
-                }
+        Set<String> seen = new HashSet<>();
+        List<Entry> kept = new ArrayList<>(allItems.size());
+        for (ListIterator<Entry> it = allItems.listIterator(allItems.size()); it.hasPrevious(); ) {
+            Entry entry = it.previous();
+            if (seen.add(entry.line().trim())) {
+                kept.add(entry);
             }
-            idx++;
-        }
-        while (allItems.size() > max) {
-            allItems.remove(0);
         }
+        Collections.reverse(kept);
+        allItems.clear();
+        allItems.addAll(kept.subList(Math.max(0, kept.size() - max), kept.size()));
     }
 
     public int size() {
@@ -340,7 +451,11 @@ public class DefaultHistory implements History {
     }
 
     private String format(Entry entry) {
-        if (reader.isSet(LineReader.Option.HISTORY_TIMESTAMPED)) {
+        return format(entry, reader.isSet(LineReader.Option.HISTORY_TIMESTAMPED));
+    }
+
+    static String format(Entry entry, boolean timestamped) {
+        if (timestamped) {
             return Long.toString(entry.time().toEpochMilli()) + ":" + escape(entry.line()) + "\n";
         }
         return escape(entry.line()) + "\n";
@@ -359,27 +474,18 @@ public class DefaultHistory implements History {
         Objects.requireNonNull(time);
         Objects.requireNonNull(line);
 
-        if (getBoolean(reader, LineReader.DISABLE_HISTORY, false)) {
-            return;
-        }
-        if (isSet(reader, LineReader.Option.HISTORY_IGNORE_SPACE) && line.startsWith(" ")) {
-            return;
-        }
-        if (isSet(reader, LineReader.Option.HISTORY_REDUCE_BLANKS)) {
-            line = line.trim();
-        }
-        if (isSet(reader, LineReader.Option.HISTORY_IGNORE_DUPS)) {
-            if (!items.isEmpty() && line.equals(items.getLast().line())) {
-                return;
-            }
-        }
-        if (matchPatterns(getString(reader, HISTORY_IGNORE, ""), line)) {
+        line = filterLine(reader, line, () -> items.isEmpty() ? null : items.getLast().line(), this::matchPatterns);
+        if (line == null) {
             return;
         }
         internalAdd(time, line);
         if (isSet(reader, LineReader.Option.HISTORY_INCREMENTAL)) {
             try {
-                save();
+                if (isSet(reader, LineReader.Option.HISTORY_ASYNC_SAVE)) {
+                    saveAsync();
+                } else {
+                    save();
+                }
             }
             catch (IOException e) {
                 Log.warn("Failed to save history", e);
@@ -388,22 +494,36 @@ public class DefaultHistory implements History {
     }
 
     protected boolean matchPatterns(String patterns, String line) {
-        if (patterns == null || patterns.isEmpty()) {
-            return false;
+        return ReaderUtils.matchPatterns(patterns, line);
+    }
+
+    /**
+     * Apply the options and variables of the reader to a line added to a history.
+     *
+     * @param reader the reader, which may be <code>null</code>
+     * @param line the added line
+     * @param last supplies the last line of the history, <code>null</code> if it is empty
+     * @param ignore checks if the line matches the {@link LineReader#HISTORY_IGNORE} patterns
+     * @return the line to add, or <code>null</code> if it must not be added
+     */
+    static String filterLine(LineReader reader, String line, Supplier<String> last,
+                             BiPredicate<String, String> ignore) {
+        if (getBoolean(reader, LineReader.DISABLE_HISTORY, false)) {
+            return null;
         }
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < patterns.length(); i++) {
-            char ch = patterns.charAt(i);
-            if (ch == '\\') {
-                ch = patterns.charAt(++i);
-                sb.append(ch);
-            } else if (ch == ':') {
-                sb.append('|');
-            } else if (ch == '*') {
-                sb.append('.').append('*');
-            }
+        if (isSet(reader, LineReader.Option.HISTORY_IGNORE_SPACE) && line.startsWith(" ")) {
+            return null;
+        }
+        if (isSet(reader, LineReader.Option.HISTORY_REDUCE_BLANKS)) {
+            line = line.trim();
+        }
+        if (isSet(reader, LineReader.Option.HISTORY_IGNORE_DUPS) && line.equals(last.get())) {
+            return null;
+        }
+        if (ignore.test(getString(reader, HISTORY_IGNORE, ""), line)) {
+            return null;
         }
-        return line.matches(sb.toString());
+        return line;
     }
 
     protected void internalAdd(Instant time, String line) {
@@ -412,20 +532,17 @@ public class DefaultHistory implements History {
     
     protected void internalAdd(Instant time, String line, boolean checkDuplicates) {
         Entry entry = new EntryImpl(offset + items.size(), time, line);
-        if (checkDuplicates) {
-            for (Entry e: items) {
-                if (e.line().trim().equals(line.trim())) {
-                    return;
-                }
-            }
+        if (checkDuplicates && trimmedLines.containsKey(line.trim())) {
+            return;
         }
-        items.add(entry);
+        addEntry(entry);
         maybeResize();
     }
 
     private void maybeResize() {
-        while (size() > getInt(reader, LineReader.HISTORY_SIZE, DEFAULT_HISTORY_SIZE)) {
-            items.removeFirst();
+        int max = getInt(reader, LineReader.HISTORY_SIZE, DEFAULT_HISTORY_SIZE);
+        while (size() > max) {
+            removeFirstEntry();
             for (HistoryFileData hfd: historyFiles.values()) {
                 hfd.decLastLoaded();
             }
@@ -435,7 +552,75 @@ public class DefaultHistory implements History {
     }
 
     public ListIterator<Entry> iterator(int index) {
-        return items.listIterator(index - offset);
+        return new EntryIterator(items.listIterator(index - offset));
+    }
+
+    @Override
+    public Iterator<Entry> reverseSearchIterator(int index, String text) {
+        HistorySearchIndex idx = getSearchIndex(text);
+        if (idx == null) {
+            return History.super.reverseSearchIterator(index, text);
+        }
+        return entries(idx.reverse(text, Math.min(index, last())));
+    }
+
+    @Override
+    public Iterator<Entry> searchIterator(int index, String text) {
+        HistorySearchIndex idx = getSearchIndex(text);
+        if (idx == null) {
+            return History.super.searchIterator(index, text);
+        }
+        return entries(idx.forward(text, Math.max(index, first())));
+    }
+
+    /**
+     * Returns the search index if enabled and if it can be used for the given text,
+     * building it if needed.
+     */
+    private HistorySearchIndex getSearchIndex(String text) {
+        if (!isSet(reader, LineReader.Option.HISTORY_SEARCH_INDEX)) {
+            searchIndex = null;
+            return null;
+        }
+        if (text.length() < HistorySearchIndex.MIN_LENGTH) {
+            return null;
+        }
+        if (searchIndex == null) {
+            searchIndex = new HistorySearchIndex();
+            for (int i = 0; i < items.size(); i++) {
+                searchIndex.add(offset + i, items.get(i).line());
+            }
+        }
+        return searchIndex;
+    }
+
+    /**
+     * Looks up the most recent entry starting with the given prefix in a
+     * prefix index, built on first use and then kept up to date.
+     */
+    @Override
+    public Entry lastStartingWith(String prefix) {
+        if (prefixIndex == null) {
+            prefixIndex = new HistoryPrefixIndex();
+            for (int i = 0; i < items.size(); i++) {
+                prefixIndex.add(offset + i, items.get(i).line());
+            }
+        }
+        int idx = prefixIndex.last(prefix);
+        return idx >= 0 ? items.get(idx - offset) : null;
+    }
+
+    private Iterator<Entry> entries(PrimitiveIterator.OfInt indexes) {
+        return new Iterator<Entry>() {
+            @Override
+            public boolean hasNext() {
+                return indexes.hasNext();
+            }
+            @Override
+            public Entry next() {
+                return items.get(indexes.nextInt() - offset);
+            }
+        };
     }
 
     @Override
@@ -447,6 +632,57 @@ public class DefaultHistory implements History {
         index = index > items.size() ? items.size() : index;
     }
 
+    /**
+     * Keeps the lookup structures up to date when entries are modified
+     * through {@link #iterator(int)}.
+     */
+    private class EntryIterator implements ListIterator<Entry> {
+        private final ListIterator<Entry> delegate;
+
+        EntryIterator(ListIterator<Entry> delegate) {
+            this.delegate = delegate;
+        }
+
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        public Entry next() {
+            return delegate.next();
+        }
+
+        public boolean hasPrevious() {
+            return delegate.hasPrevious();
+        }
+
+        public Entry previous() {
+            return delegate.previous();
+        }
+
+        public int nextIndex() {
+            return delegate.nextIndex();
+        }
+
+        public int previousIndex() {
+            return delegate.previousIndex();
+        }
+
+        public void remove() {
+            delegate.remove();
+            reindex();
+        }
+
+        public void set(Entry entry) {
+            delegate.set(entry);
+            reindex();
+        }
+
+        public void add(Entry entry) {
+            delegate.add(entry);
+            reindex();
+        }
+    }
+
     protected static class EntryImpl implements Entry {
 
         private final int index;
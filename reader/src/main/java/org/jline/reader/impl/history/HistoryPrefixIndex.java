@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.history;
+
+import java.util.Arrays;
+
+/**
+ * A radix tree over history lines.
+ * <p>
+ * Each node keeps the number of lines going through it and the most recent
+ * of their history indexes, so that the most recent line starting with a
+ * given prefix is found in O(prefix length), whatever the history size.
+ * </p>
+ * <p>
+ * Lines are always added with increasing indexes and evicted oldest first:
+ * a node whose count drops to zero only held the evicted line, and the most
+ * recent index of the other nodes is unchanged.
+ * </p>
+ */
+final class HistoryPrefixIndex {
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final Node root = new Node("");
+
+    /**
+     * Index a line.  The index must be greater than any previously added index.
+     */
+    void add(int index, String line) {
+        Node node = root;
+        node.count++;
+        node.last = index;
+        int pos = 0;
+        while (pos < line.length()) {
+            Node child = node.child(line.charAt(pos));
+            if (child == null) {
+                child = new Node(line.substring(pos));
+                node.addChild(child);
+                child.count = 1;
+                child.last = index;
+                return;
+            }
+            int common = 1;
+            while (common < child.label.length() && pos + common < line.length()
+                    && child.label.charAt(common) == line.charAt(pos + common)) {
+                common++;
+            }
+            if (common < child.label.length()) {
+                child = child.split(node, common);
+            }
+            child.count++;
+            child.last = index;
+            node = child;
+            pos += common;
+        }
+    }
+
+    /**
+     * Remove a line.  The index must be the oldest indexed one.
+     */
+    void remove(int index, String line) {
+        Node node = root;
+        node.count--;
+        int pos = 0;
+        while (pos < line.length()) {
+            Node child = node.child(line.charAt(pos));
+            if (child == null || !line.startsWith(child.label, pos)) {
+                return;
+            }
+            if (--child.count == 0) {
+                node.removeChild(child);
+                return;
+            }
+            node = child;
+            pos += child.label.length();
+        }
+    }
+
+    /**
+     * Returns the most recent index of the lines starting with the given prefix,
+     * or <code>-1</code> if there is none.
+     */
+    int last(String prefix) {
+        Node node = root;
+        int pos = 0;
+        while (pos < prefix.length()) {
+            Node child = node.child(prefix.charAt(pos));
+            if (child == null) {
+                return -1;
+            }
+            int len = Math.min(child.label.length(), prefix.length() - pos);
+            if (!prefix.regionMatches(pos, child.label, 0, len)) {
+                return -1;
+            }
+            node = child;
+            pos += len;
+        }
+        return node.count > 0 ? node.last : -1;
+    }
+
+    private static final class Node {
+        String label;
+        Node[] children = NO_CHILDREN;
+        int count;
+        int last = -1;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        Node child(char c) {
+            for (Node child : children) {
+                if (child.label.charAt(0) == c) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        void addChild(Node child) {
+            children = Arrays.copyOf(children, children.length + 1);
+            children[children.length - 1] = child;
+        }
+
+        void removeChild(Node child) {
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] == child) {
+                    Node[] newChildren = new Node[children.length - 1];
+                    System.arraycopy(children, 0, newChildren, 0, i);
+                    System.arraycopy(children, i + 1, newChildren, i, children.length - i - 1);
+                    children = newChildren;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Split this node after the given number of characters of its label,
+         * returning the new node which replaces it in its parent.
+         */
+        Node split(Node parent, int length) {
+            Node head = new Node(label.substring(0, length));
+            head.count = count;
+            head.last = last;
+            head.children = new Node[] { this };
+            label = label.substring(length);
+            for (int i = 0; i < parent.children.length; i++) {
+                if (parent.children[i] == this) {
+                    parent.children[i] = head;
+                }
+            }
+            return head;
+        }
+    }
+
+}
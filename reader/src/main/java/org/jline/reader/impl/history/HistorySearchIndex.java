@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.history;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A trigram index over history lines.
+ * <p>
+ * For each sequence of three case folded characters, the index keeps the
+ * ascending list of the history indexes of the lines containing it.
+ * A query returns the indexes of the lines containing all the trigrams
+ * of the searched text: this is a superset of the lines actually containing
+ * the text, so callers still need to confirm each candidate, but lines
+ * which can not match are never looked at.
+ * </p>
+ * <p>
+ * Lines are always added with increasing indexes and evicted oldest first,
+ * so that maintaining the index costs O(line length) per operation.
+ * </p>
+ */
+final class HistorySearchIndex {
+
+    /**
+     * Minimum length of a searched text for the index to be useful.
+     */
+    static final int MIN_LENGTH = 3;
+
+    private static final PrimitiveIterator.OfInt EMPTY = new PrimitiveIterator.OfInt() {
+        @Override
+        public int nextInt() {
+            throw new NoSuchElementException();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return false;
+        }
+    };
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    /**
+     * Index a line.  The index must be greater than any previously added index.
+     */
+    void add(int index, String line) {
+        for (int i = 0; i + MIN_LENGTH <= line.length(); i++) {
+            Long key = trigram(line, i);
+            Postings p = postings.get(key);
+            if (p == null) {
+                p = new Postings();
+                postings.put(key, p);
+            }
+            if (p.isEmpty() || p.last() != index) {
+                p.add(index);
+            }
+        }
+    }
+
+    /**
+     * Remove a line.  The index must be the oldest indexed one.
+     */
+    void remove(int index, String line) {
+        for (int i = 0; i + MIN_LENGTH <= line.length(); i++) {
+            Long key = trigram(line, i);
+            Postings p = postings.get(key);
+            if (p != null && !p.isEmpty() && p.first() == index) {
+                p.removeFirst();
+                if (p.isEmpty()) {
+                    postings.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Iterate backward, starting at <code>from</code> inclusive, over the indexes
+     * of the lines which may contain the given text.
+     */
+    PrimitiveIterator.OfInt reverse(String text, int from) {
+        Postings[] lists = lookup(text);
+        if (lists == null) {
+            return EMPTY;
+        }
+        return new Candidates(lists, false, from);
+    }
+
+    /**
+     * Iterate forward, starting at <code>from</code> inclusive, over the indexes
+     * of the lines which may contain the given text.
+     */
+    PrimitiveIterator.OfInt forward(String text, int from) {
+        Postings[] lists = lookup(text);
+        if (lists == null) {
+            return EMPTY;
+        }
+        return new Candidates(lists, true, from);
+    }
+
+    /**
+     * Returns the postings for all the trigrams of the text, the shortest first,
+     * or <code>null</code> if one of them is unknown.
+     */
+    private Postings[] lookup(String text) {
+        Map<Long, Postings> lists = new HashMap<>();
+        for (int i = 0; i + MIN_LENGTH <= text.length(); i++) {
+            Long key = trigram(text, i);
+            Postings p = postings.get(key);
+            if (p == null) {
+                return null;
+            }
+            lists.put(key, p);
+        }
+        Postings[] result = lists.values().toArray(new Postings[0]);
+        Arrays.sort(result, (p1, p2) -> Integer.compare(p1.size(), p2.size()));
+        return result;
+    }
+
+    private static Long trigram(String s, int i) {
+        return ((long) fold(s.charAt(i)) << 32)
+                | ((long) fold(s.charAt(i + 1)) << 16)
+                | (long) fold(s.charAt(i + 2));
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Intersection of several postings lists, driven by the shortest one.
+     */
+    private static class Candidates implements PrimitiveIterator.OfInt {
+        private final Postings[] lists;
+        private final boolean forward;
+        private int pos;
+        private int next;
+        private boolean hasNext;
+
+        Candidates(Postings[] lists, boolean forward, int from) {
+            this.lists = lists;
+            this.forward = forward;
+            Postings driver = lists[0];
+            int idx = driver.search(from);
+            if (idx >= 0) {
+                pos = idx;
+            } else {
+                // insertion point
+                pos = forward ? -idx - 1 : -idx - 2;
+            }
+            advance();
+        }
+
+        private void advance() {
+            Postings driver = lists[0];
+            while (pos >= 0 && pos < driver.size()) {
+                int candidate = driver.get(pos);
+                pos += forward ? 1 : -1;
+                boolean all = true;
+                for (int i = 1; i < lists.length && all; i++) {
+                    all = lists[i].search(candidate) >= 0;
+                }
+                if (all) {
+                    next = candidate;
+                    hasNext = true;
+                    return;
+                }
+            }
+            hasNext = false;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+            int result = next;
+            advance();
+            return result;
+        }
+    }
+
+    /**
+     * An ascending list of ints, appended at the end and removed from the front.
+     */
+    private static class Postings {
+        private int[] data = new int[4];
+        private int start;
+        private int end;
+
+        boolean isEmpty() {
+            return start == end;
+        }
+
+        int size() {
+            return end - start;
+        }
+
+        int get(int i) {
+            return data[start + i];
+        }
+
+        int first() {
+            return data[start];
+        }
+
+        int last() {
+            return data[end - 1];
+        }
+
+        void add(int value) {
+            if (end == data.length) {
+                if (start > data.length / 2) {
+                    System.arraycopy(data, start, data, 0, end - start);
+                } else {
+                    data = Arrays.copyOfRange(data, start, data.length * 2);
+                }
+                end -= start;
+                start = 0;
+            }
+            data[end++] = value;
+        }
+
+        void removeFirst() {
+            start++;
+            if (start == end) {
+                start = end = 0;
+            }
+        }
+
+        /**
+         * Binary search, with the same return convention as {@link Arrays#binarySearch(int[], int)}
+         * relative to the first element.
+         */
+        int search(int value) {
+            int idx = Arrays.binarySearch(data, start, end, value);
+            return idx >= 0 ? idx - start : idx + start;
+        }
+    }
+
+}
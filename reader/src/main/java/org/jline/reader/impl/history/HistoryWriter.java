@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.history;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.jline.reader.History.Entry;
+import org.jline.utils.Log;
+import org.jline.utils.ShutdownHooks;
+import org.jline.utils.Threads;
+
+/**
+ * Appends history lines to a file from a background thread.
+ * <p>
+ * Lines are queued by the reader thread and written in batches (group commit):
+ * a batch is written once it reaches the batch size, once its oldest line has
+ * waited for the given delay, or when {@link #flush()} is called.  The queue is
+ * bounded: when it is full, callers wait for the current batch to be written.
+ * The file is trimmed in the background when it grows too large.
+ * </p>
+ * <p>
+ * The writer thread is only running while lines are pending, and a shutdown
+ * hook flushes the pending lines if the JVM exits meanwhile.
+ * </p>
+ */
+final class HistoryWriter {
+
+    static final int QUEUE_SIZE = 1024;
+
+    /** Writers with pending lines, flushed by the shutdown hook */
+    private static final Set<HistoryWriter> ACTIVE = ConcurrentHashMap.newKeySet();
+    private static final AtomicBoolean HOOKED = new AtomicBoolean();
+
+    private final Path path;
+    private final Object lock = new Object();
+    private final ArrayDeque<String> queue = new ArrayDeque<>();
+
+    private volatile long delay;
+    private volatile int batchSize;
+    private volatile boolean fsync;
+    private volatile int maxFileSize;
+    private volatile boolean timestamped;
+
+    private Thread thread;
+    private boolean writing;
+    private int flushRequests;
+    private long firstQueued;
+    private IOException error;
+    private int entriesInFile = -1;
+
+    /** Run by the writer thread once it has stopped, used by tests */
+    volatile Runnable stopHook;
+
+    HistoryWriter(Path path) {
+        this.path = path;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    void configure(long delay, int batchSize, boolean fsync, int maxFileSize, boolean timestamped) {
+        this.delay = delay;
+        this.batchSize = Math.max(1, batchSize);
+        this.fsync = fsync;
+        this.maxFileSize = maxFileSize;
+        this.timestamped = timestamped;
+    }
+
+    /**
+     * Queue a formatted line, waiting if the queue is full.
+     */
+    void add(String line) throws IOException {
+        synchronized (lock) {
+            try {
+                while (queue.size() >= QUEUE_SIZE) {
+                    lock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while saving history");
+            }
+            if (queue.isEmpty()) {
+                firstQueued = System.currentTimeMillis();
+            }
+            queue.add(line);
+            if (thread == null) {
+                thread = Threads.newThread(this::run, "JLine history writer");
+                ACTIVE.add(this);
+                thread.start();
+            }
+            lock.notifyAll();
+        }
+        if (HOOKED.compareAndSet(false, true)) {
+            ShutdownHooks.add(HistoryWriter::flushAll);
+        }
+    }
+
+    /**
+     * Wait until all queued lines have been written.
+     *
+     * @throws IOException if a previous background write has failed
+     */
+    void flush() throws IOException {
+        synchronized (lock) {
+            flushRequests++;
+            lock.notifyAll();
+            try {
+                while (thread != null && (writing || !queue.isEmpty())) {
+                    lock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while saving history");
+            } finally {
+                flushRequests--;
+            }
+            if (error != null) {
+                IOException e = error;
+                error = null;
+                throw e;
+            }
+        }
+    }
+
+    private void run() {
+        boolean stopped = false;
+        try {
+            List<String> batch;
+            while ((batch = nextBatch()) != null) {
+                try {
+                    write(batch);
+                } catch (IOException e) {
+                    Log.warn("Failed to save history", e);
+                    synchronized (lock) {
+                        error = e;
+                    }
+                } finally {
+                    synchronized (lock) {
+                        writing = false;
+                        lock.notifyAll();
+                    }
+                }
+            }
+            stopped = true;
+        } catch (InterruptedException e) {
+            Log.warn("History writer interrupted, discarding pending lines");
+        } finally {
+            if (!stopped) {
+                synchronized (lock) {
+                    queue.clear();
+                    stop();
+                }
+            }
+        }
+        Runnable hook = stopHook;
+        if (hook != null) {
+            hook.run();
+        }
+    }
+
+    /**
+     * Wait for the next batch to write.  When the queue is empty, the writer
+     * is stopped while still holding the lock, so that a line added afterwards
+     * starts a new writer thread.
+     *
+     * @return the batch to write, or <code>null</code> if the writer stopped
+     */
+    private List<String> nextBatch() throws InterruptedException {
+        synchronized (lock) {
+            while (true) {
+                if (queue.isEmpty()) {
+                    stop();
+                    return null;
+                }
+                long remaining = firstQueued + delay - System.currentTimeMillis();
+                if (queue.size() >= batchSize || flushRequests > 0 || remaining <= 0) {
+                    break;
+                }
+                lock.wait(remaining);
+            }
+            List<String> batch = new ArrayList<>(queue);
+            queue.clear();
+            writing = true;
+            lock.notifyAll();
+            return batch;
+        }
+    }
+
+    private void stop() {
+        thread = null;
+        ACTIVE.remove(this);
+        lock.notifyAll();
+    }
+
+    private static void flushAll() {
+        for (HistoryWriter writer : ACTIVE.toArray(new HistoryWriter[0])) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                Log.warn("Failed to save history", e);
+            }
+        }
+    }
+
+    private void write(List<String> batch) throws IOException {
+        Log.trace("Saving history to: ", path);
+        Path parent = path.toAbsolutePath().getParent();
+        if (!Files.exists(parent)) {
+            Files.createDirectories(parent);
+        }
+        if (entriesInFile < 0) {
+            entriesInFile = 0;
+            if (Files.exists(path)) {
+                try (Stream<String> lines = Files.lines(path)) {
+                    entriesInFile = (int) lines.count();
+                }
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String line : batch) {
+            sb.append(line);
+        }
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(sb.toString());
+        try (FileChannel channel = FileChannel.open(path.toAbsolutePath(),
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND, StandardOpenOption.CREATE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+        }
+        entriesInFile += batch.size();
+        int max = maxFileSize;
+        if (entriesInFile > max + max / 4) {
+            trim(max);
+        }
+    }
+
+    private void trim(int max) throws IOException {
+        Log.trace("Trimming history path: ", path);
+        List<Entry> allItems = MappedHistory.readText(path, timestamped);
+        DefaultHistory.doTrimHistory(allItems, max);
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardOpenOption.WRITE)) {
+            for (Entry entry : allItems) {
+                writer.append(DefaultHistory.format(entry, timestamped));
+            }
+        }
+        if (fsync) {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(false);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        entriesInFile = allItems.size();
+    }
+
+}
@@ -0,0 +1,560 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.history;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOError;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import org.jline.reader.History;
+import org.jline.reader.LineReader;
+import org.jline.reader.impl.ReaderUtils;
+import org.jline.utils.Log;
+
+import static org.jline.reader.impl.ReaderUtils.*;
+
+/**
+ * {@link History} using an append-only, memory-mapped binary file for persistent backing.
+ * <p>
+ * Unlike {@link DefaultHistory}, the history file is not read when loading:
+ * entries are decoded from the mapped file when accessed, and each new entry
+ * is appended to the file when added, without rewriting it.  The startup time
+ * thus does not depend on the size of the history.  The file is only rewritten
+ * when it grows over {@link LineReader#HISTORY_FILE_SIZE} by more than a quarter,
+ * in order to remove duplicates and old entries.
+ * </p>
+ * <p>
+ * The binary format is not compatible with the text format used by
+ * {@link DefaultHistory}: existing history files can be converted using
+ * {@link #convert(Path, Path, boolean)}.  Text files can also be imported
+ * using {@link #read(Path, boolean)}.
+ * </p>
+ * <p>
+ * The history file can be shared by several processes: entries added by
+ * the other processes are visible once the history is read again, and the
+ * processes reopen the file when it is trimmed or purged by another one.
+ * Since the file is memory-mapped, it can not be rewritten or deleted while
+ * in use on platforms which forbid it, such as Windows.
+ * </p>
+ * <p>
+ * As the file is append-only, only the last entry can be removed through
+ * the iterators of the history: removing another entry throws an
+ * {@link UnsupportedOperationException}.
+ * </p>
+ */
+public class MappedHistory implements History {
+
+    private LineReader reader;
+
+    /** The binary file, or <code>null</code> if no history file is configured */
+    private BinaryHistoryFile file;
+
+    /** Entries kept in memory when there is no history file */
+    private final RingBuffer<Entry> memory = new RingBuffer<>();
+    private int memoryOffset = 0;
+
+    /** Absolute index of the first visible entry */
+    private int offset = 0;
+    /** Current index, relative to {@link #offset} */
+    private int index = 0;
+    /** Generation of the file the offset refers to */
+    private int generation = 0;
+
+    /** Number of entries already written to other files */
+    private final Map<String, Integer> lastWritten = new HashMap<>();
+
+    public MappedHistory() {
+    }
+
+    public MappedHistory(LineReader reader) {
+        attach(reader);
+    }
+
+    /**
+     * Convert a history file from the text format used by {@link DefaultHistory}
+     * to the binary format.
+     *
+     * @param text        the text history file
+     * @param binary      the binary history file to create, replaced if it exists
+     * @param timestamped whether the text file has been written with
+     *                    {@link LineReader.Option#HISTORY_TIMESTAMPED}
+     * @return the number of converted entries
+     * @throws IOException if an error occurs
+     */
+    public static int convert(Path text, Path binary, boolean timestamped) throws IOException {
+        List<Entry> entries = readText(text, timestamped);
+        BinaryHistoryFile.write(binary, entries);
+        return entries.size();
+    }
+
+    /**
+     * Read a history file in the text format used by {@link DefaultHistory}.
+     */
+    static List<Entry> readText(Path path, boolean timestamped) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Instant time;
+                if (timestamped) {
+                    int idx = line.indexOf(':');
+                    if (idx < 0) {
+                        throw badSyntax(path);
+                    }
+                    try {
+                        time = Instant.ofEpochMilli(Long.parseLong(line.substring(0, idx)));
+                    } catch (DateTimeException | NumberFormatException e) {
+                        throw badSyntax(path);
+                    }
+                    line = line.substring(idx + 1);
+                } else {
+                    time = Instant.now();
+                }
+                entries.add(new DefaultHistory.EntryImpl(entries.size(), time, DefaultHistory.unescape(line)));
+            }
+        }
+        return entries;
+    }
+
+    private static IllegalArgumentException badSyntax(Path path) {
+        return new IllegalArgumentException("Bad history file syntax! " +
+                "The history file `" + path + "` may be an older history: " +
+                "please remove it or use a different history file.");
+    }
+
+    private Path getPath() {
+        Object obj = reader != null ? reader.getVariables().get(LineReader.HISTORY_FILE) : null;
+        if (obj instanceof Path) {
+            return (Path) obj;
+        } else if (obj instanceof File) {
+            return ((File) obj).toPath();
+        } else if (obj != null) {
+            return Paths.get(obj.toString());
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public void attach(LineReader reader) {
+        if (this.reader != reader) {
+            this.reader = reader;
+            try {
+                load();
+            }
+            catch (IllegalArgumentException | IOException e) {
+                Log.warn("Failed to load history", e);
+            }
+        }
+    }
+
+    @Override
+    public void load() throws IOException {
+        Path path = getPath();
+        closeFile();
+        memory.clear();
+        memoryOffset = 0;
+        offset = 0;
+        generation = 0;
+        lastWritten.clear();
+        if (path != null) {
+            if (Files.exists(path) && Files.size(path) > 0 && !BinaryHistoryFile.isBinary(path)) {
+                throw new IllegalArgumentException("The history file `" + path + "` is not a binary history file: "
+                        + "convert it using MappedHistory.convert() or use a different history file.");
+            }
+            Log.trace("Mapping history from: ", path);
+            file = new BinaryHistoryFile(path);
+        }
+        maybeResize();
+    }
+
+    @Override
+    public void read(Path file, boolean incremental) throws IOException {
+        Path path = file != null ? file : getPath();
+        if (path == null || !Files.exists(path)) {
+            return;
+        }
+        if (isCurrentFile(path)) {
+            this.file.refresh();
+            maybeResize();
+            return;
+        }
+        Log.trace("Reading history from: ", path);
+        List<Entry> entries = new ArrayList<>();
+        if (BinaryHistoryFile.isBinary(path)) {
+            try (BinaryHistoryFile binary = new BinaryHistoryFile(path)) {
+                for (int i = 0; i < binary.size(); i++) {
+                    entries.add(new DefaultHistory.EntryImpl(i, Instant.ofEpochMilli(binary.time(i)), binary.line(i)));
+                }
+            }
+        } else {
+            entries = readText(path, isSet(reader, LineReader.Option.HISTORY_TIMESTAMPED));
+        }
+        Set<String> lines = new HashSet<>();
+        if (incremental) {
+            for (Entry entry : this) {
+                lines.add(entry.line().trim());
+            }
+        }
+        for (Entry entry : entries) {
+            if (!incremental || lines.add(entry.line().trim())) {
+                internalAdd(entry.time(), entry.line());
+            }
+        }
+        maybeResize();
+    }
+
+    @Override
+    public void save() throws IOException {
+        if (file != null) {
+            file.force();
+        }
+    }
+
+    @Override
+    public void write(Path file, boolean incremental) throws IOException {
+        Path path = file != null ? file : getPath();
+        if (path == null) {
+            return;
+        }
+        if (isCurrentFile(path)) {
+            save();
+            return;
+        }
+        int from = incremental ? Math.max(offset, lastWritten.getOrDefault(key(path), 0)) : offset;
+        BinaryHistoryFile.write(path, entries().subList(from - offset, size()));
+        lastWritten.put(key(path), offset + size());
+    }
+
+    @Override
+    public void append(Path file, boolean incremental) throws IOException {
+        Path path = file != null ? file : getPath();
+        if (path == null) {
+            return;
+        }
+        if (isCurrentFile(path)) {
+            save();
+            return;
+        }
+        int from = incremental ? Math.max(offset, lastWritten.getOrDefault(key(path), 0)) : offset;
+        try (BinaryHistoryFile binary = new BinaryHistoryFile(path)) {
+            for (Entry entry : entries().subList(from - offset, size())) {
+                binary.append(entry.time().toEpochMilli(), entry.line());
+            }
+        }
+        lastWritten.put(key(path), offset + size());
+    }
+
+    @Override
+    public void purge() throws IOException {
+        memory.clear();
+        memoryOffset = 0;
+        offset = 0;
+        index = 0;
+        if (file != null) {
+            Log.trace("Purging history from: ", file.path());
+            file.clear();
+            generation = file.generation();
+        }
+    }
+
+    private boolean isCurrentFile(Path path) throws IOException {
+        return this.file != null && Files.exists(path) && Files.isSameFile(this.file.path(), path);
+    }
+
+    private static String key(Path path) {
+        return path.toAbsolutePath().toString();
+    }
+
+    private void closeFile() throws IOException {
+        if (file != null) {
+            try {
+                file.close();
+            } finally {
+                file = null;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return total() - offset;
+    }
+
+    @Override
+    public int index() {
+        return offset + index;
+    }
+
+    @Override
+    public int first() {
+        return offset;
+    }
+
+    @Override
+    public int last() {
+        return offset + size() - 1;
+    }
+
+    @Override
+    public String get(int index) {
+        int idx = index - offset;
+        if (idx >= size() || idx < 0) {
+            throw new IllegalArgumentException("IndexOutOfBounds: Index:" + idx +", Size:" + size());
+        }
+        return entry(index).line();
+    }
+
+    @Override
+    public void add(Instant time, String line) {
+        Objects.requireNonNull(time);
+        Objects.requireNonNull(line);
+
+        line = DefaultHistory.filterLine(reader, line, () -> isEmpty() ? null : get(last()), ReaderUtils::matchPatterns);
+        if (line == null) {
+            return;
+        }
+        try {
+            internalAdd(time, line);
+            maybeTrimFile();
+        } catch (IOException e) {
+            Log.warn("Failed to save history", e);
+        }
+        maybeResize();
+    }
+
+    protected void internalAdd(Instant time, String line) throws IOException {
+        if (file != null) {
+            file.append(time.toEpochMilli(), line);
+        } else {
+            memory.add(new DefaultHistory.EntryImpl(total(), time, line));
+        }
+    }
+
+    /**
+     * Rewrite the history file when it contains too many entries,
+     * removing duplicates and old entries.
+     */
+    private void maybeTrimFile() throws IOException {
+        if (file == null) {
+            return;
+        }
+        int max = getInt(reader, LineReader.HISTORY_FILE_SIZE, DefaultHistory.DEFAULT_HISTORY_FILE_SIZE);
+        if (file.size() > max + max / 4) {
+            Log.trace("Trimming history path: ", file.path());
+            file.trim(max, max + max / 4);
+        }
+    }
+
+    private void maybeResize() {
+        if (file != null && file.generation() != generation) {
+            // the file has been rewritten, possibly by another process
+            generation = file.generation();
+            offset = 0;
+        }
+        int max = getInt(reader, LineReader.HISTORY_SIZE, DefaultHistory.DEFAULT_HISTORY_SIZE);
+        offset = Math.max(offset, total() - max);
+        while (memoryOffset < offset && !memory.isEmpty()) {
+            memory.removeFirst();
+            memoryOffset++;
+        }
+        index = size();
+    }
+
+    private int total() {
+        return file != null ? file.size() : memoryOffset + memory.size();
+    }
+
+    private Entry entry(int index) {
+        return file != null ? new MappedEntry(file, index) : memory.get(index - memoryOffset);
+    }
+
+    private List<Entry> entries() {
+        return new Entries();
+    }
+
+    @Override
+    public ListIterator<Entry> iterator(int index) {
+        return entries().listIterator(index - offset);
+    }
+
+    @Override
+    public void resetIndex() {
+        index = Math.min(index, size());
+    }
+
+    /**
+     * Visible entries.  Only the last entry can be removed.
+     */
+    private class Entries extends AbstractList<Entry> implements RandomAccess {
+        @Override
+        public Entry get(int index) {
+            return entry(offset + index);
+        }
+
+        @Override
+        public int size() {
+            return MappedHistory.this.size();
+        }
+
+        @Override
+        public Entry remove(int index) {
+            if (index != size() - 1) {
+                throw new UnsupportedOperationException("Only the last history entry can be removed");
+            }
+            Entry entry = get(index);
+            if (file != null) {
+                try {
+                    file.removeLast();
+                } catch (IOException e) {
+                    throw new IOError(e);
+                }
+            } else {
+                memory.remove(memory.size() - 1);
+            }
+            modCount++;
+            return entry;
+        }
+    }
+
+    /**
+     * An entry decoded from the mapped file on access.
+     */
+    private static class MappedEntry implements Entry {
+        private final BinaryHistoryFile file;
+        private final int index;
+        private String line;
+
+        MappedEntry(BinaryHistoryFile file, int index) {
+            this.file = file;
+            this.index = index;
+        }
+
+        @Override
+        public int index() {
+            return index;
+        }
+
+        @Override
+        public Instant time() {
+            try {
+                return Instant.ofEpochMilli(file.time(index));
+            } catch (IOException e) {
+                throw new IOError(e);
+            }
+        }
+
+        @Override
+        public String line() {
+            if (line == null) {
+                try {
+                    line = file.line(index);
+                } catch (IOException e) {
+                    throw new IOError(e);
+                }
+            }
+            return line;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d: %s", index, line());
+        }
+    }
+
+    //
+    // Navigation
+    //
+
+    @Override
+    public boolean moveToLast() {
+        int lastEntry = size() - 1;
+        if (lastEntry >= 0 && lastEntry != index) {
+            index = size() - 1;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean moveTo(int index) {
+        index -= offset;
+        if (index >= 0 && index < size()) {
+            this.index = index;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        if (size() > 0 && index != 0) {
+            index = 0;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void moveToEnd() {
+        index = size();
+    }
+
+    @Override
+    public String current() {
+        if (index >= size()) {
+            return "";
+        }
+        return entry(offset + index).line();
+    }
+
+    @Override
+    public boolean previous() {
+        if (index <= 0) {
+            return false;
+        }
+        index--;
+        return true;
+    }
+
+    @Override
+    public boolean next() {
+        if (index >= size()) {
+            return false;
+        }
+        index++;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Entry e : this) {
+            sb.append(e.toString()).append("\n");
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,661 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.history;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jline.reader.History;
+import org.jline.reader.History.Entry;
+import org.jline.reader.LineReader;
+import org.jline.reader.impl.ReaderUtils;
+import org.jline.utils.Log;
+import org.jline.utils.Threads;
+
+import static org.jline.reader.impl.ReaderUtils.*;
+
+/**
+ * A history shared by several {@link LineReader}s in the same JVM,
+ * for example all the sessions of an SSH server.
+ * <p>
+ * Each reader must use its own {@link #session()}, which holds the
+ * cursor used to navigate the history, while the entries are stored once
+ * and are visible to all sessions as soon as they are added.  Entries are
+ * published as immutable snapshots, so that reading the history never
+ * blocks, and adding an entry only holds a lock for the time needed to
+ * store it in memory.
+ * </p>
+ * <p>
+ * The history file uses the same format as {@link DefaultHistory} and is
+ * loaded once.  New entries are written in batches by a background thread,
+ * so that sessions never wait for disk I/O, and the file is trimmed to the
+ * given file size in the same way.  Use {@link #flush()} to wait for the
+ * pending entries to be written, and {@link #close()} when the history is
+ * no longer used.
+ * </p>
+ * <p>
+ * The {@link LineReader#HISTORY_FILE}, {@link LineReader#HISTORY_SIZE} and
+ * {@link LineReader#HISTORY_FILE_SIZE} variables of the readers are ignored:
+ * they are given when creating the shared history.  The other history
+ * options are applied per reader when adding entries.
+ * </p>
+ * <p>
+ * Since the entries are shared and only appended to the file, only the last
+ * entry can be removed through the iterators of a session, and only if it
+ * is still the last entry of the history: removing another entry throws an
+ * {@link UnsupportedOperationException}.
+ * </p>
+ * <pre>
+ * SharedHistory history = new SharedHistory(Paths.get("history"));
+ * // for each session
+ * LineReader reader = LineReaderBuilder.builder()
+ *         .terminal(terminal)
+ *         .history(history.session())
+ *         .build();
+ * </pre>
+ */
+public class SharedHistory implements Closeable {
+
+    public static final long DEFAULT_FLUSH_DELAY = 100;
+
+    private final Path file;
+    private final int maxSize;
+    private final int maxFileSize;
+    private final boolean timestamped;
+    private final long flushDelay;
+
+    private final Object lock = new Object();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private boolean loaded;
+
+    private final Object fileLock = new Object();
+    private final ConcurrentLinkedQueue<Entry> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService executor;
+    private int entriesInFile;
+
+    /**
+     * Create a shared history with the default sizes, using timestamps.
+     *
+     * @param file the history file, or <code>null</code> for an in-memory history
+     */
+    public SharedHistory(Path file) {
+        this(file, DefaultHistory.DEFAULT_HISTORY_SIZE, DefaultHistory.DEFAULT_HISTORY_FILE_SIZE, true, DEFAULT_FLUSH_DELAY);
+    }
+
+    /**
+     * Create a shared history.
+     *
+     * @param file        the history file, or <code>null</code> for an in-memory history
+     * @param maxSize     the maximum number of entries kept in memory
+     * @param maxFileSize the maximum number of entries kept in the file
+     * @param timestamped whether the file is written with timestamps,
+     *                    see {@link LineReader.Option#HISTORY_TIMESTAMPED}
+     * @param flushDelay  the delay in milliseconds used to batch the writes
+     */
+    public SharedHistory(Path file, int maxSize, int maxFileSize, boolean timestamped, long flushDelay) {
+        this.file = file;
+        this.maxSize = maxSize;
+        this.maxFileSize = maxFileSize;
+        this.timestamped = timestamped;
+        this.flushDelay = flushDelay;
+        this.executor = file != null
+                ? Executors.newSingleThreadScheduledExecutor(r -> Threads.newThread(r, "JLine shared history writer"))
+                : null;
+    }
+
+    /**
+     * Create a new session, to be used by a single {@link LineReader}.
+     *
+     * @return a new history session
+     */
+    public History session() {
+        return new Session();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Wait until all the entries added so far have been written to the history file.
+     *
+     * @throws IOException if the entries can not be written
+     */
+    public void flush() throws IOException {
+        if (file == null) {
+            return;
+        }
+        try {
+            executor.submit(() -> {
+                doFlush();
+                return null;
+            }).get();
+        } catch (RejectedExecutionException e) {
+            doFlush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while saving history");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Write the pending entries and stop the background writer.
+     * Sessions can still be used, but entries are then only written
+     * when calling {@link #flush()}.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        synchronized (lock) {
+            if (loaded) {
+                return;
+            }
+            loaded = true;
+            if (file != null && Files.exists(file)) {
+                Log.trace("Loading history from: ", file);
+                List<Entry> entries = MappedHistory.readText(file, timestamped);
+                int from = Math.max(0, entries.size() - maxSize);
+                int size = entries.size() - from;
+                Entry[] items = new Entry[Math.max(Snapshot.MIN_CAPACITY, size * 2)];
+                for (int i = 0; i < size; i++) {
+                    Entry entry = entries.get(from + i);
+                    items[i] = new DefaultHistory.EntryImpl(i, entry.time(), entry.line());
+                }
+                synchronized (fileLock) {
+                    entriesInFile = entries.size();
+                }
+                snapshot = new Snapshot(items, 0, size, 0);
+            }
+        }
+    }
+
+    private Entry add(Instant time, String line, boolean persist) {
+        Entry entry;
+        synchronized (lock) {
+            Snapshot s = snapshot;
+            Entry[] items = s.items;
+            int start = s.start;
+            int end = s.end;
+            int offset = s.offset;
+            if (end == items.length) {
+                // Compact and grow into a new array, existing snapshots keep the old one
+                items = Arrays.copyOfRange(items, start, start + Math.max(Snapshot.MIN_CAPACITY, (end - start) * 2));
+                end -= start;
+                start = 0;
+            }
+            entry = new DefaultHistory.EntryImpl(offset + end - start, time, line);
+            items[end++] = entry;
+            if (end - start > maxSize) {
+                start++;
+                offset++;
+            }
+            snapshot = new Snapshot(items, start, end, offset);
+        }
+        if (persist && file != null) {
+            pending.add(entry);
+            scheduleFlush();
+        }
+        return entry;
+    }
+
+    private boolean removeLast(Entry entry) {
+        synchronized (lock) {
+            Snapshot s = snapshot;
+            if (s.size() == 0 || s.items[s.end - 1] != entry) {
+                return false;
+            }
+            // Copy the array so that the slot is not reused while visible to older snapshots
+            Entry[] items = Arrays.copyOfRange(s.items, s.start, s.items.length);
+            items[s.size() - 1] = null;
+            snapshot = new Snapshot(items, 0, s.size() - 1, s.offset);
+        }
+        pending.remove(entry);
+        return true;
+    }
+
+    private void purge() throws IOException {
+        synchronized (lock) {
+            snapshot = Snapshot.EMPTY;
+            pending.clear();
+        }
+        if (file != null) {
+            synchronized (fileLock) {
+                Log.trace("Purging history from: ", file);
+                Files.deleteIfExists(file);
+                entriesInFile = 0;
+            }
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                executor.schedule(() -> {
+                    try {
+                        doFlush();
+                    } catch (IOException e) {
+                        Log.warn("Failed to save history", e);
+                    }
+                }, flushDelay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Append all the pending entries to the history file at once.
+     */
+    private void doFlush() throws IOException {
+        synchronized (fileLock) {
+            flushScheduled.set(false);
+            if (pending.isEmpty()) {
+                return;
+            }
+            Log.trace("Saving history to: ", file);
+            Path parent = file.toAbsolutePath().getParent();
+            if (!Files.exists(parent)) {
+                Files.createDirectories(parent);
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(file.toAbsolutePath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND, StandardOpenOption.CREATE)) {
+                Entry entry;
+                while ((entry = pending.poll()) != null) {
+                    writer.append(DefaultHistory.format(entry, timestamped));
+                    entriesInFile++;
+                }
+            }
+            if (entriesInFile > maxFileSize + maxFileSize / 4) {
+                trimFile();
+            }
+        }
+    }
+
+    private void trimFile() throws IOException {
+        Log.trace("Trimming history path: ", file);
+        List<Entry> allItems = MappedHistory.readText(file, timestamped);
+        DefaultHistory.doTrimHistory(allItems, maxFileSize);
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardOpenOption.WRITE)) {
+            for (Entry entry : allItems) {
+                writer.append(DefaultHistory.format(entry, timestamped));
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        entriesInFile = allItems.size();
+    }
+
+    private boolean isHistoryFile(Path path) throws IOException {
+        if (file == null) {
+            return false;
+        }
+        if (Files.exists(file) && Files.exists(path)) {
+            return Files.isSameFile(file, path);
+        }
+        return file.toAbsolutePath().normalize().equals(path.toAbsolutePath().normalize());
+    }
+
+    /**
+     * An immutable view of the entries: <code>items[start, end)</code> are the
+     * entries with the indexes <code>[offset, offset + end - start)</code>.
+     * Slots after <code>end</code> are filled by later snapshots sharing the array.
+     */
+    private static final class Snapshot {
+        static final int MIN_CAPACITY = 16;
+        // No capacity, so that the first add allocates an array owned by its history
+        static final Snapshot EMPTY = new Snapshot(new Entry[0], 0, 0, 0);
+
+        final Entry[] items;
+        final int start;
+        final int end;
+        final int offset;
+
+        Snapshot(Entry[] items, int start, int end, int offset) {
+            this.items = items;
+            this.start = start;
+            this.end = end;
+            this.offset = offset;
+        }
+
+        int size() {
+            return end - start;
+        }
+
+        Entry get(int index) {
+            return items[start + index - offset];
+        }
+    }
+
+    /**
+     * The entries of a snapshot.  Only the last entry can be removed.
+     */
+    private class Entries extends AbstractList<Entry> implements RandomAccess {
+        private final Snapshot snapshot;
+        private int size;
+
+        Entries(Snapshot snapshot) {
+            this.snapshot = snapshot;
+            this.size = snapshot.size();
+        }
+
+        @Override
+        public Entry get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return snapshot.items[snapshot.start + index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Entry remove(int index) {
+            Entry entry = get(index);
+            if (index != size - 1 || !removeLast(entry)) {
+                throw new UnsupportedOperationException("Only the last history entry can be removed");
+            }
+            size--;
+            modCount++;
+            return entry;
+        }
+    }
+
+    /**
+     * A view of the shared history with its own cursor.
+     */
+    private class Session implements History {
+
+        private LineReader reader;
+        private int index;
+        private boolean atEnd = true;
+        private final Map<String, Integer> lastWritten = new HashMap<>();
+
+        @Override
+        public void attach(LineReader reader) {
+            if (this.reader != reader) {
+                this.reader = reader;
+                try {
+                    load();
+                }
+                catch (IllegalArgumentException | IOException e) {
+                    Log.warn("Failed to load history", e);
+                }
+            }
+        }
+
+        @Override
+        public void load() throws IOException {
+            SharedHistory.this.load();
+            moveToEnd();
+        }
+
+        @Override
+        public void save() throws IOException {
+            flush();
+        }
+
+        @Override
+        public void write(Path file, boolean incremental) throws IOException {
+            internalWrite(file, incremental, false);
+        }
+
+        @Override
+        public void append(Path file, boolean incremental) throws IOException {
+            internalWrite(file, incremental, true);
+        }
+
+        private void internalWrite(Path file, boolean incremental, boolean append) throws IOException {
+            Path path = file != null ? file : getFile();
+            if (path == null) {
+                return;
+            }
+            if (isHistoryFile(path)) {
+                flush();
+                return;
+            }
+            Snapshot s = snapshot;
+            String key = path.toAbsolutePath().toString();
+            int from = incremental ? Math.max(s.offset, lastWritten.getOrDefault(key, 0)) : s.offset;
+            Log.trace("Saving history to: ", path);
+            try (BufferedWriter writer = append
+                    ? Files.newBufferedWriter(path.toAbsolutePath(),
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND, StandardOpenOption.CREATE)
+                    : Files.newBufferedWriter(path.toAbsolutePath())) {
+                boolean timestamped = isSet(reader, LineReader.Option.HISTORY_TIMESTAMPED);
+                for (Entry entry : new Entries(s).subList(from - s.offset, s.size())) {
+                    if (isPersistable(entry)) {
+                        writer.append(DefaultHistory.format(entry, timestamped));
+                    }
+                }
+            }
+            lastWritten.put(key, s.offset + s.size());
+        }
+
+        @Override
+        public void read(Path file, boolean incremental) throws IOException {
+            Path path = file != null ? file : getFile();
+            if (path == null || !Files.exists(path)) {
+                return;
+            }
+            Log.trace("Reading history from: ", path);
+            List<Entry> entries = MappedHistory.readText(path, isSet(reader, LineReader.Option.HISTORY_TIMESTAMPED));
+            Set<String> lines = new HashSet<>();
+            if (incremental) {
+                for (Entry entry : this) {
+                    lines.add(entry.line().trim());
+                }
+            }
+            for (Entry entry : entries) {
+                if (!incremental || lines.add(entry.line().trim())) {
+                    SharedHistory.this.add(entry.time(), entry.line(), false);
+                }
+            }
+            moveToEnd();
+        }
+
+        @Override
+        public void purge() throws IOException {
+            SharedHistory.this.purge();
+            moveToEnd();
+        }
+
+        @Override
+        public int size() {
+            return snapshot.size();
+        }
+
+        @Override
+        public int index() {
+            Snapshot s = snapshot;
+            if (atEnd) {
+                return s.offset + s.size();
+            }
+            return Math.max(s.offset, Math.min(index, s.offset + s.size()));
+        }
+
+        @Override
+        public int first() {
+            return snapshot.offset;
+        }
+
+        @Override
+        public int last() {
+            Snapshot s = snapshot;
+            return s.offset + s.size() - 1;
+        }
+
+        @Override
+        public String get(int index) {
+            Snapshot s = snapshot;
+            int idx = index - s.offset;
+            if (idx >= s.size() || idx < 0) {
+                throw new IllegalArgumentException("IndexOutOfBounds: Index:" + idx +", Size:" + s.size());
+            }
+            return s.get(index).line();
+        }
+
+        @Override
+        public void add(Instant time, String line) {
+            Objects.requireNonNull(time);
+            Objects.requireNonNull(line);
+
+            line = DefaultHistory.filterLine(reader, line, () -> {
+                Snapshot s = snapshot;
+                return s.size() > 0 ? s.items[s.end - 1].line() : null;
+            }, ReaderUtils::matchPatterns);
+            if (line == null) {
+                return;
+            }
+            SharedHistory.this.add(time, line, true);
+            moveToEnd();
+        }
+
+        @Override
+        public ListIterator<Entry> iterator(int index) {
+            Snapshot s = snapshot;
+            return new Entries(s).listIterator(index - s.offset);
+        }
+
+        //
+        // Navigation
+        //
+
+        @Override
+        public String current() {
+            Snapshot s = snapshot;
+            int idx = index();
+            if (idx >= s.offset + s.size()) {
+                return "";
+            }
+            return s.get(idx).line();
+        }
+
+        @Override
+        public boolean previous() {
+            int idx = index();
+            if (idx <= first()) {
+                return false;
+            }
+            index = idx - 1;
+            atEnd = false;
+            return true;
+        }
+
+        @Override
+        public boolean next() {
+            Snapshot s = snapshot;
+            int idx = index();
+            int end = s.offset + s.size();
+            if (idx >= end) {
+                return false;
+            }
+            index = idx + 1;
+            atEnd = index == end;
+            return true;
+        }
+
+        @Override
+        public boolean moveToFirst() {
+            Snapshot s = snapshot;
+            if (s.size() > 0 && index() != s.offset) {
+                index = s.offset;
+                atEnd = false;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean moveToLast() {
+            Snapshot s = snapshot;
+            int last = s.offset + s.size() - 1;
+            if (s.size() > 0 && index() != last) {
+                index = last;
+                atEnd = false;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean moveTo(int index) {
+            Snapshot s = snapshot;
+            if (index >= s.offset && index < s.offset + s.size()) {
+                this.index = index;
+                atEnd = false;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void moveToEnd() {
+            atEnd = true;
+        }
+
+        @Override
+        public void resetIndex() {
+            if (index() >= first() + size()) {
+                atEnd = true;
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (Entry e : this) {
+                sb.append(e.toString()).append("\n");
+            }
+            return sb.toString();
+        }
+    }
+
+}
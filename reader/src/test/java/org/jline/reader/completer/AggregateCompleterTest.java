@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.completer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.jline.reader.Candidate;
+import org.jline.reader.Completer;
+import org.jline.reader.impl.ReaderTestSupport;
+import org.jline.reader.impl.completer.AggregateCompleter;
+import org.jline.reader.impl.completer.StringsCompleter;
+import org.jline.reader.impl.completer.SystemCompleter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link AggregateCompleter}.
+ */
+public class AggregateCompleterTest extends ReaderTestSupport {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static Completer slow(long delay, String... values) {
+        return (reader, line, candidates) -> {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (String value : values) {
+                candidates.add(new Candidate(value));
+            }
+        };
+    }
+
+    private List<String> complete(Completer completer) {
+        List<Candidate> candidates = new ArrayList<>();
+        completer.complete(reader, reader.getParser().parse("", 0), candidates);
+        return candidates.stream().map(Candidate::value).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testParallel() {
+        AggregateCompleter completer = new AggregateCompleter(
+                slow(300, "a"), slow(200, "b"), slow(100, "c"), new StringsCompleter("d"));
+        assertEquals(Arrays.asList("a", "b", "c", "d"), complete(completer));
+
+        completer.setExecutor(executor);
+        long t0 = System.currentTimeMillis();
+        // candidates are merged in the order of the completers
+        assertEquals(Arrays.asList("a", "b", "c", "d"), complete(completer));
+        assertTrue(System.currentTimeMillis() - t0 < 550);
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        Completer partial = (reader, line, candidates) -> {
+            candidates.add(new Candidate("b1"));
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e) {
+                cancelled.countDown();
+            }
+        };
+        AggregateCompleter completer = new AggregateCompleter(new StringsCompleter("a"), partial, slow(0, "c"));
+        completer.setExecutor(executor);
+        completer.setTimeout(100);
+        assertEquals(Arrays.asList("a", "b1", "c"), complete(completer));
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFailure() {
+        AggregateCompleter completer = new AggregateCompleter(new StringsCompleter("a"),
+                (reader, line, candidates) -> { throw new IllegalStateException(); });
+        completer.setExecutor(executor);
+        complete(completer);
+    }
+
+    @Test
+    public void testSystemCompleter() throws Exception {
+        SystemCompleter completer = new SystemCompleter();
+        completer.add("cmd", slow(200, "x"));
+        completer.add("cmd", slow(200, "y"));
+        completer.compile();
+        completer.setExecutor(executor);
+        List<Candidate> candidates = new ArrayList<>();
+        long t0 = System.currentTimeMillis();
+        completer.complete(reader, reader.getParser().parse("cmd ", 4), candidates);
+        assertTrue(System.currentTimeMillis() - t0 < 350);
+        assertEquals(Arrays.asList("x", "y"),
+                candidates.stream().map(Candidate::value).collect(Collectors.toList()));
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.completer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.jline.reader.impl.completer.DirectoryListingCache;
+import org.jline.utils.OSUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link DirectoryListingCache}.
+ */
+public class DirectoryListingCacheTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("jline");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Path p : Files.newDirectoryStream(dir)) {
+            Files.delete(p);
+        }
+        Files.delete(dir);
+    }
+
+    private static Set<String> names(Collection<DirectoryListingCache.Entry> entries) {
+        Set<String> names = new TreeSet<>();
+        for (DirectoryListingCache.Entry entry : entries) {
+            names.add(entry.path().getFileName().toString());
+        }
+        return names;
+    }
+
+    private FileTime touch(long age) throws IOException {
+        FileTime time = FileTime.fromMillis(System.currentTimeMillis() - age);
+        Files.setLastModifiedTime(dir, time);
+        return time;
+    }
+
+    @Test
+    public void testAttributes() throws IOException {
+        Files.createDirectory(dir.resolve("sub"));
+        Files.createFile(dir.resolve("file.txt"));
+        Files.createFile(dir.resolve(".hidden"));
+        DirectoryListingCache cache = new DirectoryListingCache(4);
+        assertEquals(new TreeSet<>(Arrays.asList(".hidden", "file.txt", "sub")), names(cache.list(dir)));
+
+        DirectoryListingCache.Entry sub = cache.getEntry(dir.resolve("sub"));
+        assertTrue(sub.isDirectory());
+        assertFalse(sub.isRegularFile());
+        DirectoryListingCache.Entry file = cache.getEntry(dir.resolve("file.txt"));
+        assertTrue(file.isRegularFile());
+        assertFalse(file.isDirectory());
+        assertFalse(file.isSymbolicLink());
+        if (!OSUtils.IS_WINDOWS) {
+            assertTrue(cache.getEntry(dir.resolve(".hidden")).isHidden());
+        }
+        assertFalse(file.isHidden());
+        assertNull(cache.getEntry(dir.resolve("missing")));
+        // the parent must be the listed path
+        assertNull(cache.getEntry(dir.getFileName().resolve("file.txt")));
+        Files.delete(dir.resolve("sub"));
+    }
+
+    @Test
+    public void testInvalidation() throws IOException {
+        Files.createFile(dir.resolve("a"));
+        FileTime time = touch(TimeUnit.HOURS.toMillis(1));
+        DirectoryListingCache cache = new DirectoryListingCache(4);
+        Collection<DirectoryListingCache.Entry> first = cache.list(dir);
+        assertSame(first, cache.list(dir));
+        assertNotNull(cache.getEntry(dir.resolve("a")));
+
+        // an unchanged modification time keeps the listing
+        Files.createFile(dir.resolve("b"));
+        Files.setLastModifiedTime(dir, time);
+        assertSame(first, cache.list(dir));
+        assertEquals(Collections.singleton("a"), names(cache.list(dir)));
+
+        // a new modification time does not
+        touch(TimeUnit.MINUTES.toMillis(1));
+        assertEquals(new TreeSet<>(Arrays.asList("a", "b")), names(cache.list(dir)));
+
+        // a recently modified directory is listed each time
+        touch(0);
+        Collection<DirectoryListingCache.Entry> recent = cache.list(dir);
+        Files.createFile(dir.resolve("c"));
+        touch(0);
+        assertTrue(recent != cache.list(dir));
+
+        cache.invalidate(dir);
+        assertNull(cache.getEntry(dir.resolve("a")));
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jline.reader.AsyncCompleter;
+import org.jline.reader.Candidate;
+import org.jline.reader.LineReader;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link AsyncCompleter} and the completion timeout.
+ */
+public class AsyncCompletionTest extends ReaderTestSupport {
+
+    @Test
+    public void testAsyncCompleter() throws IOException {
+        AsyncCompleter completer = (reader, line, candidates) -> {
+            candidates.accept(new Candidate("foo"));
+            return CompletableFuture.completedFuture(null);
+        };
+        reader.setCompleter(completer);
+        assertBuffer("foo ", new TestBuffer("fo\t"));
+    }
+
+    @Test
+    public void testCancelledByKey() throws IOException {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        reader.setCompleter((AsyncCompleter) (reader, line, candidates) -> {
+            candidates.accept(new Candidate("foo"));
+            return future;
+        });
+        assertLine("fox", new TestBuffer("fo\tx\n"));
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        reader.setVariable(LineReader.COMPLETION_TIMEOUT, 100);
+        reader.setCompleter((reader, line, candidates) -> {
+            candidates.add(new Candidate("foobar"));
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            candidates.add(new Candidate("foobaz"));
+        });
+
+        PipedOutputStream pipe = new PipedOutputStream();
+        in.setIn(new PipedInputStream(pipe));
+        AtomicReference<String> result = new AtomicReference<>();
+        Thread thread = new Thread(() -> result.set(reader.readLine()));
+        thread.start();
+        try {
+            pipe.write("fo\t".getBytes(StandardCharsets.UTF_8));
+            pipe.flush();
+            // the partial results are used once the timeout elapses
+            assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+            long end = System.currentTimeMillis() + 5000;
+            while (!"foobar ".equals(reader.getBuffer().toString()) && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+        } finally {
+            pipe.write("\n".getBytes(StandardCharsets.UTF_8));
+            pipe.flush();
+            thread.join(5000);
+        }
+        assertEquals("foobar ", result.get());
+    }
+
+}
@@ -45,4 +45,28 @@ public class BufferTest {
         assertEquals(22, buffer.cursor());
         assertFalse(buffer.down());
     }
+
+    @Test
+    public void testVersion() {
+        BufferImpl buffer = new BufferImpl();
+        buffer.write("abc");
+        long version = buffer.version();
+        assertEquals("abc", buffer.toString());
+        buffer.cursor(1);
+        assertEquals(version, buffer.version());
+        assertTrue(buffer.currChar('X'));
+        assertEquals("aXc", buffer.toString());
+        buffer.delete();
+        assertEquals("ac", buffer.toString());
+        buffer.backspace();
+        assertEquals("c", buffer.toString());
+        buffer.write("de");
+        assertEquals("dec", buffer.toString());
+        BufferImpl copy = buffer.copy();
+        assertEquals("dec", copy.toString());
+        assertTrue(buffer.clear());
+        assertEquals("", buffer.toString());
+        assertEquals("dec", copy.toString());
+        assertTrue(version != buffer.version());
+    }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.jline.reader.Candidate;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link CandidateIndex}.
+ */
+public class CandidateIndexTest {
+
+    private static List<Candidate> candidates(String... values) {
+        List<Candidate> candidates = new ArrayList<>();
+        for (String value : values) {
+            candidates.add(new Candidate(value));
+        }
+        return candidates;
+    }
+
+    @Test
+    public void testPrefix() {
+        CandidateIndex index = new CandidateIndex(candidates("foo", "bar", "Foobar", "fo", "baz", "f"));
+        assertEquals(Arrays.asList("fo", "foo"),
+                new ArrayList<>(index.match("fo", null, false).keySet()));
+        assertEquals(Arrays.asList("fo", "foo", "Foobar"),
+                new ArrayList<>(index.match("fo", null, true).keySet()));
+        assertEquals(Arrays.asList("bar", "baz"),
+                new ArrayList<>(index.match("ba", null, false).keySet()));
+        assertTrue(index.match("x", null, false).isEmpty());
+        assertTrue(index.match("zz", null, false).isEmpty());
+    }
+
+    @Test
+    public void testPredicate() {
+        CandidateIndex index = new CandidateIndex(candidates("foo", "bar", "FOOBAR", "baz"));
+        assertEquals(Arrays.asList("bar", "FOOBAR"),
+                new ArrayList<>(index.match(null, s -> s.contains("bar"), true).keySet()));
+        assertEquals(Arrays.asList("bar"),
+                new ArrayList<>(index.match("b", s -> s.endsWith("r"), false).keySet()));
+    }
+
+    @Test
+    public void testGroups() {
+        List<Candidate> list = candidates("foo", "\033[1mfoo\033[0m", "bar");
+        CandidateIndex index = new CandidateIndex(list);
+        assertEquals(2, index.asMap().size());
+        assertEquals(2, index.asMap().get("foo").size());
+        assertTrue(index.isFor(list));
+        assertFalse(index.isFor(candidates("foo", "foo", "bar")));
+        assertFalse(index.isFor(list.subList(0, 2)));
+    }
+
+    @Test
+    public void testTypos() {
+        CandidateIndex index = new CandidateIndex(candidates("commit", "COMMAND", "checkout", "clone", "status"));
+        // the first query scans the values, the next ones use the trees
+        for (int i = 0; i < 2; i++) {
+            assertEquals(Arrays.asList("commit"),
+                    new ArrayList<>(index.typos("comit", 1, false).keySet()));
+            assertEquals(Arrays.asList("COMMAND", "commit"),
+                    new ArrayList<>(index.typos("comm", 1, true).keySet()));
+            assertEquals(Arrays.asList("checkout", "clone"),
+                    new ArrayList<>(index.typos("clhe", 2, false).keySet()));
+            assertTrue(index.typos("xyz", 1, false).isEmpty());
+        }
+    }
+
+    @Test
+    public void testTyposRandom() {
+        Random random = new Random(0);
+        List<Candidate> list = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            list.add(new Candidate(word(random, 2 + random.nextInt(8))));
+        }
+        CandidateIndex index = new CandidateIndex(list);
+        index.typos("", 1, false);
+        for (int i = 0; i < 200; i++) {
+            String word = word(random, 1 + random.nextInt(6));
+            int max = random.nextInt(3);
+            Map<String, List<Candidate>> expected = new CandidateIndex(list).typos(word, max, false);
+            assertEquals(expected, index.typos(word, max, false));
+        }
+    }
+
+    private static String word(Random random, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(4)));
+        }
+        return sb.toString();
+    }
+
+}
@@ -8,9 +8,16 @@
  */
 package org.jline.reader.impl;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
 import org.jline.reader.CompletingParsedLine;
+import org.jline.reader.EOFError;
 import org.jline.reader.ParsedLine;
 import org.jline.reader.Parser.ParseContext;
+import org.jline.reader.impl.DefaultParser.ArgumentList;
+import org.jline.reader.impl.DefaultParser.Bracket;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
@@ -77,4 +84,82 @@ public class DefaultParserTest {
         assertEquals("second\\ param", line.words().get(1));
         assertEquals("\"quoted param\"", line.words().get(2));
     }
+
+    @Test
+    public void testWordStart() {
+        DefaultParser parser = new DefaultParser();
+        ArgumentList line = (ArgumentList) parser.parse("foo  second\\ param \"quoted param\" ", 34);
+        assertEquals(4, line.words().size());
+        assertEquals(0, line.wordStart(0));
+        assertEquals(5, line.wordStart(1));
+        assertEquals(19, line.wordStart(2));
+        assertEquals(34, line.wordStart(3));
+        assertEquals(-1, line.wordStart(4));
+    }
+
+    @Test
+    public void testIncremental() {
+        DefaultParser full = new DefaultParser()
+                .eofOnUnclosedQuote(true)
+                .eofOnEscapedNewLine(true)
+                .eofOnUnclosedBracket(Bracket.CURLY, Bracket.ROUND, Bracket.SQUARE);
+        DefaultParser incremental = new DefaultParser()
+                .eofOnUnclosedQuote(true)
+                .eofOnEscapedNewLine(true)
+                .eofOnUnclosedBracket(Bracket.CURLY, Bracket.ROUND, Bracket.SQUARE)
+                .incremental(true);
+        List<ParseContext> contexts = Arrays.asList(ParseContext.ACCEPT_LINE,
+                ParseContext.COMPLETE, ParseContext.SECONDARY_PROMPT, ParseContext.SPLIT_LINE);
+        String chars = "ab  \n{}()['\"\\";
+        Random random = new Random(1);
+        StringBuilder buffer = new StringBuilder();
+        int cursor = 0;
+        for (int i = 0; i < 20000; i++) {
+            int op = random.nextInt(10);
+            if (op < 6 || buffer.length() == 0) {
+                buffer.insert(cursor++, chars.charAt(random.nextInt(chars.length())));
+            } else if (op < 8) {
+                cursor = random.nextInt(buffer.length() + 1);
+            } else if (cursor > 0) {
+                buffer.deleteCharAt(--cursor);
+            }
+            if (buffer.length() > 60) {
+                buffer.setLength(0);
+                cursor = 0;
+            }
+            ParseContext context = contexts.get(random.nextInt(contexts.size()));
+            int pos = random.nextInt(5) == 0 ? random.nextInt(buffer.length() + 1) : cursor;
+            assertSameParse(buffer.toString(), pos, context, full, incremental);
+        }
+    }
+
+    private void assertSameParse(String buffer, int cursor, ParseContext context,
+                                 DefaultParser full, DefaultParser incremental) {
+        String message = "'" + buffer + "' at " + cursor + " for " + context;
+        ArgumentList expected;
+        try {
+            expected = (ArgumentList) full.parse(buffer, cursor, context);
+        } catch (EOFError e) {
+            try {
+                incremental.parse(buffer, cursor, context);
+            } catch (EOFError e2) {
+                assertEquals(message, e.getMessage(), e2.getMessage());
+                assertEquals(message, e.getMissing(), e2.getMissing());
+                assertEquals(message, e.getOpenBrackets(), e2.getOpenBrackets());
+                assertEquals(message, e.getNextClosingBracket(), e2.getNextClosingBracket());
+                return;
+            }
+            throw new AssertionError(message + ": missing " + e);
+        }
+        ArgumentList actual = (ArgumentList) incremental.parse(buffer, cursor, context);
+        assertEquals(message, expected.words(), actual.words());
+        assertEquals(message, expected.wordIndex(), actual.wordIndex());
+        assertEquals(message, expected.wordCursor(), actual.wordCursor());
+        assertEquals(message, expected.rawWordCursor(), actual.rawWordCursor());
+        assertEquals(message, expected.rawWordLength(), actual.rawWordLength());
+        assertEquals(message, expected.escape("a b", true).toString(), actual.escape("a b", true).toString());
+        for (int i = 0; i < expected.words().size(); i++) {
+            assertEquals(message, expected.wordStart(i), actual.wordStart(i));
+        }
+    }
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.jline.reader.Highlighter;
+import org.jline.reader.LineReader;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the line by line highlighting.
+ */
+public class HighlighterTest extends ReaderTestSupport {
+
+    /**
+     * Records the highlighted lines.
+     */
+    static class LineHighlighter implements Highlighter {
+        final List<String> lines = new ArrayList<>();
+
+        @Override
+        public AttributedString highlight(LineReader reader, String buffer) {
+            throw new AssertionError("The buffer should be highlighted line by line");
+        }
+
+        @Override
+        public boolean canHighlightLines(LineReader reader) {
+            return true;
+        }
+
+        @Override
+        public AttributedString highlightLine(LineReader reader, String line) {
+            lines.add(line);
+            return new AttributedStringBuilder().styled(AttributedStyle.BOLD, line).toAttributedString();
+        }
+
+        @Override
+        public void setErrorPattern(Pattern errorPattern) {
+        }
+
+        @Override
+        public void setErrorIndex(int errorIndex) {
+        }
+    }
+
+    @Test
+    public void testEditedLinesOnly() throws IOException {
+        LineHighlighter highlighter = new LineHighlighter();
+        reader.setHighlighter(highlighter);
+
+        TestBuffer b = new TestBuffer("foo").ctrl('V').ctrl('J')
+                .append("bar").ctrl('V').ctrl('J')
+                .append("baz").ctrlA().append("x").enter();
+        assertLine("foo\nbar\nxbaz", b, false);
+
+        // the completed lines are not highlighted again while the next ones are typed
+        assertEquals(1, Collections.frequency(highlighter.lines, "foo"));
+        assertEquals(1, Collections.frequency(highlighter.lines, "bar"));
+        assertEquals(1, Collections.frequency(highlighter.lines, "xbaz"));
+    }
+
+    @Test
+    public void testLargeBuffer() throws IOException {
+        LineHighlighter highlighter = new LineHighlighter();
+        reader.setHighlighter(highlighter);
+        reader.setVariable(LineReader.FEATURES_MAX_BUFFER_SIZE, 10);
+
+        assertLine("a long line", new TestBuffer("a long line").enter(), false);
+        assertTrue(highlighter.lines.contains("a long line"));
+    }
+
+    @Test
+    public void testDefaultHighlighter() throws IOException {
+        // initialize the region state
+        assertLine("", new TestBuffer().enter(), false);
+        DefaultHighlighter highlighter = new DefaultHighlighter();
+        assertTrue(highlighter.canHighlightLines(reader));
+
+        String buffer = "foo\u0001\tbar\nba\u0002z\n";
+        AttributedStringBuilder sb = new AttributedStringBuilder();
+        for (String line : buffer.split("\n", -1)) {
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            sb.append(highlighter.highlightLine(reader, line));
+        }
+        assertEquals(highlighter.highlight(reader, buffer), sb.toAttributedString());
+
+        highlighter.setErrorIndex(2);
+        assertFalse(highlighter.canHighlightLines(reader));
+        highlighter.setErrorIndex(-1);
+        assertFalse(new DefaultHighlighter() { }.canHighlightLines(reader));
+    }
+
+}
@@ -79,6 +79,32 @@ public class HistorySearchTest extends ReaderTestSupport {
         assertEquals(6, history.size());
     }
 
+    @Test
+    public void testIndexedHistorySearch() throws Exception {
+        String[] searches = {
+                "^Rdle\n", "^Ragain\n", "^Rfad^R\n", "^Rfad^R^R^S\n", "^Rddle^R^R^R\n",
+                "^Rdd^Hle\n", "^Rxyz\n", "^RDLE\n", "^Rdle^S^S\n"
+        };
+        for (String search : searches) {
+            String expected = readLineWithHistory(search);
+            reader.setOpt(LineReader.Option.HISTORY_SEARCH_INDEX);
+            try {
+                assertEquals(search, expected, readLineWithHistory(search));
+            } finally {
+                reader.unsetOpt(LineReader.Option.HISTORY_SEARCH_INDEX);
+            }
+        }
+    }
+
+    private String readLineWithHistory(String keys) {
+        DefaultHistory history = setupHistory();
+        history.add("Faddle again");
+        history.add("something else");
+        history.add("FIDDLE");
+        in.setIn(new ByteArrayInputStream(translate(keys).getBytes()));
+        return reader.readLine();
+    }
+
     @Test
     public void testSearchHistoryAfterHittingEnd() throws Exception {
         DefaultHistory history = setupHistory();
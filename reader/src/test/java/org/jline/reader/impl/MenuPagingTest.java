@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jline.reader.Candidate;
+import org.jline.reader.LineReader;
+import org.jline.reader.LineReader.Option;
+import org.jline.reader.impl.completer.StringsCompleter;
+import org.jline.terminal.Size;
+import org.jline.terminal.Terminal;
+import org.jline.utils.AttributedString;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the paged rendering of the completion menu.
+ */
+public class MenuPagingTest extends ReaderTestSupport {
+
+    private static final Pattern FOOTER = Pattern.compile("rows (\\d+) to (\\d+) of (\\d+)\n");
+
+    private final List<String> pages = new ArrayList<>();
+    private final List<String> expected = new ArrayList<>();
+    private List<Candidate> candidates;
+    private boolean checking;
+    // number of layouts of the whole candidate list, and that number when the first page is displayed
+    private int layouts;
+    private int layoutsAtFirstPage = -1;
+
+    /**
+     * Records the displayed pages of the menu, along with the same rows
+     * of the menu rendered as a whole for the same selection.
+     */
+    class PagingLineReader extends TestLineReader {
+        PagingLineReader(Terminal terminal) {
+            super(terminal, "JLine", null);
+        }
+
+        @Override
+        protected void redisplay(boolean flush) {
+            AttributedString page = post != null ? post.get() : AttributedString.EMPTY;
+            Matcher matcher = FOOTER.matcher(page.toString());
+            if (matcher.find()) {
+                int topLine = Integer.parseInt(matcher.group(1)) - 1;
+                int bottomLine = Integer.parseInt(matcher.group(2));
+                Candidate selection = candidates.stream()
+                        .filter(c -> c.value().equals(buf.toString()))
+                        .findFirst().orElse(null);
+                if (layoutsAtFirstPage < 0) {
+                    layoutsAtFirstPage = layouts;
+                }
+                checking = true;
+                PostResult pr = computePost(candidates, selection, null, "cand");
+                checking = false;
+                List<AttributedString> lines = AttributedString.join(AttributedString.EMPTY, pr.post, new AttributedString("\n"))
+                        .columnSplitLength(size.getColumns(), true, display.delayLineWrap());
+                // the last line is the empty one after the final newline
+                assertEquals(Integer.parseInt(matcher.group(3)), lines.size() - 1);
+                List<AttributedString> sub = new ArrayList<>(lines.subList(topLine, bottomLine));
+                pages.add(page.subSequence(0, matcher.start()).toAnsi(terminal));
+                expected.add(AttributedString.join(AttributedString.EMPTY, sub).toAnsi(terminal));
+            }
+            super.redisplay(flush);
+        }
+
+        @Override
+        protected PostResult toColumns(List<Object> items, Candidate selection, String completed, Function<String, Integer> wcwidth, int width, boolean rowsFirst) {
+            if (!checking) {
+                layouts++;
+            }
+            return super.toColumns(items, selection, completed, wcwidth, width, rowsFirst);
+        }
+    }
+
+    private void assertPaged() {
+        assertTrue(pages.size() > 1);
+        assertEquals(expected, pages);
+        // only the rows of the displayed pages have been rendered
+        assertEquals(layoutsAtFirstPage, layouts);
+    }
+
+    private void setUp(int count) {
+        terminal.setSize(new Size(80, 10));
+        reader = new PagingLineReader(terminal);
+        reader.setKeyMap(LineReaderImpl.EMACS);
+        reader.setOpt(Option.MENU_COMPLETE);
+        reader.setVariable(LineReader.LIST_MAX, 1000);
+        candidates = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            candidates.add(new Candidate(String.format("cand%03d", i)));
+        }
+        reader.setCompleter(new StringsCompleter(candidates));
+    }
+
+    @Test
+    public void testPaging() throws IOException {
+        setUp(300);
+        TestBuffer b = new TestBuffer("cand\t");
+        for (int i = 0; i < 12; i++) {
+            b.down();
+        }
+        b.right().right().left().up();
+        for (int i = 0; i < 50; i++) {
+            b.tab();
+        }
+        assertBuffer("cand099 ", b.enter());
+        assertPaged();
+    }
+
+    @Test
+    public void testRowsFirst() throws IOException {
+        setUp(300);
+        reader.setOpt(Option.LIST_ROWS_FIRST);
+        TestBuffer b = new TestBuffer("cand\t");
+        for (int i = 0; i < 12; i++) {
+            b.down();
+        }
+        b.left().left();
+        assertBuffer("cand102 ", b.enter());
+        assertPaged();
+    }
+
+    @Test
+    public void testGroupPersist() throws IOException {
+        setUp(300);
+        // the candidates have no group, so that the menu is paged with the group options
+        reader.setOpt(Option.GROUP_PERSIST);
+        TestBuffer b = new TestBuffer("cand\t");
+        for (int i = 0; i < 12; i++) {
+            b.down();
+        }
+        assertBuffer("cand012 ", b.enter());
+        assertPaged();
+    }
+
+    @Test
+    public void testSingleGroup() throws IOException {
+        setUp(300);
+        for (int i = 0; i < candidates.size(); i++) {
+            candidates.set(i, new Candidate(candidates.get(i).value(), candidates.get(i).value(),
+                    "group", null, null, null, true));
+        }
+        reader.setCompleter(new StringsCompleter(candidates));
+        reader.setOpt(Option.GROUP_PERSIST);
+        reader.unsetOpt(Option.AUTO_GROUP);
+        TestBuffer b = new TestBuffer("cand\t");
+        for (int i = 0; i < 12; i++) {
+            b.down();
+        }
+        assertBuffer("cand012 ", b.enter());
+        assertPaged();
+    }
+
+    @Test
+    public void testGroups() throws IOException {
+        setUp(300);
+        for (int i = 0; i < candidates.size(); i++) {
+            candidates.set(i, new Candidate(candidates.get(i).value(), candidates.get(i).value(),
+                    i % 2 == 0 ? "even" : "odd", null, null, null, true));
+        }
+        reader.setCompleter(new StringsCompleter(candidates));
+        reader.setOpt(Option.GROUP_PERSIST);
+        TestBuffer b = new TestBuffer("cand\t");
+        for (int i = 0; i < 12; i++) {
+            b.down();
+        }
+        b.enter();
+        assertEquals(expected, pages);
+        // the groups are rendered with the whole layout
+        assertTrue(layouts > layoutsAtFirstPage);
+    }
+
+    @Test
+    public void testSinglePage() throws IOException {
+        setUp(20);
+        assertBuffer("cand001 ", new TestBuffer("cand\t").tab().enter());
+        assertTrue(pages.isEmpty());
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jline.reader.EOFError;
+import org.jline.reader.ParsedLine;
+import org.jline.reader.Parser.ParseContext;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the values computed from the buffer and shared between components.
+ */
+public class ParseBufferTest extends ReaderTestSupport {
+
+    @Test
+    public void testParseBuffer() {
+        AtomicInteger parses = new AtomicInteger();
+        reader.setParser(new DefaultParser() {
+            @Override
+            public ParsedLine parse(String line, int cursor, ParseContext context) {
+                parses.incrementAndGet();
+                return super.parse(line, cursor, context);
+            }
+        });
+        reader.getBuffer().write("foo bar");
+
+        ParsedLine line = reader.parseBuffer(0, ParseContext.COMPLETE);
+        assertEquals(Arrays.asList("foo", "bar"), line.words());
+        assertSame(line, reader.parseBuffer(0, ParseContext.COMPLETE));
+        assertEquals(1, parses.get());
+
+        // the cursor and the context are part of the key
+        reader.parseBuffer(7, ParseContext.COMPLETE);
+        reader.parseBuffer(0, ParseContext.ACCEPT_LINE);
+        assertEquals(3, parses.get());
+
+        // moving the cursor does not modify the buffer
+        reader.getBuffer().cursor(2);
+        assertSame(line, reader.parseBuffer(0, ParseContext.COMPLETE));
+        assertEquals(3, parses.get());
+
+        reader.getBuffer().write('x');
+        assertEquals(Arrays.asList("foxo", "bar"), reader.parseBuffer(0, ParseContext.COMPLETE).words());
+        assertEquals(4, parses.get());
+        reader.getBuffer().backspace();
+        assertEquals(Arrays.asList("foo", "bar"), reader.parseBuffer(0, ParseContext.COMPLETE).words());
+        assertEquals(5, parses.get());
+    }
+
+    @Test
+    public void testSetParser() {
+        DefaultParser parser = new DefaultParser();
+        reader.setParser(parser);
+        reader.getBuffer().write("foo 'bar baz'");
+        assertEquals(Arrays.asList("foo", "bar baz"), reader.parseBuffer(0, ParseContext.COMPLETE).words());
+
+        // the parser is set again once its configuration changes
+        parser.setQuoteChars(new char[0]);
+        reader.setParser(parser);
+        assertEquals(Arrays.asList("foo", "'bar", "baz'"), reader.parseBuffer(0, ParseContext.COMPLETE).words());
+    }
+
+    @Test
+    public void testSyntaxError() {
+        reader.setParser(new DefaultParser().eofOnUnclosedQuote(true));
+        reader.getBuffer().write("foo 'bar");
+        EOFError error = null;
+        for (int i = 0; i < 2; i++) {
+            try {
+                reader.parseBuffer(8, ParseContext.ACCEPT_LINE);
+                fail("Expected an EOFError");
+            } catch (EOFError e) {
+                if (error != null) {
+                    assertSame(error, e);
+                }
+                error = e;
+            }
+        }
+        assertEquals("quote", error.getMissing());
+    }
+
+    @Test
+    public void testComputeFromBuffer() {
+        AtomicInteger computed = new AtomicInteger();
+        reader.getBuffer().write("foo");
+        assertEquals("FOO", reader.computeFromBuffer("upper", s -> {
+            computed.incrementAndGet();
+            return s.toUpperCase();
+        }));
+        assertEquals("FOO", reader.computeFromBuffer("upper", s -> {
+            computed.incrementAndGet();
+            return s.toUpperCase();
+        }));
+        assertEquals(1, computed.get());
+
+        reader.getBuffer().clear();
+        assertEquals("", reader.computeFromBuffer("upper", String::toUpperCase));
+        BufferImpl other = new BufferImpl();
+        other.write("bar");
+        reader.getBuffer().copyFrom(other);
+        assertEquals("BAR", reader.computeFromBuffer("upper", String::toUpperCase));
+        assertEquals("bar", reader.getBuffer().toString());
+    }
+
+}
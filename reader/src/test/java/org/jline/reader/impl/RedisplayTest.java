@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jline.reader.LineReader;
+import org.jline.terminal.Terminal;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the coalescing of redisplays.
+ */
+public class RedisplayTest extends ReaderTestSupport {
+
+    private CountingLineReader counting;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        counting = new CountingLineReader(terminal);
+    }
+
+    @Test
+    public void testUnlimited() {
+        in.setIn(new ByteArrayInputStream("abcdefghij\n".getBytes()));
+        assertEquals("abcdefghij", counting.readLine());
+        assertTrue(counting.redisplays.get() > 10);
+    }
+
+    @Test
+    public void testCoalesced() {
+        counting.setVariable(LineReader.REDISPLAY_RATE, 1);
+        in.setIn(new ByteArrayInputStream("abcdefghij\n".getBytes()));
+        assertEquals("abcdefghij", counting.readLine());
+        // initial display, the display when accepting the line, and maybe
+        // one if the input was slow to come
+        assertTrue(counting.redisplays.get() <= 3);
+    }
+
+    @Test
+    public void testDeferredRedisplay() throws Exception {
+        counting.setVariable(LineReader.REDISPLAY_RATE, 10);
+        PipedOutputStream pipe = new PipedOutputStream();
+        in.setIn(new PipedInputStream(pipe));
+        AtomicReference<String> line = new AtomicReference<>();
+        Thread thread = new Thread(() -> line.set(counting.readLine()));
+        thread.start();
+        try {
+            pipe.write("abc".getBytes(StandardCharsets.UTF_8));
+            pipe.flush();
+
+            // the display is eventually updated once the input stops
+            waitFor(() -> out.toString().contains("abc"));
+
+            int before = counting.redisplays.get();
+            for (int i = 0; i < 50; i++) {
+                counting.printAbove("message " + i);
+            }
+            assertTrue(counting.redisplays.get() - before < 50);
+            counting.flushRedisplay();
+            waitFor(() -> !counting.redisplayPending);
+        } finally {
+            pipe.write("\n".getBytes(StandardCharsets.UTF_8));
+            pipe.flush();
+            thread.join(5000);
+        }
+        assertEquals("abc", line.get());
+    }
+
+    private interface Condition {
+        boolean check() throws Exception;
+    }
+
+    private static void waitFor(Condition condition) throws Exception {
+        long end = System.currentTimeMillis() + 5000;
+        while (!condition.check()) {
+            assertTrue("timeout", System.currentTimeMillis() < end);
+            Thread.sleep(10);
+        }
+    }
+
+    private static class CountingLineReader extends LineReaderImpl {
+
+        final AtomicInteger redisplays = new AtomicInteger();
+
+        CountingLineReader(Terminal terminal) throws IOException {
+            super(terminal);
+        }
+
+        @Override
+        protected void redisplay(boolean flush) {
+            redisplays.incrementAndGet();
+            super.redisplay(flush);
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import java.io.IOException;
+
+import org.jline.reader.LineReader;
+import org.junit.Test;
+
+import static org.jline.keymap.KeyMap.ctrl;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link UndoLog}.
+ */
+public class UndoLogTest extends ReaderTestSupport {
+
+    @Test
+    public void testUndoRedo() {
+        BufferImpl buffer = new BufferImpl();
+        UndoLog log = new UndoLog(buffer);
+        buffer.write("hello");
+        log.clear();
+        assertFalse(log.canUndo());
+
+        buffer.write(" world");
+        log.commit();
+        buffer.cursor(0);
+        buffer.delete(1);
+        buffer.write('H');
+        log.commit();
+        buffer.cursor(buffer.length());
+        buffer.backspace(5);
+        log.commit();
+        assertEquals("Hello ", buffer.toString());
+
+        log.undo();
+        assertEquals("Hello world", buffer.toString());
+        assertEquals(1, buffer.cursor());
+        log.undo();
+        assertEquals("hello world", buffer.toString());
+        assertEquals(11, buffer.cursor());
+        log.undo();
+        assertEquals("hello", buffer.toString());
+        assertEquals(5, buffer.cursor());
+        assertFalse(log.canUndo());
+
+        log.redo();
+        log.redo();
+        assertEquals("Hello world", buffer.toString());
+        assertEquals(1, buffer.cursor());
+
+        // a new edit discards the undone edits
+        buffer.write("!");
+        log.commit();
+        assertFalse(log.canRedo());
+        assertEquals("H!ello world", buffer.toString());
+        log.undo();
+        assertEquals("Hello world", buffer.toString());
+    }
+
+    @Test
+    public void testGroups() {
+        BufferImpl buffer = new BufferImpl();
+        UndoLog log = new UndoLog(buffer);
+        log.clear();
+        buffer.write("abc");
+        buffer.currChar('x');
+        buffer.move(-1);
+        buffer.currChar('C');
+        buffer.clear();
+        buffer.write("def");
+        log.commit();
+        assertFalse(log.commit());
+        assertEquals("def", buffer.toString());
+        log.undo();
+        assertEquals("", buffer.toString());
+        assertFalse(log.canUndo());
+        log.redo();
+        assertEquals("def", buffer.toString());
+    }
+
+    @Test
+    public void testCopyFrom() {
+        BufferImpl buffer = new BufferImpl();
+        UndoLog log = new UndoLog(buffer);
+        buffer.write("echo foo bar");
+        log.clear();
+        BufferImpl other = new BufferImpl();
+        other.write("echo baz bar");
+        buffer.copyFrom(other);
+        log.commit();
+        assertEquals("echo baz bar", buffer.toString());
+        log.undo();
+        assertEquals("echo foo bar", buffer.toString());
+        log.redo();
+        assertEquals("echo baz bar", buffer.toString());
+    }
+
+    @Test
+    public void testLargeBuffer() throws IOException {
+        // undo is not limited by the features-max-buffer-size variable
+        reader.setVariable(LineReader.FEATURES_MAX_BUFFER_SIZE, 10);
+        TestBuffer b = new TestBuffer("abcdefghijklmnopqrstuvwxyz")
+                .append(ctrl('_'))
+                .append(ctrl('_'));
+        assertBuffer("abcdefghijklmnopqrstuvwx", b);
+    }
+
+    @Test
+    public void testUndoWidget() throws IOException {
+        TestBuffer b = new TestBuffer("echo foo bar")
+                .append(ctrl('W'))
+                .append(ctrl('W'))
+                .append(ctrl('_'));
+        assertBuffer("echo foo ", b);
+        assertTrue(reader.undo.canUndo());
+    }
+
+    @Test
+    public void testUndoTree() {
+        // the undo tree of subclasses is backed by the undo log
+        reader.undo.clear();
+        reader.buf.write("foo");
+        reader.undo.newState(reader.buf.copy());
+        BufferImpl other = new BufferImpl();
+        other.write("foo bar");
+        reader.undo.newState(other);
+        assertEquals("foo bar", reader.buf.toString());
+        assertTrue(reader.undoLog.canUndo());
+
+        reader.undo.undo();
+        assertEquals("foo", reader.buf.toString());
+        reader.undo.undo();
+        assertEquals("", reader.buf.toString());
+        assertFalse(reader.undo.canUndo());
+        reader.undo.redo();
+        assertEquals("foo", reader.buf.toString());
+        assertTrue(reader.undo.canRedo());
+    }
+
+}
@@ -9,11 +9,17 @@
 package org.jline.reader.impl.history;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.IntStream;
 
 import org.jline.reader.LineReader;
@@ -24,6 +30,8 @@ import org.junit.Test;
 
 import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests file history.
@@ -102,4 +110,66 @@ public class HistoryPersistenceTest extends ReaderTestSupport {
         lines = Files.readAllLines(Paths.get("test"));
         assertEquals(cmdsPerThread * (nbThreads + 1), lines.size());
     }
+
+    @Test
+    public void testAddWhileWriterStops() throws Exception {
+        Path file = Paths.get("test");
+        HistoryWriter writer = new HistoryWriter(file);
+        writer.configure(0, 1, false, 500, false);
+        // a line is added right after the writer thread found its queue empty
+        CountDownLatch stops = new CountDownLatch(2);
+        AtomicBoolean first = new AtomicBoolean(true);
+        writer.stopHook = () -> {
+            if (first.getAndSet(false)) {
+                try {
+                    writer.add("cmd1\n");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            stops.countDown();
+        };
+        writer.add("cmd0\n");
+        assertTrue(stops.await(10, TimeUnit.SECONDS));
+        writer.flush();
+        assertEquals(Arrays.asList("cmd0", "cmd1"), Files.readAllLines(file));
+    }
+
+    @Test
+    public void testAsyncSave() throws Exception {
+        Path file = Paths.get("test");
+        reader.setVariable(LineReader.HISTORY_FILE, file);
+        reader.setOpt(LineReader.Option.HISTORY_INCREMENTAL);
+        reader.setOpt(LineReader.Option.HISTORY_ASYNC_SAVE);
+        reader.setOpt(LineReader.Option.HISTORY_FSYNC);
+        reader.setVariable(LineReader.HISTORY_SAVE_DELAY, 60000);
+        reader.setVariable(LineReader.HISTORY_SAVE_BATCH, 3);
+
+        DefaultHistory history = new DefaultHistory(reader);
+        history.add("cmd0");
+        history.add("cmd1");
+        // entries are written in a batch of three
+        Thread.sleep(100);
+        assertFalse(Files.exists(file));
+        history.add("cmd2");
+        history.add("cmd3");
+        long timeout = System.currentTimeMillis() + 5000;
+        while (lines(file) < 3 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, lines(file));
+
+        // saving waits for the pending entries
+        history.save();
+        assertEquals(4, lines(file));
+
+        // the history file is read back as usual
+        DefaultHistory other = new DefaultHistory(reader);
+        assertEquals(4, other.size());
+        assertEquals("cmd3", other.get(3));
+    }
+
+    private static long lines(Path file) throws IOException {
+        return Files.exists(file) ? Files.readAllLines(file).size() : 0;
+    }
 }
@@ -21,9 +21,14 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -93,6 +98,132 @@ public class HistoryTest extends ReaderTestSupport
         assertEquals("f", history.get(5));
     }
 
+    @Test
+    public void testEvictionWrapsAround() {
+        reader.setVariable(LineReader.HISTORY_SIZE, 3);
+
+        for (int i = 0; i < 100; i++) {
+            history.add("line" + i);
+        }
+
+        assertHistoryContains(97, "line97", "line98", "line99");
+        assertEquals("line98", history.get(98));
+        assertTrue(history.moveTo(97));
+        assertEquals("line97", history.current());
+        ListIterator<History.Entry> it = history.iterator(99);
+        assertEquals("line98", it.previous().line());
+        assertEquals("line97", it.previous().line());
+        assertFalse(it.hasPrevious());
+    }
+
+    @Test
+    public void testReadIncrementalSkipsDuplicates() throws IOException {
+        Path histFile = Files.createTempFile(null, null);
+        Files.write(histFile, Arrays.asList("1:a", "2:b", "3: a ", "4:c", "5:b"));
+
+        history.add("c");
+        history.read(histFile, true);
+
+        assertHistoryContains(0, "c", "a", "b");
+    }
+
+    @Test
+    public void testSearchIndex() {
+        reader.setVariable(LineReader.HISTORY_SIZE, 4);
+        reader.setOpt(LineReader.Option.HISTORY_SEARCH_INDEX);
+
+        history.add("git status");
+        history.add("ls -la");
+        history.add("git commit");
+        history.add("echo GIT");
+
+        assertSearch(history.reverseSearchIterator(history.last(), "git"), "echo GIT", "git commit", "git status");
+        assertSearch(history.searchIterator(1, "git"), "git commit", "echo GIT");
+        assertSearch(history.reverseSearchIterator(history.last(), "gitx"));
+
+        history.add("make");
+        history.add("git push");
+        assertSearch(history.reverseSearchIterator(history.last(), "git"), "git push", "echo GIT", "git commit");
+        assertSearch(history.searchIterator(0, "t c"), "git commit");
+
+        Iterator<History.Entry> it = history.reverseIterator();
+        it.next();
+        it.remove();
+        assertSearch(history.reverseSearchIterator(history.last(), "git"), "echo GIT", "git commit");
+        history.add("git pull");
+        assertSearch(history.reverseSearchIterator(history.last(), "git"), "git pull", "echo GIT", "git commit");
+    }
+
+    @Test
+    public void testPrefixIndex() {
+        reader.setVariable(LineReader.HISTORY_SIZE, 4);
+
+        history.add("git status");
+        history.add("ls -la");
+        history.add("git commit");
+        history.add("git");
+
+        assertEquals("git", history.lastStartingWith("git").line());
+        assertEquals("git commit", history.lastStartingWith("git ").line());
+        assertEquals("git status", history.lastStartingWith("git s").line());
+        assertEquals("git commit", history.lastStartingWith("git commit").line());
+        assertEquals("git", history.lastStartingWith("").line());
+        assertEquals(null, history.lastStartingWith("gitx"));
+        assertEquals(null, history.lastStartingWith("git commit -a"));
+
+        history.add("make");
+        assertEquals(null, history.lastStartingWith("git s"));
+        assertEquals("ls -la", history.lastStartingWith("ls").line());
+        assertEquals("git commit", history.lastStartingWith("git ").line());
+        history.add("git push");
+        assertEquals(null, history.lastStartingWith("ls"));
+        assertEquals("git push", history.lastStartingWith("git ").line());
+        assertEquals("git commit", history.lastStartingWith("git c").line());
+
+        Iterator<History.Entry> it = history.reverseIterator();
+        it.next();
+        it.remove();
+        assertEquals("git", history.lastStartingWith("git").line());
+        assertEquals("git commit", history.lastStartingWith("git ").line());
+        history.add("git pull");
+        assertEquals("git pull", history.lastStartingWith("git p").line());
+    }
+
+    @Test
+    public void testPrefixIndexRandom() {
+        reader.setVariable(LineReader.HISTORY_SIZE, 50);
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            history.add(randomLine(random));
+            String prefix = randomLine(random);
+            prefix = prefix.substring(0, random.nextInt(prefix.length() + 1));
+            History.Entry expected = null;
+            for (Iterator<History.Entry> it = history.reverseIterator(); it.hasNext(); ) {
+                History.Entry entry = it.next();
+                if (entry.line().startsWith(prefix)) {
+                    expected = entry;
+                    break;
+                }
+            }
+            assertEquals(expected, history.lastStartingWith(prefix));
+        }
+    }
+
+    private static String randomLine(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int length = random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(3)));
+        }
+        return sb.toString();
+    }
+
+    private void assertSearch(Iterator<History.Entry> it, String... expected) {
+        List<String> lines = new ArrayList<>();
+        it.forEachRemaining(e -> lines.add(e.line()));
+        assertEquals(Arrays.asList(expected), lines);
+    }
+
     @Test
     public void testTrimIterate() throws IOException {
         Path histFile = Files.createTempFile(null, null);
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.history;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.ListIterator;
+
+import org.jline.reader.History;
+import org.jline.reader.LineReader;
+import org.jline.reader.impl.ReaderTestSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link MappedHistory}.
+ */
+public class MappedHistoryTest extends ReaderTestSupport {
+
+    private Path dir;
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        dir = Files.createTempDirectory("history");
+        file = dir.resolve("history");
+        reader.setVariable(LineReader.HISTORY_FILE, file);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                Files.delete(p);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private void assertHistoryContains(History history, int offset, String... items) {
+        assertEquals(items.length, history.size());
+        int i = 0;
+        for (History.Entry entry : history) {
+            assertEquals(offset + i, entry.index());
+            assertEquals(items[i++], entry.line());
+        }
+    }
+
+    @Test
+    public void testAppendAndReload() throws IOException {
+        MappedHistory history = new MappedHistory(reader);
+        history.add(Instant.ofEpochMilli(1000), "echo a");
+        history.add(Instant.ofEpochMilli(2000), "echo été");
+        history.add(Instant.ofEpochMilli(3000), "ls\nfoo");
+        assertTrue(BinaryHistoryFile.isBinary(file));
+
+        // entries are written when added, no save is needed
+        MappedHistory other = new MappedHistory(reader);
+        assertHistoryContains(other, 0, "echo a", "echo été", "ls\nfoo");
+        assertEquals(Instant.ofEpochMilli(2000), other.iterator(1).next().time());
+        assertEquals(3, other.index());
+        assertTrue(other.previous());
+        assertEquals("ls\nfoo", other.current());
+        history.save();
+    }
+
+    @Test
+    public void testHistorySize() throws IOException {
+        reader.setVariable(LineReader.HISTORY_SIZE, 3);
+        MappedHistory history = new MappedHistory(reader);
+        for (int i = 0; i < 5; i++) {
+            history.add("cmd" + i);
+        }
+        assertHistoryContains(history, 2, "cmd2", "cmd3", "cmd4");
+        assertEquals(2, history.first());
+        assertEquals(4, history.last());
+        assertEquals("cmd3", history.get(3));
+
+        // the file keeps all entries
+        history = new MappedHistory(reader);
+        assertHistoryContains(history, 2, "cmd2", "cmd3", "cmd4");
+        reader.setVariable(LineReader.HISTORY_SIZE, 10);
+        history.load();
+        assertHistoryContains(history, 0, "cmd0", "cmd1", "cmd2", "cmd3", "cmd4");
+    }
+
+    @Test
+    public void testTrimFile() throws IOException {
+        reader.setVariable(LineReader.HISTORY_FILE_SIZE, 4);
+        MappedHistory history = new MappedHistory(reader);
+        for (String line : Arrays.asList("a", "b", "a", "c", "d", "e")) {
+            history.add(line);
+        }
+        // the file is trimmed once it grows over 5 entries
+        assertHistoryContains(history, 0, "a", "c", "d", "e");
+        history = new MappedHistory(reader);
+        assertHistoryContains(history, 0, "a", "c", "d", "e");
+    }
+
+    @Test
+    public void testTrimSharedFile() throws IOException {
+        reader.setVariable(LineReader.HISTORY_FILE_SIZE, 4);
+        MappedHistory history = new MappedHistory(reader);
+        MappedHistory other = new MappedHistory(reader);
+        for (String line : Arrays.asList("a", "b", "a", "c", "d", "e")) {
+            history.add(line);
+        }
+        // the other history reopens the trimmed file before appending
+        other.add("f");
+        assertHistoryContains(other, 0, "a", "c", "d", "e", "f");
+        history.read(null, false);
+        assertHistoryContains(history, 0, "a", "c", "d", "e", "f");
+        assertHistoryContains(new MappedHistory(reader), 0, "a", "c", "d", "e", "f");
+
+        other.purge();
+        history.add("g");
+        assertHistoryContains(history, 0, "g");
+        assertHistoryContains(new MappedHistory(reader), 0, "g");
+    }
+
+    @Test
+    public void testRemoveLast() throws IOException {
+        MappedHistory history = new MappedHistory(reader);
+        history.add("a");
+        history.add("b");
+        ListIterator<History.Entry> it = history.iterator(history.last());
+        it.next();
+        it.remove();
+        assertHistoryContains(history, 0, "a");
+        history.add("c");
+        assertHistoryContains(new MappedHistory(reader), 0, "a", "c");
+    }
+
+    @Test
+    public void testMappedWindows() throws IOException {
+        // records crossing and larger than the mapped windows
+        try (BinaryHistoryFile binary = new BinaryHistoryFile(file, 64)) {
+            for (int i = 0; i < 100; i++) {
+                binary.append(i, line(i));
+            }
+            for (int i = 99; i >= 0; i -= 3) {
+                assertEquals(line(i), binary.line(i));
+                assertEquals(i, binary.time(i));
+            }
+            binary.append(100, line(100));
+            binary.removeLast();
+            binary.append(100, "last");
+            assertEquals("last", binary.line(100));
+            for (int i = 0; i < 100; i++) {
+                assertEquals(line(i), binary.line(i));
+            }
+        }
+    }
+
+    private static String line(int i) {
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < i % 20 * 7; k++) {
+            sb.append((char) ('a' + (i + k) % 26));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testRecovery() throws IOException {
+        MappedHistory history = new MappedHistory(reader);
+        history.add("a");
+        history.add("b");
+        history.add("c");
+        history.purge();
+        history.add("x");
+        history.add("y");
+
+        // simulate a crash after writing a record but before indexing it
+        Path index = BinaryHistoryFile.indexPath(file);
+        try (RandomAccessFile raf = new RandomAccessFile(index.toFile(), "rw")) {
+            raf.setLength(raf.length() - 8);
+        }
+        assertHistoryContains(new MappedHistory(reader), 0, "x", "y");
+
+        // simulate a crash in the middle of writing a record
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(raf.length());
+            raf.writeInt(100);
+            raf.writeLong(0);
+        }
+        history = new MappedHistory(reader);
+        assertHistoryContains(history, 0, "x", "y");
+        history.add("z");
+        assertHistoryContains(new MappedHistory(reader), 0, "x", "y", "z");
+
+        // the index is rebuilt when missing
+        Files.delete(index);
+        assertHistoryContains(new MappedHistory(reader), 0, "x", "y", "z");
+    }
+
+    @Test
+    public void testConvert() throws IOException {
+        Path text = dir.resolve("text");
+        Files.write(text, Arrays.asList("1000:echo a", "2000:cat \\nfoo", "3000:echo b"));
+        assertEquals(3, MappedHistory.convert(text, file, true));
+
+        MappedHistory history = new MappedHistory(reader);
+        assertHistoryContains(history, 0, "echo a", "cat \nfoo", "echo b");
+        Iterator<History.Entry> it = history.iterator();
+        assertEquals(Instant.ofEpochMilli(1000), it.next().time());
+
+        // import a text file written by DefaultHistory
+        Path other = dir.resolve("other");
+        Files.write(other, Arrays.asList("4000:echo b", "5000:echo c"));
+        history.read(other, true);
+        assertHistoryContains(history, 0, "echo a", "cat \nfoo", "echo b", "echo c");
+    }
+
+    @Test
+    public void testTextFileIsNotLoaded() throws IOException {
+        Files.write(file, Arrays.asList("echo a"));
+        MappedHistory history = new MappedHistory(reader);
+        assertEquals(0, history.size());
+        history.add("echo b");
+        assertHistoryContains(history, 0, "echo b");
+        assertFalse(BinaryHistoryFile.isBinary(file));
+    }
+
+    @Test
+    public void testWithoutFile() {
+        reader.getVariables().remove(LineReader.HISTORY_FILE);
+        reader.setVariable(LineReader.HISTORY_SIZE, 2);
+        MappedHistory history = new MappedHistory(reader);
+        history.add("a");
+        history.add("b");
+        history.add("c");
+        assertHistoryContains(history, 1, "b", "c");
+    }
+
+}
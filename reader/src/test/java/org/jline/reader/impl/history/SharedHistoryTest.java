@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.history;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+
+import org.jline.reader.History;
+import org.jline.reader.LineReader;
+import org.jline.reader.impl.ReaderTestSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SharedHistory}.
+ */
+public class SharedHistoryTest extends ReaderTestSupport {
+
+    private Path dir;
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        dir = Files.createTempDirectory("history");
+        file = dir.resolve("history");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                Files.delete(p);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private static void assertHistoryContains(History history, int offset, String... items) {
+        assertEquals(items.length, history.size());
+        int i = 0;
+        for (History.Entry entry : history) {
+            assertEquals(offset + i, entry.index());
+            assertEquals(items[i++], entry.line());
+        }
+    }
+
+    @Test
+    public void testSessions() throws IOException {
+        try (SharedHistory shared = new SharedHistory(null)) {
+            History h1 = shared.session();
+            History h2 = shared.session();
+            h1.attach(reader);
+            h1.add("a");
+            h2.add("b");
+            assertHistoryContains(h1, 0, "a", "b");
+            assertHistoryContains(h2, 0, "a", "b");
+
+            // each session has its own cursor
+            assertTrue(h1.previous());
+            assertTrue(h1.previous());
+            assertEquals("a", h1.current());
+            assertEquals(2, h2.index());
+            assertEquals("", h2.current());
+
+            // entries added by other sessions do not move the cursor
+            h2.add("c");
+            assertEquals("a", h1.current());
+            assertTrue(h1.next());
+            assertTrue(h1.next());
+            assertEquals("c", h1.current());
+            assertTrue(h1.next());
+            assertEquals(3, h1.index());
+            assertFalse(h1.next());
+        }
+    }
+
+    @Test
+    public void testSeparateInstances() throws IOException {
+        try (SharedHistory shared1 = new SharedHistory(null);
+             SharedHistory shared2 = new SharedHistory(null)) {
+            History h1 = shared1.session();
+            History h2 = shared2.session();
+            h1.add("one");
+            h2.add("two");
+            assertHistoryContains(h1, 0, "one");
+            assertHistoryContains(h2, 0, "two");
+
+            h1.purge();
+            h2.purge();
+            h1.add("three");
+            h2.add("four");
+            assertHistoryContains(h1, 0, "three");
+            assertHistoryContains(h2, 0, "four");
+        }
+    }
+
+    @Test
+    public void testSize() throws IOException {
+        try (SharedHistory shared = new SharedHistory(null, 3, 10, true, 0)) {
+            History history = shared.session();
+            for (int i = 0; i < 40; i++) {
+                history.add("cmd" + i);
+            }
+            assertHistoryContains(history, 37, "cmd37", "cmd38", "cmd39");
+            assertEquals("cmd38", history.get(38));
+            assertTrue(history.moveToFirst());
+            assertEquals("cmd37", history.current());
+        }
+    }
+
+    @Test
+    public void testPersistence() throws IOException {
+        Files.write(file, Arrays.asList("1000:a", "2000:b"));
+        try (SharedHistory shared = new SharedHistory(file)) {
+            History h1 = shared.session();
+            History h2 = shared.session();
+            h1.attach(reader);
+            h2.load();
+            assertHistoryContains(h2, 0, "a", "b");
+            h1.add("c");
+            h2.add("d\ne");
+            h1.save();
+            assertEquals(Arrays.asList("1000:a", "2000:b"), Files.readAllLines(file).subList(0, 2));
+            assertEquals(Arrays.asList("c", "d\\ne"), stripTimes(Files.readAllLines(file).subList(2, 4)));
+        }
+        try (SharedHistory shared = new SharedHistory(file)) {
+            History history = shared.session();
+            history.load();
+            assertHistoryContains(history, 0, "a", "b", "c", "d\ne");
+        }
+    }
+
+    @Test
+    public void testTrimFile() throws IOException {
+        try (SharedHistory shared = new SharedHistory(file, 100, 4, true, 0)) {
+            History history = shared.session();
+            history.attach(reader);
+            for (String line : Arrays.asList("a", "b", "a", "c", "d", "e")) {
+                history.add(line);
+                history.save();
+            }
+            assertEquals(Arrays.asList("a", "c", "d", "e"), stripTimes(Files.readAllLines(file)));
+            assertHistoryContains(history, 0, "a", "b", "a", "c", "d", "e");
+        }
+    }
+
+    @Test
+    public void testRemoveLast() throws IOException {
+        try (SharedHistory shared = new SharedHistory(file, 100, 100, true, 10000)) {
+            History history = shared.session();
+            history.attach(reader);
+            history.add("a");
+            history.add("b");
+            Iterator<History.Entry> it = history.reverseIterator(history.last());
+            assertEquals("b", it.next().line());
+            it.remove();
+            assertHistoryContains(history, 0, "a");
+            history.save();
+            assertEquals(Arrays.asList("a"), stripTimes(Files.readAllLines(file)));
+        }
+    }
+
+    @Test
+    public void testConcurrentSessions() throws Exception {
+        int threads = 8;
+        int count = 200;
+        try (SharedHistory shared = new SharedHistory(file, threads * count, threads * count * 2, true, 1)) {
+            CyclicBarrier barrier = new CyclicBarrier(threads);
+            List<Thread> list = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int id = t;
+                Thread thread = new Thread(() -> {
+                    History history = shared.session();
+                    history.attach(reader);
+                    try {
+                        barrier.await();
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                    for (int i = 0; i < count; i++) {
+                        history.add("cmd" + id + "-" + i);
+                        history.previous();
+                        history.current();
+                    }
+                });
+                list.add(thread);
+                thread.start();
+            }
+            for (Thread thread : list) {
+                thread.join();
+            }
+            shared.flush();
+
+            History history = shared.session();
+            assertEquals(threads * count, history.size());
+            Set<String> lines = new HashSet<>();
+            int i = 0;
+            for (History.Entry entry : history) {
+                assertEquals(i++, entry.index());
+                lines.add(entry.line());
+            }
+            assertEquals(threads * count, lines.size());
+            assertEquals(lines, new HashSet<>(stripTimes(Files.readAllLines(file))));
+        }
+    }
+
+    @Test
+    public void testReadWrite() throws IOException {
+        reader.setOpt(LineReader.Option.HISTORY_TIMESTAMPED);
+        try (SharedHistory shared = new SharedHistory(null)) {
+            History history = shared.session();
+            history.attach(reader);
+            history.add("a");
+            history.add("b");
+            Path other = dir.resolve("other");
+            history.write(other, false);
+            history.add("c");
+            history.append(other, true);
+            assertEquals(Arrays.asList("a", "b", "c"), stripTimes(Files.readAllLines(other)));
+
+            history.purge();
+            assertEquals(0, history.size());
+            history.read(other, true);
+            assertHistoryContains(history, 0, "a", "b", "c");
+        }
+    }
+
+    private static List<String> stripTimes(List<String> lines) {
+        List<String> result = new ArrayList<>();
+        for (String line : lines) {
+            result.add(line.substring(line.indexOf(':') + 1));
+        }
+        return result;
+    }
+
+}
@@ -20,6 +20,7 @@ import org.apache.sshd.server.ExitCallback;
 import org.apache.sshd.server.SessionAware;
 import org.apache.sshd.server.command.Command;
 import org.apache.sshd.server.session.ServerSession;
+import org.jline.utils.Threads;
 
 public class ShellCommand implements Command, SessionAware {
 
@@ -61,7 +62,7 @@ public class ShellCommand implements Command, SessionAware {
 
     public void start(final Environment env) throws IOException {
         this.env = env;
-        new Thread(this::run).start();
+        Threads.getThreadFactory().newThread(this::run).start();
     }
 
     private void run() {
@@ -31,6 +31,7 @@ import org.jline.terminal.Attributes.OutputFlag;
 import org.jline.terminal.Size;
 import org.jline.terminal.Terminal;
 import org.jline.terminal.TerminalBuilder;
+import org.jline.utils.Threads;
 
 /**
  * SSHD {@link org.apache.sshd.server.command.Command} factory which provides access to
@@ -102,7 +103,7 @@ public class ShellFactoryImpl implements Factory<Command> {
 
         public void start(final Environment env) throws IOException {
             try {
-                new Thread(() -> {
+                Threads.getThreadFactory().newThread(() -> {
                     try {
                         ShellImpl.this.run(env);
                     } catch (Throwable t) {
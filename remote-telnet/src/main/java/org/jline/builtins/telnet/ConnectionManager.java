@@ -51,6 +51,8 @@ import java.util.Stack;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.jline.utils.Threads;
+
 /**
  * Class that takes care for active and queued connection.
  * Housekeeping is done also for connections that were just broken
@@ -157,7 +159,7 @@ public abstract class ConnectionManager implements Runnable {
      * Starts this <tt>ConnectionManager</tt>.
      */
     public void start() {
-        thread = new Thread(this);
+        thread = Threads.getThreadFactory().newThread(this);
         thread.start();
     }//start
 
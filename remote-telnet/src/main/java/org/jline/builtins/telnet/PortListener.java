@@ -48,6 +48,8 @@ import java.text.MessageFormat;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.jline.utils.Threads;
+
 /**
  * Class that implements a <tt>PortListener</tt>.<br>
  * If available, it accepts incoming connections and passes them
@@ -118,7 +120,7 @@ public class PortListener
      */
     public void start() {
         LOG.log(Level.FINE, "start()");
-        thread = new Thread(this);
+        thread = Threads.getThreadFactory().newThread(this);
         thread.start();
         available = true;
     }//start
@@ -15,10 +15,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Method;
+import java.nio.channels.SelectableChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.ServiceLoader;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.jline.terminal.impl.AbstractPosixTerminal;
@@ -26,6 +29,7 @@ import org.jline.terminal.impl.AbstractTerminal;
 import org.jline.terminal.impl.DumbTerminal;
 import org.jline.terminal.impl.ExecPty;
 import org.jline.terminal.impl.ExternalTerminal;
+import org.jline.terminal.impl.InputReactor;
 import org.jline.terminal.impl.PosixPtyTerminal;
 import org.jline.terminal.impl.PosixSysTerminal;
 import org.jline.terminal.spi.JansiSupport;
@@ -33,6 +37,7 @@ import org.jline.terminal.spi.JnaSupport;
 import org.jline.terminal.spi.Pty;
 import org.jline.utils.Log;
 import org.jline.utils.OSUtils;
+import org.jline.utils.Threads;
 
 /**
  * Builder class to create terminals.
@@ -59,6 +64,7 @@ public final class TerminalBuilder {
     public static final String PROP_NON_BLOCKING_READS = "org.jline.terminal.pty.nonBlockingReads";
     public static final String PROP_COLOR_DISTANCE = "org.jline.utils.colorDistance";
     public static final String PROP_DISABLE_ALTERNATE_CHARSET = "org.jline.utils.disableAlternateCharset";
+    public static final String PROP_THREAD_FACTORY = "org.jline.utils.threadFactory";
 
     /**
      * Returns the default system terminal.
@@ -92,6 +98,8 @@ public final class TerminalBuilder {
     private String name;
     private InputStream in;
     private OutputStream out;
+    private SelectableChannel channel;
+    private InputReactor reactor;
     private String type;
     private Charset encoding;
     private int codepage;
@@ -117,6 +125,30 @@ public final class TerminalBuilder {
     public TerminalBuilder streams(InputStream in, OutputStream out) {
         this.in = in;
         this.out = out;
+        this.channel = null;
+        this.reactor = null;
+        return this;
+    }
+
+    /**
+     * Creates a non system terminal reading its input from the given channel
+     * with the threads of the given reactor, instead of a thread dedicated
+     * to the terminal.  This allows a server to handle many connections
+     * with a few threads.
+     * The channel is put in non-blocking mode: if it is also used for the
+     * output, the output stream can be obtained using
+     * {@link InputReactor#newOutputStream(java.nio.channels.WritableByteChannel)}.
+     *
+     * @param in the channel to read the input from
+     * @param out the output stream
+     * @param reactor the reactor reading the input
+     * @return The builder
+     */
+    public TerminalBuilder streams(SelectableChannel in, OutputStream out, InputReactor reactor) {
+        this.in = null;
+        this.out = Objects.requireNonNull(out);
+        this.channel = Objects.requireNonNull(in);
+        this.reactor = Objects.requireNonNull(reactor);
         return this;
     }
 
@@ -315,6 +347,12 @@ public final class TerminalBuilder {
         if (dumb == null) {
             dumb = getBoolean(PROP_DUMB, null);
         }
+        if (channel != null) {
+            if (system != null && system) {
+                throw new IllegalArgumentException("Cannot create a system terminal using a channel");
+            }
+            return new ExternalTerminal(name, type, channel, out, encoding, signalHandler, paused, attributes, size, reactor);
+        }
         if ((system != null && system) || (system == null && in == null && out == null)) {
             if (system != null && ((in != null && !in.equals(System.in)) ||  (out != null && !out.equals(System.out)))) {
                 throw new IllegalArgumentException("Cannot create a system terminal using non System streams");
@@ -534,4 +572,17 @@ public final class TerminalBuilder {
     public static void setTerminalOverride(final Terminal terminal) {
         TERMINAL_OVERRIDE.set(terminal);
     }
+
+    /**
+     * Set the factory creating the threads used internally by JLine, such as
+     * the terminal input pumps, for example to use virtual threads or threads
+     * with a smaller stack.  The default factory can also be selected using
+     * the {@link #PROP_THREAD_FACTORY} system property.
+     *
+     * @param factory the thread factory, or <code>null</code> to restore the default one
+     * @see Threads
+     */
+    public static void setThreadFactory(ThreadFactory factory) {
+        Threads.setThreadFactory(factory);
+    }
 }
@@ -19,11 +19,28 @@ import org.jline.terminal.Cursor;
 import org.jline.terminal.Size;
 import org.jline.terminal.spi.Pty;
 
+/**
+ * Base class for terminals backed by a {@link Pty}.
+ *
+ * As reading the attributes or the size of a pty may be costly, for example
+ * when it requires running the <code>stty</code> command, they are cached.
+ * The attributes are read again after they are set.  The size is cached
+ * only while the terminal is notified of the size changes by a
+ * {@link Signal#WINCH} signal, as reported by {@link #isResizeNotified()},
+ * and is read again after the signal is raised or the size is set.  Changes
+ * to the attributes made by other processes are not seen.
+ */
 public abstract class AbstractPosixTerminal extends AbstractTerminal {
 
     protected final Pty pty;
     protected final Attributes originalAttributes;
 
+    private final Object cacheLock = new Object();
+    private int attributesGeneration;
+    private int sizeGeneration;
+    private volatile Attributes cachedAttributes;
+    private volatile Size cachedSize;
+
     public AbstractPosixTerminal(String name, String type, Pty pty) throws IOException {
         this(name, type, pty, null, SignalHandler.SIG_DFL);
     }
@@ -40,11 +57,24 @@ public abstract class AbstractPosixTerminal extends AbstractTerminal {
     }
 
     public Attributes getAttributes() {
-        try {
-            return pty.getAttr();
-        } catch (IOException e) {
-            throw new IOError(e);
+        Attributes attr = cachedAttributes;
+        if (attr == null) {
+            int generation;
+            synchronized (cacheLock) {
+                generation = attributesGeneration;
+            }
+            try {
+                attr = pty.getAttr();
+            } catch (IOException e) {
+                throw new IOError(e);
+            }
+            synchronized (cacheLock) {
+                if (generation == attributesGeneration) {
+                    cachedAttributes = attr;
+                }
+            }
         }
+        return new Attributes(attr);
     }
 
     public void setAttributes(Attributes attr) {
@@ -52,15 +82,37 @@ public abstract class AbstractPosixTerminal extends AbstractTerminal {
             pty.setAttr(attr);
         } catch (IOException e) {
             throw new IOError(e);
+        } finally {
+            synchronized (cacheLock) {
+                attributesGeneration++;
+                cachedAttributes = null;
+            }
         }
     }
 
     public Size getSize() {
-        try {
-            return pty.getSize();
-        } catch (IOException e) {
-            throw new IOError(e);
+        Size size = cachedSize;
+        if (size == null) {
+            int generation;
+            boolean cache;
+            synchronized (cacheLock) {
+                generation = sizeGeneration;
+            }
+            cache = isResizeNotified();
+            try {
+                size = pty.getSize();
+            } catch (IOException e) {
+                throw new IOError(e);
+            }
+            synchronized (cacheLock) {
+                if (cache && generation == sizeGeneration) {
+                    cachedSize = size;
+                }
+            }
         }
+        Size sz = new Size();
+        sz.copy(size);
+        return sz;
     }
 
     public void setSize(Size size) {
@@ -68,7 +120,43 @@ public abstract class AbstractPosixTerminal extends AbstractTerminal {
             pty.setSize(size);
         } catch (IOException e) {
             throw new IOError(e);
+        } finally {
+            invalidateSize();
+        }
+    }
+
+    /**
+     * Check if the terminal is notified of its size changes, by raising the
+     * {@link Signal#WINCH} signal, so that its size can be cached until then.
+     *
+     * @return <code>true</code> if the size changes are notified
+     */
+    protected boolean isResizeNotified() {
+        return false;
+    }
+
+    private void invalidateSize() {
+        synchronized (cacheLock) {
+            sizeGeneration++;
+            cachedSize = null;
+        }
+    }
+
+    @Override
+    public SignalHandler handle(Signal signal, SignalHandler handler) {
+        SignalHandler prev = super.handle(signal, handler);
+        if (signal == Signal.WINCH) {
+            invalidateSize();
+        }
+        return prev;
+    }
+
+    @Override
+    public void raise(Signal signal) {
+        if (signal == Signal.WINCH) {
+            invalidateSize();
         }
+        super.raise(signal);
     }
 
     protected void doClose() throws IOException {
@@ -8,6 +8,7 @@
  */
 package org.jline.terminal.impl;
 
+import java.io.IOError;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.nio.charset.Charset;
@@ -17,6 +18,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.IntConsumer;
 import java.util.function.IntSupplier;
 
@@ -43,6 +45,8 @@ public abstract class AbstractTerminal implements Terminal {
     protected final Set<Capability> bools = new HashSet<>();
     protected final Map<Capability, Integer> ints = new HashMap<>();
     protected final Map<Capability, String> strings = new HashMap<>();
+    private final Map<Capability, Curses.Program> programs = new ConcurrentHashMap<>();
+    private final Curses.Variables variables = new Curses.Variables();
     protected final ColorPalette palette = new ColorPalette(this);
     protected Status status;
     protected Runnable onClose;
@@ -181,7 +185,16 @@ public abstract class AbstractTerminal implements Terminal {
         if (str == null) {
             return false;
         }
-        Curses.tputs(writer(), str, params);
+        Curses.Program program = programs.get(capability);
+        if (program == null || !program.source().equals(str)) {
+            try {
+                program = Curses.compile(str);
+            } catch (IllegalArgumentException e) {
+                throw new IOError(e);
+            }
+            programs.put(capability, program);
+        }
+        program.tputs(writer(), variables, params);
         return true;
     }
 
@@ -19,6 +19,7 @@ import org.jline.utils.NonBlockingPumpReader;
 import org.jline.utils.NonBlockingReader;
 import org.jline.utils.ShutdownHooks;
 import org.jline.utils.Signals;
+import org.jline.utils.Threads;
 import org.jline.utils.WriterOutputStream;
 
 import java.io.IOException;
@@ -434,8 +435,7 @@ public abstract class AbstractWindowsTerminal extends AbstractTerminal {
         synchronized (lock) {
             paused = false;
             if (pump == null) {
-                pump = new Thread(this::pump, "WindowsStreamPump");
-                pump.setDaemon(true);
+                pump = Threads.newThread(this::pump, "WindowsStreamPump");
                 pump.start();
             }
         }
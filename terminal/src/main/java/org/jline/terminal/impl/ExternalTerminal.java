@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2002-2018, the original author or authors.
+ * Copyright (c) 2002-2020, the original author or authors.
  *
  * This software is distributable under the BSD license. See the terms of the
  * BSD license in the documentation provided with this software.
@@ -11,10 +11,13 @@ package org.jline.terminal.impl;
 import org.jline.terminal.Attributes;
 import org.jline.terminal.Cursor;
 import org.jline.terminal.Size;
+import org.jline.utils.Log;
+import org.jline.utils.Threads;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.SelectableChannel;
 import java.nio.charset.Charset;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.IntConsumer;
@@ -27,6 +30,11 @@ import java.util.function.IntConsumer;
  * or any kind of protocol).
  * The terminal will start consuming the input in a separate thread
  * to generate interruption events.
+ * When created with a {@link SelectableChannel} and an {@link InputReactor},
+ * the input is consumed by the reactor threads instead, so that many
+ * terminals can share a few threads.  The input is then processed by
+ * threads started on demand, since writing its echo or raising signals
+ * may block.
  *
  * @see LineDisciplineTerminal
  */
@@ -37,6 +45,8 @@ public class ExternalTerminal extends LineDisciplineTerminal {
     protected final Object lock = new Object();
     protected boolean paused = true;
     protected Thread pumpThread;
+    protected final InputReactor.Registration registration;
+    private final ReactorHandler handler;
 
     public ExternalTerminal(String name, String type,
                             InputStream masterInput,
@@ -72,6 +82,8 @@ public class ExternalTerminal extends LineDisciplineTerminal {
                             Size size) throws IOException {
         super(name, type, masterOutput, encoding, signalHandler);
         this.masterInput = masterInput;
+        this.registration = null;
+        this.handler = null;
         if (attributes != null) {
             setAttributes(attributes);
         }
@@ -83,9 +95,52 @@ public class ExternalTerminal extends LineDisciplineTerminal {
         }
     }
 
+    /**
+     * Creates a terminal whose input is read from the given channel by
+     * the reactor threads.  The {@link #masterInput} field is <code>null</code>.
+     *
+     * @param name the terminal name
+     * @param type the terminal type
+     * @param masterInput the channel to read the input from
+     * @param masterOutput the output stream
+     * @param encoding the encoding
+     * @param signalHandler the signal handler
+     * @param paused the initial paused state
+     * @param attributes the initial attributes, may be <code>null</code>
+     * @param size the initial size, may be <code>null</code>
+     * @param reactor the reactor reading the input
+     * @throws IOException if the channel can not be registered
+     */
+    public ExternalTerminal(String name, String type,
+                            SelectableChannel masterInput,
+                            OutputStream masterOutput,
+                            Charset encoding,
+                            SignalHandler signalHandler,
+                            boolean paused,
+                            Attributes attributes,
+                            Size size,
+                            InputReactor reactor) throws IOException {
+        super(name, type, masterOutput, encoding, signalHandler);
+        this.masterInput = null;
+        if (attributes != null) {
+            setAttributes(attributes);
+        }
+        if (size != null) {
+            setSize(size);
+        }
+        this.handler = new ReactorHandler();
+        this.registration = reactor.register(masterInput, handler);
+        if (!paused) {
+            resume();
+        }
+    }
+
     protected void doClose() throws IOException {
         if (closed.compareAndSet(false, true)) {
             pause();
+            if (registration != null) {
+                registration.cancel();
+            }
             super.doClose();
         }
     }
@@ -99,11 +154,24 @@ public class ExternalTerminal extends LineDisciplineTerminal {
     public void pause() {
         synchronized (lock) {
             paused = true;
+            if (registration != null) {
+                registration.pause();
+            }
         }
     }
 
     @Override
     public void pause(boolean wait) throws InterruptedException {
+        if (registration != null) {
+            synchronized (lock) {
+                paused = true;
+            }
+            registration.pause(wait);
+            if (wait) {
+                handler.awaitProcessed();
+            }
+            return;
+        }
         Thread p;
         synchronized (lock) {
             paused = true;
@@ -119,9 +187,10 @@ public class ExternalTerminal extends LineDisciplineTerminal {
     public void resume() {
         synchronized (lock) {
             paused = false;
-            if (pumpThread == null) {
-                pumpThread = new Thread(this::pump, toString() + " input pump thread");
-                pumpThread.setDaemon(true);
+            if (registration != null) {
+                registration.resume();
+            } else if (pumpThread == null) {
+                pumpThread = Threads.newThread(this::pump, toString() + " input pump thread");
                 pumpThread.start();
             }
         }
@@ -166,6 +235,128 @@ public class ExternalTerminal extends LineDisciplineTerminal {
         }
     }
 
+    /**
+     * Receives the input from the reactor threads, which must not block,
+     * and processes it from the threads of the reactor executor.  The input
+     * is buffered in between, and the reads are suspended while the buffer
+     * is full or the slave input has no room for it.
+     */
+    private class ReactorHandler implements InputReactor.Handler {
+
+        private final byte[] pending = new byte[1024];
+        private final byte[] processed = new byte[pending.length];
+        private int count;
+        private boolean starved;
+        private boolean eof;
+        private IOException exception;
+        private boolean processing;
+        private Thread processor;
+        private boolean done;
+
+        @Override
+        public int capacity() {
+            int free = slaveInput.free();
+            if (free == 0) {
+                slaveInput.onSpaceAvailable(registration::capacityAvailable);
+            }
+            synchronized (this) {
+                // The line discipline never writes more bytes than it reads
+                int capacity = Math.min(free, pending.length) - count;
+                if (capacity <= 0) {
+                    starved = true;
+                    return 0;
+                }
+                return capacity;
+            }
+        }
+
+        @Override
+        public synchronized void input(byte[] buffer, int offset, int length) {
+            if (!done) {
+                System.arraycopy(buffer, offset, pending, count, length);
+                count += length;
+                schedule();
+            }
+        }
+
+        @Override
+        public synchronized void closed(IOException exception) {
+            if (!done) {
+                this.eof = true;
+                this.exception = exception;
+                schedule();
+            }
+        }
+
+        private void schedule() {
+            if (!processing) {
+                processing = true;
+                registration.execute(this::process);
+            }
+        }
+
+        private void process() {
+            synchronized (this) {
+                processor = Thread.currentThread();
+            }
+            IOException error = null;
+            while (true) {
+                int length;
+                boolean notify;
+                synchronized (this) {
+                    if (count == 0 || error != null) {
+                        if (eof || error != null) {
+                            done = true;
+                            error = error != null ? error : exception;
+                        }
+                        processing = false;
+                        processor = null;
+                        notifyAll();
+                        break;
+                    }
+                    length = count;
+                    System.arraycopy(pending, 0, processed, 0, length);
+                    count = 0;
+                    notify = starved;
+                    starved = false;
+                }
+                if (notify) {
+                    registration.capacityAvailable();
+                }
+                try {
+                    processInputBytes(processed, 0, length);
+                } catch (IOException e) {
+                    registration.cancel();
+                    error = e;
+                } catch (RuntimeException e) {
+                    Log.warn("Error processing input", e);
+                    registration.cancel();
+                    error = new IOException(e);
+                }
+            }
+            if (done) {
+                if (error != null) {
+                    processIOException(error);
+                }
+                try {
+                    slaveInput.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+
+        /**
+         * Wait until the input given to the handler has been processed,
+         * unless called from the processing thread.
+         */
+        synchronized void awaitProcessed() throws InterruptedException {
+            while (processing && processor != Thread.currentThread()) {
+                wait();
+            }
+        }
+    }
+
     @Override
     public Cursor getCursorPosition(IntConsumer discarded) {
         return CursorSupport.getCursorPosition(this, discarded);
@@ -0,0 +1,431 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.terminal.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jline.utils.Log;
+import org.jline.utils.Threads;
+
+/**
+ * Reads the input of many terminals from a small fixed number of threads.
+ *
+ * Each thread runs a {@link Selector} over the channels registered with it,
+ * the channels being spread over the threads in turn.  When a channel is
+ * readable, the available bytes are read and given to its {@link Handler}
+ * on the selector thread, so that handlers must not block: a handler that
+ * cannot accept more input reports no capacity, which suspends the reads
+ * from its channel until {@link Registration#capacityAvailable()} is called.
+ * Work which may block, such as writing the echo of the input or running
+ * signal handlers, is given to {@link Registration#execute(Runnable)}.
+ *
+ * This allows a server handling many connections to avoid the dedicated
+ * input thread that each {@link ExternalTerminal} otherwise uses.
+ *
+ * @see ExternalTerminal
+ * @see org.jline.terminal.TerminalBuilder#streams(SelectableChannel, OutputStream, InputReactor)
+ */
+public class InputReactor implements Closeable {
+
+    private static final int BUFFER_SIZE = 1024;
+
+    /**
+     * Receives the input read from a channel.
+     * All methods are called from a reactor thread and must not block.
+     */
+    public interface Handler {
+
+        /**
+         * Returns the number of bytes which can currently be processed
+         * without blocking.  When it is 0, the reads are suspended until
+         * {@link Registration#capacityAvailable()} is called.
+         *
+         * @return the number of bytes which can be processed
+         */
+        int capacity();
+
+        /**
+         * Process bytes read from the channel.
+         *
+         * @param buffer the buffer holding the bytes
+         * @param offset the offset of the first byte
+         * @param length the number of bytes, never greater than the last capacity
+         * @throws IOException if anything wrong happens, which ends the reads
+         */
+        void input(byte[] buffer, int offset, int length) throws IOException;
+
+        /**
+         * Called once no more input will be read from the channel.
+         *
+         * @param exception the exception which ended the reads,
+         *                  or <code>null</code> on end of stream
+         */
+        void closed(IOException exception);
+    }
+
+    private final Worker[] workers;
+    private final ExecutorService executor;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * Creates a reactor and starts its threads.
+     *
+     * @param name the name of the reactor, used for its threads
+     * @param threads the number of threads
+     * @throws IOException if a selector can not be opened
+     */
+    public InputReactor(String name, int threads) throws IOException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+        // threads started on demand, which stop once idle for a minute
+        executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), r -> Threads.newThread(r, name + " input processing"));
+        workers = new Worker[threads];
+        try {
+            for (int i = 0; i < threads; i++) {
+                workers[i] = new Worker(Selector.open(), name + " input reactor " + i);
+            }
+        } catch (IOException e) {
+            for (Worker worker : workers) {
+                if (worker != null) {
+                    worker.selector.close();
+                }
+            }
+            throw e;
+        }
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    /**
+     * Register a channel.  The channel is put in non-blocking mode, and
+     * the reads only start when {@link Registration#resume()} is called.
+     *
+     * @param channel the channel to read from, which must be a {@link ReadableByteChannel}
+     * @param handler the handler receiving the input
+     * @return the registration
+     * @throws IOException if the channel can not be put in non-blocking mode
+     */
+    public Registration register(SelectableChannel channel, Handler handler) throws IOException {
+        Objects.requireNonNull(handler);
+        if (!(channel instanceof ReadableByteChannel)) {
+            throw new IllegalArgumentException("The channel is not readable");
+        }
+        if (closed) {
+            throw new IOException("Input reactor is closed");
+        }
+        channel.configureBlocking(false);
+        Worker worker = workers[Math.floorMod(next.getAndIncrement(), workers.length)];
+        Registration registration = new Registration(worker, channel, handler);
+        worker.submit(registration::update);
+        return registration;
+    }
+
+    /**
+     * Stop the reactor threads.
+     * The handlers of the registered channels are notified of the end of their input.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Worker worker : workers) {
+            worker.selector.wakeup();
+        }
+    }
+
+    /**
+     * Returns an output stream writing to the given channel.
+     * Contrary to {@link java.nio.channels.Channels#newOutputStream(WritableByteChannel)},
+     * the channel can be in non-blocking mode, in which case the writes wait
+     * for the channel to be writable, so that a channel registered with a reactor
+     * can be used for the terminal output too.
+     *
+     * @param channel the channel to write to
+     * @return the output stream
+     */
+    public static OutputStream newOutputStream(WritableByteChannel channel) {
+        return new ChannelOutputStream(Objects.requireNonNull(channel));
+    }
+
+    /**
+     * A channel registered with a reactor.
+     */
+    public final class Registration {
+
+        private final Worker worker;
+        private final SelectableChannel channel;
+        private final Handler handler;
+        private volatile boolean paused = true;
+
+        // Accessed from the worker thread only
+        private SelectionKey key;
+        private boolean done;
+
+        private Registration(Worker worker, SelectableChannel channel, Handler handler) {
+            this.worker = worker;
+            this.channel = channel;
+            this.handler = handler;
+        }
+
+        /**
+         * Suspend the reads from the channel.
+         */
+        public void pause() {
+            paused = true;
+            worker.submit(this::update);
+        }
+
+        /**
+         * Suspend the reads from the channel.
+         *
+         * @param wait if <code>true</code>, wait until the input being processed,
+         *             if any, has been given to the handler
+         * @throws InterruptedException if the wait is interrupted
+         */
+        public void pause(boolean wait) throws InterruptedException {
+            pause();
+            if (wait && Thread.currentThread() != worker.thread) {
+                CountDownLatch latch = new CountDownLatch(1);
+                worker.submit(latch::countDown);
+                latch.await();
+            }
+        }
+
+        /**
+         * Resume the reads from the channel.
+         */
+        public void resume() {
+            paused = false;
+            worker.submit(this::update);
+        }
+
+        /**
+         * Resume the reads suspended because the handler had no capacity,
+         * unless the registration is paused.  This method does not block
+         * and can be called from any thread.
+         */
+        public void capacityAvailable() {
+            worker.submit(this::update);
+        }
+
+        /**
+         * Run a task which may block outside of the reactor threads,
+         * typically to process the input given to the handler.
+         * This method does not block and can be called from any thread.
+         *
+         * @param task the task
+         */
+        public void execute(Runnable task) {
+            executor.execute(task);
+        }
+
+        /**
+         * Stop reading from the channel, without notifying the handler.
+         * The channel is not closed.
+         */
+        public void cancel() {
+            worker.submit(() -> {
+                done = true;
+                if (key != null) {
+                    key.cancel();
+                }
+            });
+        }
+
+        private void update() {
+            if (done) {
+                return;
+            }
+            if (worker.stopped) {
+                closed(null);
+                return;
+            }
+            if (key == null) {
+                try {
+                    key = channel.register(worker.selector, 0, this);
+                } catch (ClosedChannelException e) {
+                    closed(e);
+                    return;
+                }
+            }
+            if (key.isValid()) {
+                key.interestOps(paused ? 0 : SelectionKey.OP_READ);
+            }
+        }
+
+        private void read(ByteBuffer buffer) {
+            try {
+                int capacity = paused ? 0 : Math.min(handler.capacity(), buffer.capacity());
+                if (capacity <= 0) {
+                    key.interestOps(0);
+                    return;
+                }
+                buffer.clear();
+                buffer.limit(capacity);
+                int nb = ((ReadableByteChannel) channel).read(buffer);
+                if (nb < 0) {
+                    closed(null);
+                } else if (nb > 0) {
+                    handler.input(buffer.array(), 0, nb);
+                }
+            } catch (IOException e) {
+                closed(e);
+            } catch (RuntimeException e) {
+                Log.warn("Error processing input", e);
+                closed(new IOException(e));
+            }
+        }
+
+        private void closed(IOException exception) {
+            if (!done) {
+                done = true;
+                if (key != null) {
+                    key.cancel();
+                }
+                handler.closed(exception);
+            }
+        }
+    }
+
+    private final class Worker implements Runnable {
+
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final Thread thread;
+        private volatile boolean stopped;
+
+        Worker(Selector selector, String name) {
+            this.selector = selector;
+            this.thread = Threads.newThread(this, name);
+        }
+
+        void submit(Runnable task) {
+            tasks.add(task);
+            if (stopped) {
+                // the thread is gone, so run the task from the caller
+                runTasks();
+            } else {
+                selector.wakeup();
+            }
+        }
+
+        private synchronized void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        @Override
+        public void run() {
+            Log.debug("InputReactor start");
+            try {
+                while (!closed) {
+                    runTasks();
+                    selector.select();
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        if (key.isValid()) {
+                            ((Registration) key.attachment()).read(buffer);
+                        }
+                    }
+                }
+            } catch (Throwable t) {
+                Log.warn("Error in InputReactor thread", t);
+            } finally {
+                Log.debug("InputReactor shutdown");
+                stopped = true;
+                runTasks();
+                for (SelectionKey key : selector.keys()) {
+                    ((Registration) key.attachment()).closed(null);
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private static class ChannelOutputStream extends OutputStream {
+
+        private final WritableByteChannel channel;
+        private Selector selector;
+
+        ChannelOutputStream(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                if (channel.write(buffer) == 0) {
+                    awaitWritable();
+                }
+            }
+        }
+
+        private void awaitWritable() throws IOException {
+            if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+                if (selector == null) {
+                    selector = Selector.open();
+                    ((SelectableChannel) channel).register(selector, SelectionKey.OP_WRITE);
+                }
+                selector.select();
+                selector.selectedKeys().clear();
+            } else {
+                Thread.yield();
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            try {
+                if (selector != null) {
+                    selector.close();
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+}
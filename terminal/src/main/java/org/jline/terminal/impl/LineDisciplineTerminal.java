@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2002-2018, the original author or authors.
+ * Copyright (c) 2002-2020, the original author or authors.
  *
  * This software is distributable under the BSD license. See the terms of the
  * BSD license in the documentation provided with this software.
@@ -13,7 +13,9 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.lang.reflect.Method;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Objects;
 
 import org.jline.terminal.Attributes;
@@ -86,6 +88,20 @@ public class LineDisciplineTerminal extends AbstractTerminal {
     protected final Attributes attributes;
     protected final Size size;
 
+    /*
+     * Whether the input and output bytes can be processed in bulk, i.e.
+     * the byte processing methods are not overridden
+     */
+    private final boolean bulkInput;
+    private final boolean bulkOutput;
+
+    /*
+     * Lookup table of the input bytes needing a special processing,
+     * for the control characters it has been computed with
+     */
+    private final boolean[] specialInput = new boolean[256];
+    private final int[] specialInputChars = { -1, -1, -1, -1 };
+
     public LineDisciplineTerminal(String name,
                                   String type,
                                   OutputStream masterOutput,
@@ -108,9 +124,29 @@ public class LineDisciplineTerminal extends AbstractTerminal {
         this.masterOutput = masterOutput;
         this.attributes = ExecPty.doGetAttr(DEFAULT_TERMINAL_ATTRIBUTES);
         this.size = new Size(160, 50);
+        this.bulkOutput = !isOverridden("processOutputByte");
+        this.bulkInput = bulkOutput && !isOverridden("doProcessInputByte");
+        this.specialInput['\r'] = true;
+        this.specialInput['\n'] = true;
         parseInfoCmp();
     }
 
+    private boolean isOverridden(String method) {
+        try {
+            for (Class<?> c = getClass(); c != LineDisciplineTerminal.class; c = c.getSuperclass()) {
+                for (Method m : c.getDeclaredMethods()) {
+                    if (m.getName().equals(method) && m.getParameterCount() == 1
+                            && m.getParameterTypes()[0] == int.class) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } catch (SecurityException e) {
+            return true;
+        }
+    }
+
     public NonBlockingReader reader() {
         return slaveReader;
     }
@@ -190,8 +226,12 @@ public class LineDisciplineTerminal extends AbstractTerminal {
 
     public void processInputBytes(byte[] input, int offset, int length) throws IOException {
         boolean flushOut = false;
-        for (int i = 0; i < length; i++) {
-            flushOut |= doProcessInputByte(input[offset + i]);
+        if (bulkInput) {
+            flushOut = doProcessInputBytes(input, offset, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                flushOut |= doProcessInputByte(input[offset + i]);
+            }
         }
         slaveInputPipe.flush();
         if (flushOut) {
@@ -199,6 +239,62 @@ public class LineDisciplineTerminal extends AbstractTerminal {
         }
     }
 
+    /**
+     * Process the input in bulk: the runs of bytes which are neither
+     * signal characters nor new lines are not transformed, and are copied
+     * at once to the slave input and echoed, while the other bytes go
+     * through {@link #doProcessInputByte(int)}.
+     */
+    private boolean doProcessInputBytes(byte[] input, int offset, int length) throws IOException {
+        boolean flushOut = false;
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            // The attributes may have been changed by a signal handler
+            boolean[] special = getSpecialInput();
+            boolean echo = attributes.getLocalFlag(LocalFlag.ECHO);
+            int start = i;
+            while (i < end && !special[input[i] & 0xFF]) {
+                i++;
+            }
+            if (i > start) {
+                if (echo) {
+                    masterOutput.write(input, start, i - start);
+                    flushOut = true;
+                }
+                slaveInputPipe.write(input, start, i - start);
+            }
+            if (i < end) {
+                flushOut |= doProcessInputByte(input[i++]);
+            }
+        }
+        return flushOut;
+    }
+
+    private boolean[] getSpecialInput() {
+        boolean isig = attributes.getLocalFlag(LocalFlag.ISIG);
+        int vintr = isig ? attributes.getControlChar(ControlChar.VINTR) : -1;
+        int vquit = isig ? attributes.getControlChar(ControlChar.VQUIT) : -1;
+        int vsusp = isig ? attributes.getControlChar(ControlChar.VSUSP) : -1;
+        int vstatus = isig ? attributes.getControlChar(ControlChar.VSTATUS) : -1;
+        int[] chars = specialInputChars;
+        if (chars[0] != vintr || chars[1] != vquit || chars[2] != vsusp || chars[3] != vstatus) {
+            Arrays.fill(specialInput, false);
+            specialInput['\r'] = true;
+            specialInput['\n'] = true;
+            chars[0] = vintr;
+            chars[1] = vquit;
+            chars[2] = vsusp;
+            chars[3] = vstatus;
+            for (int c : chars) {
+                if (c >= 0 && c < specialInput.length) {
+                    specialInput[c] = true;
+                }
+            }
+        }
+        return specialInput;
+    }
+
     protected boolean doProcessInputByte(int c) throws IOException {
         if (attributes.getLocalFlag(LocalFlag.ISIG)) {
             if (c == attributes.getControlChar(ControlChar.VINTR)) {
@@ -253,6 +349,24 @@ public class LineDisciplineTerminal extends AbstractTerminal {
         masterOutput.write(c);
     }
 
+    private void processOutputBytes(byte[] b, int off, int len) throws IOException {
+        if (attributes.getOutputFlag(OutputFlag.OPOST) && attributes.getOutputFlag(OutputFlag.ONLCR)) {
+            int end = off + len;
+            int start = off;
+            for (int i = off; i < end; i++) {
+                if (b[i] == '\n') {
+                    masterOutput.write(b, start, i - start);
+                    masterOutput.write('\r');
+                    masterOutput.write('\n');
+                    start = i + 1;
+                }
+            }
+            masterOutput.write(b, start, end - start);
+        } else {
+            masterOutput.write(b, off, len);
+        }
+    }
+
     protected void processIOException(IOException ioException) {
         this.slaveInput.setIoException(ioException);
     }
@@ -290,8 +404,12 @@ public class LineDisciplineTerminal extends AbstractTerminal {
             } else if (len == 0) {
                 return;
             }
-            for (int i = 0 ; i < len ; i++) {
-                processOutputByte(b[off + i]);
+            if (bulkOutput) {
+                processOutputBytes(b, off, len);
+            } else {
+                for (int i = 0 ; i < len ; i++) {
+                    processOutputByte(b[off + i]);
+                }
             }
             flush();
         }
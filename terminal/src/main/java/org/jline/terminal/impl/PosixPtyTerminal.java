@@ -22,6 +22,7 @@ import org.jline.utils.ClosedException;
 import org.jline.utils.NonBlocking;
 import org.jline.utils.NonBlockingInputStream;
 import org.jline.utils.NonBlockingReader;
+import org.jline.utils.Threads;
 
 public class PosixPtyTerminal extends AbstractPosixTerminal {
 
@@ -85,6 +86,17 @@ public class PosixPtyTerminal extends AbstractPosixTerminal {
         reader.close();
     }
 
+    /**
+     * The pty is driven by the application, such as a remote shell server,
+     * which sets its size and raises {@link Signal#WINCH} when the remote
+     * terminal is resized, so the size changes are notified once a handler
+     * has been registered for that signal.
+     */
+    @Override
+    protected boolean isResizeNotified() {
+        return handlers.get(Signal.WINCH) != SignalHandler.SIG_DFL;
+    }
+
     @Override
     public boolean canPauseResume() {
         return true;
@@ -124,13 +136,11 @@ public class PosixPtyTerminal extends AbstractPosixTerminal {
         synchronized (lock) {
             paused = false;
             if (inputPumpThread == null) {
-                inputPumpThread = new Thread(this::pumpIn, toString() + " input pump thread");
-                inputPumpThread.setDaemon(true);
+                inputPumpThread = Threads.newThread(this::pumpIn, toString() + " input pump thread");
                 inputPumpThread.start();
             }
             if (outputPumpThread == null) {
-                outputPumpThread = new Thread(this::pumpOut, toString() + " output pump thread");
-                outputPumpThread.setDaemon(true);
+                outputPumpThread = Threads.newThread(this::pumpOut, toString() + " output pump thread");
                 outputPumpThread.start();
             }
         }
@@ -33,6 +33,7 @@ public class PosixSysTerminal extends AbstractPosixTerminal {
     protected final PrintWriter writer;
     protected final Map<Signal, Object> nativeHandlers = new HashMap<>();
     protected final Task closer;
+    private volatile boolean winchRegistered;
 
     public PosixSysTerminal(String name, String type, Pty pty, Charset encoding,
                             boolean nativeSignals, SignalHandler signalHandler) throws IOException {
@@ -47,7 +48,11 @@ public class PosixSysTerminal extends AbstractPosixTerminal {
                 if (signalHandler == SignalHandler.SIG_DFL) {
                     nativeHandlers.put(signal, Signals.registerDefault(signal.name()));
                 } else {
-                    nativeHandlers.put(signal, Signals.register(signal.name(), () -> raise(signal)));
+                    Object handler = Signals.register(signal.name(), () -> raise(signal));
+                    nativeHandlers.put(signal, handler);
+                    if (signal == Signal.WINCH) {
+                        winchRegistered = handler != null;
+                    }
                 }
             }
         }
@@ -57,17 +62,28 @@ public class PosixSysTerminal extends AbstractPosixTerminal {
 
     @Override
     public SignalHandler handle(Signal signal, SignalHandler handler) {
+        if (signal == Signal.WINCH && handler == SignalHandler.SIG_DFL) {
+            winchRegistered = false;
+        }
         SignalHandler prev = super.handle(signal, handler);
         if (prev != handler) {
             if (handler == SignalHandler.SIG_DFL) {
                 Signals.registerDefault(signal.name());
             } else {
-                Signals.register(signal.name(), () -> raise(signal));
+                Object registered = Signals.register(signal.name(), () -> raise(signal));
+                if (signal == Signal.WINCH) {
+                    winchRegistered = registered != null;
+                }
             }
         }
         return prev;
     }
 
+    @Override
+    protected boolean isResizeNotified() {
+        return winchRegistered;
+    }
+
     public NonBlockingReader reader() {
         return reader;
     }
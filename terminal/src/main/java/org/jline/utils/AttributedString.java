@@ -28,6 +28,7 @@ public class AttributedString extends AttributedCharSequence {
     final long[] style;
     final int start;
     final int end;
+    private int hash;
     public static final AttributedString EMPTY = new AttributedString("");
     public static final AttributedString NEWLINE = new AttributedString("\n");
 
@@ -196,10 +197,17 @@ public class AttributedString extends AttributedCharSequence {
 
     @Override
     public int hashCode() {
-        int result = Arrays.hashCode(buffer);
-        result = 31 * result + Arrays.hashCode(style);
-        result = 31 * result + start;
-        result = 31 * result + end;
+        // Only hash the visible part, so that equal substrings of
+        // different buffers have the same hash code
+        int result = hash;
+        if (result == 0 && end > start) {
+            result = 1;
+            for (int i = start; i < end; i++) {
+                long s = style[i];
+                result = 31 * (31 * result + buffer[i]) + (int) (s ^ (s >>> 32));
+            }
+            hash = result;
+        }
         return result;
     }
 
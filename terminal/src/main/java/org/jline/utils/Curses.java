@@ -12,22 +12,61 @@ import java.io.Flushable;
 import java.io.IOError;
 import java.io.IOException;
 import java.io.StringWriter;
-import java.util.Stack;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Curses helper methods.
+ * <p>
+ * Capability strings are compiled into {@link Program}s, which can then be
+ * evaluated many times without parsing the string again.  The static
+ * <code>tputs</code> methods compile and cache the programs of the strings
+ * they are given, and share a single store of {@link Variables}.
+ * </p>
  *
  * @author <a href="mailto:gnodet@gmail.com">Guillaume Nodet</a>
  */
 public final class Curses {
 
-    private static Object[] sv = new Object[26];
-    private static Object[] dv = new Object[26];
+    private static final int CACHE_SIZE = 256;
+    private static final Map<String, Program> cache = new ConcurrentHashMap<>();
+    private static final Variables variables = new Variables();
 
-    private static final int IFTE_NONE = 0;
-    private static final int IFTE_IF = 1;
-    private static final int IFTE_THEN = 2;
-    private static final int IFTE_ELSE = 3;
+    // Opcodes
+    private static final int LITERAL = 0;
+    private static final int CHAR = 1;
+    private static final int PARAM = 2;
+    private static final int CONST = 3;
+    private static final int SET_VAR = 4;
+    private static final int GET_VAR = 5;
+    private static final int STRLEN = 6;
+    private static final int ADD = 7;
+    private static final int SUB = 8;
+    private static final int MUL = 9;
+    private static final int DIV = 10;
+    private static final int MOD = 11;
+    private static final int BIT_AND = 12;
+    private static final int BIT_OR = 13;
+    private static final int BIT_XOR = 14;
+    private static final int EQ = 15;
+    private static final int GT = 16;
+    private static final int LT = 17;
+    private static final int AND = 18;
+    private static final int OR = 19;
+    private static final int NOT = 20;
+    private static final int BIT_NOT = 21;
+    private static final int INCREMENT = 22;
+    private static final int PRINT_INT = 23;
+    private static final int PRINT_CHAR = 24;
+    private static final int PRINT_FORMAT = 25;
+    private static final int JUMP_IF_ZERO = 26;
+    private static final int JUMP = 27;
+    private static final int DELAY = 28;
 
     private Curses() {
     }
@@ -56,421 +95,780 @@ public final class Curses {
      * @param params optional parameters
      */
     public static void tputs(Appendable out, String str, Object... params) {
+        Program program = cache.get(str);
+        if (program == null) {
+            try {
+                program = compile(str);
+            } catch (IllegalArgumentException e) {
+                throw new IOError(e);
+            }
+            if (cache.size() < CACHE_SIZE) {
+                cache.put(str, program);
+            }
+        }
+        program.tputs(out, variables, params);
+    }
+
+    /**
+     * Compile the given capability string.
+     *
+     * @param str the capability string
+     * @return the compiled program
+     * @throws IllegalArgumentException if the string is not a valid capability
+     */
+    public static Program compile(String str) {
         try {
-            doTputs(out, str, params);
-        } catch (Exception e) {
-            throw new IOError(e);
+            return new Compiler(str).compile();
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid capability: " + str, e);
         }
     }
 
-    private static void doTputs(Appendable out, String str, Object... params) throws IOException {
-        int index = 0;
-        int length = str.length();
-        int ifte = IFTE_NONE;
-        boolean exec = true;
-        Stack<Object> stack = new Stack<>();
-        while (index < length) {
-            char ch = str.charAt(index++);
-            switch (ch) {
-                case '\\':
-                    ch = str.charAt(index++);
-                    if (ch >= '0' && ch <= '7') {
-                        int val = ch - '0';
-                        for (int i = 0; i < 2; i++) {
-                            ch = str.charAt(index++);
-                            if (ch < '0' || ch > '7') {
-                                throw new IllegalStateException();
-                            }
-                            val = val * 8 + (ch - '0');
+    /**
+     * The static variables (<code>%PA</code> to <code>%PZ</code>) of the
+     * capabilities, which keep their values between evaluations.  Each
+     * terminal has its own store, and the static <code>tputs</code> methods
+     * share another one.  The values are either integers or strings.
+     */
+    public static final class Variables {
+
+        private final Object[] values = new Object[26];
+
+        synchronized Object get(int index) {
+            return values[index];
+        }
+
+        synchronized void set(int index, Object value) {
+            values[index] = value;
+        }
+    }
+
+    /**
+     * A compiled capability string.
+     * <p>
+     * Programs are immutable and can be evaluated concurrently.  Evaluating a
+     * program does not allocate, unless it uses string parameters, padded
+     * formats or variables.  The dynamic variables (<code>%Pa</code> to
+     * <code>%Pz</code>) only live for one evaluation, while the static ones
+     * are kept in the {@link Variables} given to the evaluation.
+     * </p>
+     */
+    public static final class Program {
+
+        private static final ThreadLocal<Frame> frames = ThreadLocal.withInitial(Frame::new);
+
+        private final String source;
+        private final int[] code;
+        private final Object[] constants;
+        private final int maxDepth;
+        private final boolean usesVariables;
+
+        private Program(String source, int[] code, Object[] constants, int maxDepth, boolean usesVariables) {
+            this.source = source;
+            this.code = code;
+            this.constants = constants;
+            this.maxDepth = maxDepth;
+            this.usesVariables = usesVariables;
+        }
+
+        /**
+         * The capability string this program has been compiled from.
+         *
+         * @return the capability string
+         */
+        public String source() {
+            return source;
+        }
+
+        /**
+         * Evaluate this program.
+         *
+         * @param params optional parameters
+         * @return the result string
+         */
+        public String tputs(Object... params) {
+            StringWriter sw = new StringWriter();
+            tputs(sw, params);
+            return sw.toString();
+        }
+
+        /**
+         * Evaluate this program, with the static variables shared by the
+         * static <code>tputs</code> methods.
+         *
+         * @param out the output
+         * @param params optional parameters
+         */
+        public void tputs(Appendable out, Object... params) {
+            tputs(out, Curses.variables, params);
+        }
+
+        /**
+         * Evaluate this program.
+         *
+         * @param out the output
+         * @param variables the static variables
+         * @param params optional parameters
+         */
+        public void tputs(Appendable out, Variables variables, Object... params) {
+            Frame frame = frames.get();
+            if (frame.busy) {
+                // reentrant call from the output
+                frame = new Frame();
+            }
+            frame.busy = true;
+            try {
+                execute(out, variables, params, frame.ints(maxDepth), frame.refs(maxDepth));
+            } catch (IOException | RuntimeException e) {
+                throw new IOError(e);
+            } finally {
+                frame.release(maxDepth);
+            }
+        }
+
+        private void execute(Appendable out, Variables variables, Object[] params, int[] stack, Object[] refs)
+                throws IOException {
+            int[] code = this.code;
+            Object[] dynamicVariables = usesVariables ? new Object[26] : null;
+            boolean increment = false;
+            int sp = 0;
+            int pc = 0;
+            while (pc < code.length) {
+                switch (code[pc++]) {
+                    case LITERAL:
+                        out.append((String) constants[code[pc++]]);
+                        break;
+                    case CHAR:
+                        out.append((char) code[pc++]);
+                        break;
+                    case PARAM: {
+                        int i = code[pc++];
+                        Object param = params != null && i < params.length ? params[i] : null;
+                        int value = toInteger(param);
+                        if (increment && i < 2) {
+                            value++;
                         }
-                        out.append((char) val);
-                    } else {
-                        switch (ch) {
-                            case 'e':
-                            case 'E':
-                                if (exec) {
-                                    out.append((char) 27); // escape
-                                }
-                                break;
-                            case 'n':
-                                out.append('\n');
-                                break;
-//                        case 'l':
-//                            rawPrint('\l');
-//                            break;
-                            case 'r':
-                                if (exec) {
-                                    out.append('\r');
-                                }
-                                break;
-                            case 't':
-                                if (exec) {
-                                    out.append('\t');
-                                }
-                                break;
-                            case 'b':
-                                if (exec) {
-                                    out.append('\b');
-                                }
-                                break;
-                            case 'f':
-                                if (exec) {
-                                    out.append('\f');
-                                }
-                                break;
-                            case 's':
-                                if (exec) {
-                                    out.append(' ');
-                                }
-                                break;
-                            case ':':
-                            case '^':
-                            case '\\':
-                                if (exec) {
-                                    out.append(ch);
-                                }
-                                break;
-                            default:
-                                throw new IllegalArgumentException();
+                        refs[sp] = param instanceof Number || param instanceof Boolean ? null : param;
+                        stack[sp++] = value;
+                        break;
+                    }
+                    case CONST:
+                        refs[sp] = null;
+                        stack[sp++] = code[pc++];
+                        break;
+                    case SET_VAR: {
+                        int v = code[pc++];
+                        sp--;
+                        Object value = refs[sp] != null ? refs[sp] : (Object) stack[sp];
+                        if (v < 26) {
+                            dynamicVariables[v] = value;
+                        } else {
+                            variables.set(v - 26, value);
                         }
+                        break;
                     }
-                    break;
-                case '^':
-                    ch = str.charAt(index++);
-                    if (exec) {
-                        out.append((char)(ch - '@'));
+                    case GET_VAR: {
+                        int v = code[pc++];
+                        Object value = v < 26 ? dynamicVariables[v] : variables.get(v - 26);
+                        refs[sp] = value instanceof Integer ? null : value;
+                        stack[sp++] = toInteger(value);
+                        break;
                     }
-                    break;
-                case '%':
-                    ch = str.charAt(index++);
-                    switch (ch) {
-                        case '%':
-                            if (exec) {
-                                out.append('%');
-                            }
-                            break;
-                        case 'p':
-                            ch = str.charAt(index++);
-                            if (exec) {
-                                stack.push(params[ch - '1']);
-                            }
-                            break;
-                        case 'P':
-                            ch = str.charAt(index++);
-                            if (ch >= 'a' && ch <= 'z') {
-                                if (exec) {
-                                    dv[ch - 'a'] = stack.pop();
-                                }
-                            } else if (ch >= 'A' && ch <= 'Z') {
-                                if (exec) {
-                                    sv[ch - 'A'] = stack.pop();
-                                }
-                            } else {
-                                throw new IllegalArgumentException();
-                            }
-                            break;
-                        case 'g':
-                            ch = str.charAt(index++);
-                            if (ch >= 'a' && ch <= 'z') {
-                                if (exec) {
-                                    stack.push(dv[ch - 'a']);
-                                }
-                            } else if (ch >= 'A' && ch <= 'Z') {
-                                if (exec) {
-                                    stack.push(sv[ch - 'A']);
-                                }
-                            } else {
-                                throw new IllegalArgumentException();
-                            }
-                            break;
-                        case '\'':
-                            ch = str.charAt(index++);
-                            if (exec) {
-                                stack.push((int) ch);
-                            }
-                            ch = str.charAt(index++);
-                            if (ch != '\'') {
-                                throw new IllegalArgumentException();
-                            }
-                            break;
-                        case '{':
-                            int start = index;
-                            while (str.charAt(index++) != '}') ;
-                            if (exec) {
-                                int v = Integer.valueOf(str.substring(start, index - 1));
-                                stack.push(v);
-                            }
-                            break;
-                        case 'l':
-                            if (exec) {
-                                stack.push(stack.pop().toString().length());
-                            }
-                            break;
-                        case '+':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 + v2);
-                            }
-                            break;
-                        case '-':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 - v2);
-                            }
-                            break;
-                        case '*':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 * v2);
-                            }
-                            break;
-                        case '/':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 / v2);
-                            }
-                            break;
-                        case 'm':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 % v2);
-                            }
-                            break;
-                        case '&':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 & v2);
-                            }
-                            break;
-                        case '|':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 | v2);
-                            }
-                            break;
-                        case '^':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 ^ v2);
-                            }
-                            break;
-                        case '=':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 == v2);
-                            }
-                            break;
-                        case '>':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 > v2);
-                            }
-                            break;
-                        case '<':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 < v2);
-                            }
-                            break;
-                        case 'A':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 != 0 && v2 != 0);
-                            }
-                            break;
-                        case '!':
-                            if (exec) {
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 == 0);
-                            }
-                            break;
-                        case '~':
-                            if (exec) {
-                                int v1 = toInteger(stack.pop());
-                                stack.push(~v1);
-                            }
-                            break;
-                        case 'O':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 != 0 || v2 != 0);
-                            }
-                            break;
-                        case '?':
-                            if (ifte != IFTE_NONE) {
-                                throw new IllegalArgumentException();
-                            } else {
-                                ifte = IFTE_IF;
-                            }
-                            break;
-                        case 't':
-                            if (ifte != IFTE_IF && ifte != IFTE_ELSE) {
-                                throw new IllegalArgumentException();
-                            } else {
-                                ifte = IFTE_THEN;
-                            }
-                            exec = toInteger(stack.pop()) != 0;
-                            break;
-                        case 'e':
-                            if (ifte != IFTE_THEN) {
-                                throw new IllegalArgumentException();
-                            } else {
-                                ifte = IFTE_ELSE;
-                            }
-                            exec = !exec;
-                            break;
-                        case ';':
-                            if (ifte == IFTE_NONE || ifte == IFTE_IF) {
-                                throw new IllegalArgumentException();
-                            } else {
-                                ifte = IFTE_NONE;
-                            }
-                            exec = true;
-                            break;
-                        case 'i':
-                            if (params.length >= 1) {
-                                params[0] = toInteger(params[0]) + 1;
-                            }
-                            if (params.length >= 2) {
-                                params[1] = toInteger(params[1]) + 1;
-                            }
-                            break;
-                        case 'd':
-                            out.append(Integer.toString(toInteger(stack.pop())));
-                            break;
-                        default:
-                            if (ch == ':') {
-                                ch = str.charAt(index++);
-                            }
-                            boolean alternate = false;
-                            boolean left = false;
-                            boolean space = false;
-                            boolean plus = false;
-                            int width = 0;
-                            int prec = -1;
-                            int cnv;
-                            while ("-+# ".indexOf(ch) >= 0) {
-                                switch (ch) {
-                                    case '-': left = true; break;
-                                    case '+': plus = true; break;
-                                    case '#': alternate = true; break;
-                                    case ' ': space = true; break;
-                                }
-                                ch = str.charAt(index++);
-                            }
-                            if ("123456789".indexOf(ch) >= 0) {
-                                do {
-                                    width = width * 10 + (ch - '0');
-                                    ch = str.charAt(index++);
-                                } while ("0123456789".indexOf(ch) >= 0);
-                            }
-                            if (ch == '.') {
-                                prec = 0;
-                                ch = str.charAt(index++);
-                            }
-                            if ("0123456789".indexOf(ch) >= 0) {
-                                do {
-                                    prec = prec * 10 + (ch - '0');
-                                    ch = str.charAt(index++);
-                                } while ("0123456789".indexOf(ch) >= 0);
-                            }
-                            if ("cdoxXs".indexOf(ch) < 0) {
-                                throw new IllegalArgumentException();
-                            }
-                            cnv = ch;
-                            if (exec) {
-                                String res;
-                                if (cnv == 's') {
-                                    res = (String) stack.pop();
-                                    if (prec >= 0) {
-                                        res = res.substring(0, prec);
-                                    }
-                                } else {
-                                    int p = toInteger(stack.pop());
-                                    StringBuilder fmt = new StringBuilder(16);
-                                    fmt.append('%');
-                                    if (alternate) {
-                                        fmt.append('#');
-                                    }
-                                    if (plus) {
-                                        fmt.append('+');
-                                    }
-                                    if (space) {
-                                        fmt.append(' ');
-                                    }
-                                    if (prec >= 0) {
-                                        fmt.append('0');
-                                        fmt.append(prec);
-                                    }
-                                    fmt.append((char) cnv);
-                                    res = String.format(fmt.toString(), p);
-                                }
-                                if (width > res.length()) {
-                                    res = String.format("%" + (left ? "-" : "") + width + "s", res);
-                                }
-                                out.append(res);
-                            }
-                            break;
+                    case STRLEN: {
+                        Object ref = refs[sp - 1];
+                        stack[sp - 1] = ref != null ? ref.toString().length() : Integer.toString(stack[sp - 1]).length();
+                        refs[sp - 1] = null;
+                        break;
                     }
-                    break;
-                case '$':
-                    if (index < length && str.charAt(index) == '<') {
-                        // We don't honour delays, just skip
-                        int nb = 0;
-                        while ((ch = str.charAt(++index)) != '>') {
-                            if (ch >= '0' && ch <= '9') {
-                                nb = nb * 10 + (ch - '0');
-                            } else if (ch == '*') {
-                                // ignore
-                            } else if (ch == '/') {
-                                // ignore
-                            } else {
-                                // illegal, but ...
-                            }
+                    case ADD:
+                        sp--;
+                        stack[sp - 1] = stack[sp - 1] + stack[sp];
+                        refs[sp - 1] = null;
+                        break;
+                    case SUB:
+                        sp--;
+                        stack[sp - 1] = stack[sp - 1] - stack[sp];
+                        refs[sp - 1] = null;
+                        break;
+                    case MUL:
+                        sp--;
+                        stack[sp - 1] = stack[sp - 1] * stack[sp];
+                        refs[sp - 1] = null;
+                        break;
+                    case DIV:
+                        sp--;
+                        stack[sp - 1] = stack[sp] != 0 ? stack[sp - 1] / stack[sp] : 0;
+                        refs[sp - 1] = null;
+                        break;
+                    case MOD:
+                        sp--;
+                        stack[sp - 1] = stack[sp] != 0 ? stack[sp - 1] % stack[sp] : 0;
+                        refs[sp - 1] = null;
+                        break;
+                    case BIT_AND:
+                        sp--;
+                        stack[sp - 1] = stack[sp - 1] & stack[sp];
+                        refs[sp - 1] = null;
+                        break;
+                    case BIT_OR:
+                        sp--;
+                        stack[sp - 1] = stack[sp - 1] | stack[sp];
+                        refs[sp - 1] = null;
+                        break;
+                    case BIT_XOR:
+                        sp--;
+                        stack[sp - 1] = stack[sp - 1] ^ stack[sp];
+                        refs[sp - 1] = null;
+                        break;
+                    case EQ:
+                        sp--;
+                        stack[sp - 1] = stack[sp - 1] == stack[sp] ? 1 : 0;
+                        refs[sp - 1] = null;
+                        break;
+                    case GT:
+                        sp--;
+                        stack[sp - 1] = stack[sp - 1] > stack[sp] ? 1 : 0;
+                        refs[sp - 1] = null;
+                        break;
+                    case LT:
+                        sp--;
+                        stack[sp - 1] = stack[sp - 1] < stack[sp] ? 1 : 0;
+                        refs[sp - 1] = null;
+                        break;
+                    case AND:
+                        sp--;
+                        stack[sp - 1] = stack[sp - 1] != 0 && stack[sp] != 0 ? 1 : 0;
+                        refs[sp - 1] = null;
+                        break;
+                    case OR:
+                        sp--;
+                        stack[sp - 1] = stack[sp - 1] != 0 || stack[sp] != 0 ? 1 : 0;
+                        refs[sp - 1] = null;
+                        break;
+                    case NOT:
+                        stack[sp - 1] = stack[sp - 1] == 0 ? 1 : 0;
+                        refs[sp - 1] = null;
+                        break;
+                    case BIT_NOT:
+                        stack[sp - 1] = ~stack[sp - 1];
+                        refs[sp - 1] = null;
+                        break;
+                    case INCREMENT:
+                        increment = true;
+                        break;
+                    case PRINT_INT:
+                        appendInt(out, stack[--sp]);
+                        break;
+                    case PRINT_CHAR:
+                        out.append((char) stack[--sp]);
+                        break;
+                    case PRINT_FORMAT: {
+                        Format format = (Format) constants[code[pc++]];
+                        sp--;
+                        out.append(format.format(stack[sp], refs[sp]));
+                        break;
+                    }
+                    case JUMP_IF_ZERO: {
+                        int target = code[pc++];
+                        if (stack[--sp] == 0) {
+                            pc = target;
                         }
-                        index++;
+                        break;
+                    }
+                    case JUMP:
+                        pc = code[pc];
+                        break;
+                    case DELAY:
+                        // We don't honour delays, just skip
+                        int nb = code[pc++];
                         try {
                             if (out instanceof Flushable) {
                                 ((Flushable) out).flush();
                             }
                             Thread.sleep(nb);
                         } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
                         }
-                    } else {
-                        if (exec) {
-                            out.append(ch);
+                        break;
+                    default:
+                        throw new IllegalStateException();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Program[" + source + "]";
+        }
+    }
+
+    /**
+     * Per-thread evaluation stack, reused across evaluations.
+     */
+    private static final class Frame {
+        private int[] ints = new int[16];
+        private Object[] refs = new Object[16];
+        private boolean busy;
+
+        int[] ints(int size) {
+            if (ints.length < size) {
+                ints = new int[size];
+            }
+            return ints;
+        }
+
+        Object[] refs(int size) {
+            if (refs.length < size) {
+                refs = new Object[size];
+            }
+            return refs;
+        }
+
+        void release(int size) {
+            Arrays.fill(refs, 0, Math.min(size, refs.length), null);
+            busy = false;
+        }
+    }
+
+    /**
+     * A printf-like format with flags, width or precision.
+     */
+    private static final class Format {
+        private final boolean alternate;
+        private final boolean left;
+        private final boolean space;
+        private final boolean plus;
+        private final int width;
+        private final int prec;
+        private final char cnv;
+
+        Format(boolean alternate, boolean left, boolean space, boolean plus, int width, int prec, char cnv) {
+            this.alternate = alternate;
+            this.left = left;
+            this.space = space;
+            this.plus = plus;
+            this.width = width;
+            this.prec = prec;
+            this.cnv = cnv;
+        }
+
+        String format(int value, Object ref) {
+            String res;
+            if (cnv == 's') {
+                res = ref != null ? ref.toString() : Integer.toString(value);
+                if (prec >= 0 && prec < res.length()) {
+                    res = res.substring(0, prec);
+                }
+            } else {
+                StringBuilder fmt = new StringBuilder(16);
+                fmt.append('%');
+                if (alternate) {
+                    fmt.append('#');
+                }
+                if (plus) {
+                    fmt.append('+');
+                }
+                if (space) {
+                    fmt.append(' ');
+                }
+                if (prec >= 0) {
+                    fmt.append('0');
+                    fmt.append(prec);
+                }
+                fmt.append(cnv);
+                res = String.format(fmt.toString(), cnv == 'c' ? (Object) (char) value : (Object) value);
+            }
+            if (width > res.length()) {
+                res = String.format("%" + (left ? "-" : "") + width + "s", res);
+            }
+            return res;
+        }
+    }
+
+    /**
+     * Compiles a capability string into a {@link Program}.
+     */
+    private static final class Compiler {
+        private final String str;
+        private int index;
+        private int[] code = new int[32];
+        private int pc;
+        private final List<Object> constants = new ArrayList<>();
+        private final StringBuilder literal = new StringBuilder();
+        private final Deque<Conditional> conditionals = new ArrayDeque<>();
+        private int depth;
+        private boolean usesVariables;
+
+        Compiler(String str) {
+            this.str = str;
+        }
+
+        Program compile() {
+            int length = str.length();
+            while (index < length) {
+                char ch = str.charAt(index++);
+                switch (ch) {
+                    case '\\':
+                        escape();
+                        break;
+                    case '^':
+                        ch = str.charAt(index++);
+                        literal.append((char) (ch - '@'));
+                        break;
+                    case '%':
+                        percent();
+                        break;
+                    case '$':
+                        if (index < length && str.charAt(index) == '<') {
+                            int nb = 0;
+                            while ((ch = str.charAt(++index)) != '>') {
+                                if (ch >= '0' && ch <= '9') {
+                                    nb = nb * 10 + (ch - '0');
+                                }
+                                // ignore '*', '/' and illegal characters
+                            }
+                            index++;
+                            emit(DELAY, nb);
+                        } else {
+                            literal.append(ch);
                         }
+                        break;
+                    default:
+                        literal.append(ch);
+                        break;
+                }
+            }
+            flushLiteral();
+            // be lenient with unterminated conditionals
+            while (!conditionals.isEmpty()) {
+                endConditional();
+            }
+            return new Program(str, Arrays.copyOf(code, pc), constants.toArray(), depth + 1, usesVariables);
+        }
+
+        private void escape() {
+            char ch = str.charAt(index++);
+            if (ch >= '0' && ch <= '7') {
+                int val = ch - '0';
+                for (int i = 0; i < 2; i++) {
+                    ch = str.charAt(index++);
+                    if (ch < '0' || ch > '7') {
+                        throw new IllegalArgumentException();
                     }
+                    val = val * 8 + (ch - '0');
+                }
+                literal.append((char) val);
+            } else {
+                switch (ch) {
+                    case 'e':
+                    case 'E':
+                        literal.append((char) 27); // escape
+                        break;
+                    case 'n':
+                        literal.append('\n');
+                        break;
+                    case 'r':
+                        literal.append('\r');
+                        break;
+                    case 't':
+                        literal.append('\t');
+                        break;
+                    case 'b':
+                        literal.append('\b');
+                        break;
+                    case 'f':
+                        literal.append('\f');
+                        break;
+                    case 's':
+                        literal.append(' ');
+                        break;
+                    case ':':
+                    case '^':
+                    case '\\':
+                        literal.append(ch);
+                        break;
+                    default:
+                        throw new IllegalArgumentException();
+                }
+            }
+        }
+
+        private void percent() {
+            char ch = str.charAt(index++);
+            switch (ch) {
+                case '%':
+                    literal.append('%');
                     break;
-                default:
-                    if (exec) {
-                        out.append(ch);
+                case 'p':
+                    ch = str.charAt(index++);
+                    if (ch < '1' || ch > '9') {
+                        throw new IllegalArgumentException();
                     }
+                    push(PARAM, ch - '1');
+                    break;
+                case 'P':
+                    emit(SET_VAR, variable(str.charAt(index++)));
+                    break;
+                case 'g':
+                    push(GET_VAR, variable(str.charAt(index++)));
+                    break;
+                case '\'':
+                    ch = str.charAt(index++);
+                    push(CONST, ch);
+                    if (str.charAt(index++) != '\'') {
+                        throw new IllegalArgumentException();
+                    }
+                    break;
+                case '{':
+                    int start = index;
+                    while (str.charAt(index++) != '}') ;
+                    push(CONST, Integer.parseInt(str.substring(start, index - 1)));
+                    break;
+                case 'l':
+                    emit(STRLEN);
+                    break;
+                case '+':
+                    emit(ADD);
+                    break;
+                case '-':
+                    emit(SUB);
+                    break;
+                case '*':
+                    emit(MUL);
+                    break;
+                case '/':
+                    emit(DIV);
+                    break;
+                case 'm':
+                    emit(MOD);
+                    break;
+                case '&':
+                    emit(BIT_AND);
+                    break;
+                case '|':
+                    emit(BIT_OR);
+                    break;
+                case '^':
+                    emit(BIT_XOR);
+                    break;
+                case '=':
+                    emit(EQ);
+                    break;
+                case '>':
+                    emit(GT);
+                    break;
+                case '<':
+                    emit(LT);
+                    break;
+                case 'A':
+                    emit(AND);
+                    break;
+                case 'O':
+                    emit(OR);
+                    break;
+                case '!':
+                    emit(NOT);
+                    break;
+                case '~':
+                    emit(BIT_NOT);
+                    break;
+                case '?':
+                    flushLiteral();
+                    conditionals.push(new Conditional());
+                    break;
+                case 't': {
+                    Conditional cond = conditional();
+                    if (cond.jumpIfZero >= 0) {
+                        throw new IllegalArgumentException();
+                    }
+                    emit(JUMP_IF_ZERO, 0);
+                    cond.jumpIfZero = pc - 1;
+                    break;
+                }
+                case 'e': {
+                    Conditional cond = conditional();
+                    if (cond.jumpIfZero < 0) {
+                        throw new IllegalArgumentException();
+                    }
+                    emit(JUMP, 0);
+                    cond.jumps.add(pc - 1);
+                    code[cond.jumpIfZero] = pc;
+                    cond.jumpIfZero = -1;
+                    break;
+                }
+                case ';':
+                    conditional();
+                    flushLiteral();
+                    endConditional();
+                    break;
+                case 'i':
+                    emit(INCREMENT);
+                    break;
+                case 'd':
+                    emit(PRINT_INT);
+                    break;
+                case 'c':
+                    emit(PRINT_CHAR);
+                    break;
+                default:
+                    format(ch);
                     break;
             }
         }
+
+        private void format(char ch) {
+            if (ch == ':') {
+                ch = str.charAt(index++);
+            }
+            boolean alternate = false;
+            boolean left = false;
+            boolean space = false;
+            boolean plus = false;
+            int width = 0;
+            int prec = -1;
+            while ("-+# ".indexOf(ch) >= 0) {
+                switch (ch) {
+                    case '-': left = true; break;
+                    case '+': plus = true; break;
+                    case '#': alternate = true; break;
+                    case ' ': space = true; break;
+                }
+                ch = str.charAt(index++);
+            }
+            if ("123456789".indexOf(ch) >= 0) {
+                do {
+                    width = width * 10 + (ch - '0');
+                    ch = str.charAt(index++);
+                } while ("0123456789".indexOf(ch) >= 0);
+            }
+            if (ch == '.') {
+                prec = 0;
+                ch = str.charAt(index++);
+            }
+            if ("0123456789".indexOf(ch) >= 0) {
+                do {
+                    prec = prec * 10 + (ch - '0');
+                    ch = str.charAt(index++);
+                } while ("0123456789".indexOf(ch) >= 0);
+            }
+            if ("cdoxXs".indexOf(ch) < 0) {
+                throw new IllegalArgumentException();
+            }
+            if (!alternate && !left && !space && !plus && width == 0 && prec < 0 && ch != 'o' && ch != 'x' && ch != 'X' && ch != 's') {
+                emit(ch == 'd' ? PRINT_INT : PRINT_CHAR);
+            } else {
+                constants.add(new Format(alternate, left, space, plus, width, prec, ch));
+                emit(PRINT_FORMAT, constants.size() - 1);
+            }
+        }
+
+        private int variable(char ch) {
+            usesVariables = true;
+            if (ch >= 'a' && ch <= 'z') {
+                return ch - 'a';
+            } else if (ch >= 'A' && ch <= 'Z') {
+                return 26 + ch - 'A';
+            } else {
+                throw new IllegalArgumentException();
+            }
+        }
+
+        private Conditional conditional() {
+            if (conditionals.isEmpty()) {
+                throw new IllegalArgumentException();
+            }
+            return conditionals.peek();
+        }
+
+        private void endConditional() {
+            Conditional cond = conditionals.pop();
+            if (cond.jumpIfZero >= 0) {
+                code[cond.jumpIfZero] = pc;
+            }
+            for (int jump : cond.jumps) {
+                code[jump] = pc;
+            }
+        }
+
+        private void push(int op, int arg) {
+            emit(op, arg);
+            depth++;
+        }
+
+        private void emit(int op) {
+            flushLiteral();
+            append(op);
+        }
+
+        private void emit(int op, int arg) {
+            flushLiteral();
+            append(op);
+            append(arg);
+        }
+
+        private void flushLiteral() {
+            if (literal.length() == 1) {
+                append(CHAR);
+                append(literal.charAt(0));
+            } else if (literal.length() > 1) {
+                constants.add(literal.toString());
+                append(LITERAL);
+                append(constants.size() - 1);
+            }
+            literal.setLength(0);
+        }
+
+        private void append(int value) {
+            if (pc == code.length) {
+                code = Arrays.copyOf(code, code.length * 2);
+            }
+            code[pc++] = value;
+        }
+    }
+
+    /**
+     * Pending jumps of a <code>%?</code> conditional being compiled.
+     */
+    private static final class Conditional {
+        int jumpIfZero = -1;
+        final List<Integer> jumps = new ArrayList<>();
     }
 
-    private static int toInteger(Object pop) {
-        if (pop instanceof Number) {
-            return ((Number) pop).intValue();
-        } else if (pop instanceof Boolean) {
-            return (Boolean) pop ? 1 : 0;
+    private static void appendInt(Appendable out, int value) throws IOException {
+        if (value < 0) {
+            if (value == Integer.MIN_VALUE) {
+                out.append(Integer.toString(value));
+                return;
+            }
+            out.append('-');
+            value = -value;
+        }
+        int div = 1;
+        while (value / div >= 10) {
+            div *= 10;
+        }
+        while (div > 0) {
+            out.append((char) ('0' + value / div % 10));
+            div /= 10;
+        }
+    }
+
+    private static int toInteger(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        } else if (value instanceof Character) {
+            return (Character) value;
+        } else if (value != null) {
+            try {
+                return Integer.parseInt(value.toString());
+            } catch (NumberFormatException e) {
+                // a string parameter, only meaningful for %s and %l
+                return 0;
+            }
         } else {
-            return Integer.valueOf(pop.toString());
+            return 0;
         }
     }
 
@@ -8,11 +8,12 @@
  */
 package org.jline.utils;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.stream.Collectors;
 
 import org.jline.terminal.Terminal;
@@ -34,6 +35,9 @@ public class Display {
     protected int rows;
     protected boolean reset;
     protected boolean delayLineWrap;
+    // set when the old lines do not match the previous update anymore
+    private boolean invalidated;
+    private boolean stripAnsi;
 
     protected final Map<Capability, Integer> cost = new HashMap<>();
     protected final boolean canScroll;
@@ -51,6 +55,13 @@ public class Display {
         this.delayedWrapAtEol = this.wrapAtEol
             && terminal.getBooleanCapability(Capability.eat_newline_glitch);
         this.cursorDownIsNewLine = "\n".equals(Curses.tputs(terminal.getStringCapability(Capability.cursor_down)));
+        updateCapabilities();
+    }
+
+    private void updateCapabilities() {
+        // If dumb display, ansi sequences are removed before display
+        Integer cols = terminal.getNumericCapability(Capability.max_colors);
+        this.stripAnsi = cols == null || cols < 8;
     }
 
     /**
@@ -73,11 +84,14 @@ public class Display {
             this.columns = columns;
             this.columns1 = columns + 1;
             oldLines = AttributedString.join(AttributedString.EMPTY, oldLines).columnSplitLength(columns, true, delayLineWrap());
+            invalidated = true;
         }
+        updateCapabilities();
     }
 
     public void reset() {
         oldLines = Collections.emptyList();
+        invalidated = true;
     }
 
     /**
@@ -110,18 +124,43 @@ public class Display {
      * @param flush whether the output should be flushed or not
      */
     public void update(List<AttributedString> newLines, int targetCursorPos, boolean flush) {
+        update(newLines, targetCursorPos, flush, null);
+    }
+
+    /**
+     * Update the display according to the new lines, only redrawing the given rows.
+     * Rows that are not set in <code>dirtyRows</code> are assumed to be identical
+     * to the lines given to the previous update and are skipped without being
+     * compared.  Rows that the previous update did not display are always drawn.
+     * @param newLines the lines to display
+     * @param targetCursorPos desired cursor position - see Size.cursorPos.
+     * @param flush whether the output should be flushed or not
+     * @param dirtyRows the rows that may have changed since the previous update,
+     *                  or <code>null</code> to compare all rows
+     */
+    public void update(List<AttributedString> newLines, int targetCursorPos, boolean flush, BitSet dirtyRows) {
         if (reset) {
             terminal.puts(Capability.clear_screen);
             oldLines.clear();
             cursorPos = 0;
             reset = false;
         }
+        if (invalidated) {
+            dirtyRows = null;
+            invalidated = false;
+        }
 
         // If dumb display, get rid of ansi sequences now
-        Integer cols = terminal.getNumericCapability(Capability.max_colors);
-        if (cols == null || cols < 8) {
-            newLines = newLines.stream().map(s -> new AttributedString(s.toString()))
-                    .collect(Collectors.toList());
+        if (stripAnsi) {
+            List<AttributedString> lines = new ArrayList<>(newLines.size());
+            for (int i = 0; i < newLines.size(); i++) {
+                if (dirtyRows != null && !dirtyRows.get(i) && i < oldLines.size()) {
+                    lines.add(oldLines.get(i));
+                } else {
+                    lines.add(new AttributedString(newLines.get(i).toString()));
+                }
+            }
+            newLines = lines;
         }
 
         // Detect scrolling
@@ -131,11 +170,11 @@ public class Display {
             // Find common headers and footers
             int l = newLines.size();
             while (nbHeaders < l
-                   && Objects.equals(newLines.get(nbHeaders), oldLines.get(nbHeaders))) {
+                   && isSame(dirtyRows, nbHeaders, newLines.get(nbHeaders), oldLines.get(nbHeaders))) {
                 nbHeaders++;
             }
             while (nbFooters < l - nbHeaders - 1
-                    && Objects.equals(newLines.get(newLines.size() - nbFooters - 1), oldLines.get(oldLines.size() - nbFooters - 1))) {
+                    && isSame(dirtyRows, l - nbFooters - 1, newLines.get(l - nbFooters - 1), oldLines.get(l - nbFooters - 1))) {
                 nbFooters++;
             }
             List<AttributedString> o1 = newLines.subList(nbHeaders, newLines.size() - nbFooters);
@@ -174,6 +213,10 @@ public class Display {
                         oldLines.add(nbHeaders + s2, new AttributedString(""));
                     }
                 }
+                if (sl > 1 && s1 != s2) {
+                    // lines have moved, so compare all of them
+                    dirtyRows = null;
+                }
             }
         }
 
@@ -202,9 +245,10 @@ public class Display {
                 newLength--;
                 newLine = newLine.substring(0, newLength);
             }
-            if (wrapNeeded
+            boolean wrapped = wrapNeeded
                 && lineIndex == (cursorPos + 1) / columns1
-                && lineIndex < newLines.size()) {
+                && lineIndex < newLines.size();
+            if (wrapped) {
                 // move from right margin to next line's left margin
                 cursorPos++;
                 if (newLength == 0 || newLine.isHidden(0)) {
@@ -224,7 +268,19 @@ public class Display {
                     currentPos = cursorPos;
                 }
             }
-            List<DiffHelper.Diff> diffs = DiffHelper.diff(oldLine, newLine);
+            List<DiffHelper.Diff> diffs;
+            if (lineIndex < oldLines.size() && lineIndex < newLines.size()
+                    && !wrapped
+                    && isSame(dirtyRows, lineIndex, newLine, oldLine)) {
+                // unchanged line: nothing to print, only compute the
+                // position at the end of the last line
+                diffs = Collections.emptyList();
+                if (lineIndex == numLines - 1) {
+                    currentPos += newLine.columnLength();
+                }
+            } else {
+                diffs = DiffHelper.diff(oldLine, newLine);
+            }
             boolean ident = true;
             boolean cleared = false;
             for (int i = 0; i < diffs.size(); i++) {
@@ -379,6 +435,23 @@ public class Display {
         return s != null ? s.length() : Integer.MAX_VALUE;
     }
 
+    /*
+     * Check if a line is unchanged, either because the row is not dirty,
+     * or because both lines are equal.  The hash codes are cached by the
+     * strings, so that rows which differ are usually detected cheaply.
+     */
+    private static boolean isSame(BitSet dirtyRows, int row, AttributedString s1, AttributedString s2) {
+        if (dirtyRows != null && !dirtyRows.get(row)) {
+            return true;
+        }
+        return same(s1, s2);
+    }
+
+    private static boolean same(AttributedString s1, AttributedString s2) {
+        return s1 == s2
+                || s1 != null && s2 != null && s1.hashCode() == s2.hashCode() && s1.equals(s2);
+    }
+
     private static int[] longestCommon(List<AttributedString> l1, List<AttributedString> l2) {
         int start1 = 0;
         int start2 = 0;
@@ -386,7 +459,7 @@ public class Display {
         for (int i = 0; i < l1.size(); i++) {
             for (int j = 0; j < l2.size(); j++) {
                 int x = 0;
-                while (Objects.equals(l1.get(i + x), l2.get(j + x))) {
+                while (same(l1.get(i + x), l2.get(j + x))) {
                     x++;
                     if (((i + x) >= l1.size()) || ((j + x) >= l2.size())) break;
                 }
@@ -15,15 +15,28 @@ import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Helper methods for running unix commands.
  */
 public final class ExecHelper {
 
+    private static final AtomicLong EXEC_COUNT = new AtomicLong();
+
     private ExecHelper() {
     }
 
+    /**
+     * Returns the number of commands run by {@link #exec(boolean, String...)},
+     * so that one can check that no process is spawned on a given code path.
+     *
+     * @return the number of commands run since the class was loaded
+     */
+    public static long getExecCount() {
+        return EXEC_COUNT.get();
+    }
+
     public static String exec(boolean redirectInput, final String... cmd) throws IOException {
         Objects.requireNonNull(cmd);
         try {
@@ -32,6 +45,7 @@ public final class ExecHelper {
             if (redirectInput) {
                 pb.redirectInput(ProcessBuilder.Redirect.INHERIT);
             }
+            EXEC_COUNT.incrementAndGet();
             Process p = pb.start();
             String result = waitAndCapture(p);
             Log.trace("Result: ", result);
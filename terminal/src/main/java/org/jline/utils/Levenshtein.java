@@ -40,6 +40,14 @@ import java.util.Map;
  * The running time of the Damerau-Levenshtein algorithm is O(n*m) where n is
  * the length of the source string and m is the length of the target string.
  * This implementation consumes O(n*m) space.
+ * <p>
+ *
+ * When only distances up to a given threshold matter, as for typo tolerant
+ * completion, {@link #distance(CharSequence, CharSequence, int)} restricts
+ * the computation to the cells within the threshold of the diagonal, and
+ * stops as soon as every cell of a row exceeds the threshold.  It only keeps
+ * the last rows of that band, and so consumes O(max^2) space whatever the
+ * length of the strings.
  *
  * @author Kevin L. Stern
  */
@@ -116,4 +124,90 @@ public class Levenshtein {
         return table[source.length() - 1][target.length() - 1];
     }
 
+    /**
+     * Computes the distance between two strings with unit costs, giving up
+     * once it is known to exceed <code>max</code>.
+     *
+     * @param source the source string
+     * @param target the target string
+     * @param max the greatest distance of interest
+     * @return the distance if it does not exceed <code>max</code>,
+     *         a greater value otherwise
+     */
+    public static int distance(CharSequence source, CharSequence target, int max) {
+        int n = source.length();
+        int m = target.length();
+        int over = max + 1;
+        if (Math.abs(n - m) > max) {
+            return over;
+        }
+        if (n == 0) {
+            return m;
+        }
+        if (m == 0) {
+            return n;
+        }
+        // The distance between two prefixes is at least the difference of
+        // their lengths, so only the cells within max of the diagonal are
+        // computed, the other ones being read as over, which is enough to
+        // tell they are out of reach.  A swap with characters max or more
+        // positions back costs more than max, so only the last max + 2 rows
+        // are kept, each holding the 2 * max + 1 cells of the band.
+        int rows = max + 2;
+        int width = 2 * max + 1;
+        int[] table = new int[rows * width];
+        for (int i = 0; i < n; i++) {
+            int from = Math.max(0, i - max);
+            int to = Math.min(m - 1, i + max);
+            int rowMin = over;
+            for (int j = from; j <= to; j++) {
+                int distance;
+                if (i == 0 && j == 0) {
+                    distance = source.charAt(0) != target.charAt(0) ? 1 : 0;
+                } else if (j == 0) {
+                    int matchDistance = i + (source.charAt(i) == target.charAt(0) ? 0 : 1);
+                    distance = Math.min(Math.min(cell(table, i - 1, 0, max, over) + 1, i + 2), matchDistance);
+                } else if (i == 0) {
+                    int matchDistance = j + (source.charAt(0) == target.charAt(j) ? 0 : 1);
+                    distance = Math.min(Math.min(j + 2, cell(table, 0, j - 1, max, over) + 1), matchDistance);
+                } else {
+                    int deleteDistance = cell(table, i - 1, j, max, over) + 1;
+                    int insertDistance = cell(table, i, j - 1, max, over) + 1;
+                    int matchDistance = cell(table, i - 1, j - 1, max, over)
+                            + (source.charAt(i) != target.charAt(j) ? 1 : 0);
+                    distance = Math.min(Math.min(deleteDistance, insertDistance), matchDistance);
+                    int iSwap = lastIndexOf(source, target.charAt(j), i - 1, max - 1);
+                    int jSwap = lastIndexOf(target, source.charAt(i), j - 1, max - 1);
+                    if (iSwap >= 0 && jSwap >= 0) {
+                        int preSwapCost = iSwap == 0 && jSwap == 0
+                                ? 0 : cell(table, Math.max(0, iSwap - 1), Math.max(0, jSwap - 1), max, over);
+                        distance = Math.min(distance, preSwapCost + (i - iSwap - 1) + (j - jSwap - 1) + 1);
+                    }
+                }
+                table[(i % rows) * width + j - i + max] = distance;
+                rowMin = Math.min(rowMin, distance);
+            }
+            if (rowMin > max) {
+                return over;
+            }
+        }
+        return cell(table, n - 1, m - 1, max, over);
+    }
+
+    private static int cell(int[] table, int i, int j, int max, int over) {
+        if (Math.abs(i - j) > max) {
+            return over;
+        }
+        return table[(i % (max + 2)) * (2 * max + 1) + j - i + max];
+    }
+
+    private static int lastIndexOf(CharSequence s, char c, int from, int lookback) {
+        for (int k = from; k >= 0 && from - k <= lookback; k--) {
+            if (s.charAt(k) == c) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
 }
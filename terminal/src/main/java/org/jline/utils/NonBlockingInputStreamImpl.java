@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2002-2018, the original author or authors.
+ * Copyright (c) 2002-2020, the original author or authors.
  *
  * This software is distributable under the BSD license. See the terms of the
  * BSD license in the documentation provided with this software.
@@ -19,6 +19,12 @@ import java.io.InterruptedIOException;
  * a separate thread perform all non-blocking read requests and then
  * waiting on the thread to complete.  
  * 
+ * <p>Reads are performed in bulk: each read of the underlying stream takes
+ * all the bytes it has available at once, up to the size of an internal
+ * buffer, from which the following reads are served without waking up the
+ * thread.  The underlying stream is still only read when the buffer is empty
+ * and a read is requested.</p>
+ *
  * <p>VERY IMPORTANT NOTES
  * <ul>
  *   <li> This class is not thread safe. It expects at most one reader.
@@ -29,8 +35,13 @@ import java.io.InterruptedIOException;
 public class NonBlockingInputStreamImpl
     extends NonBlockingInputStream
 {
+    private static final int BUFFER_SIZE = 8192;
+
     private InputStream in;                  // The actual input stream
-    private int         b = READ_EXPIRED;    // Recently read byte
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int         head;                // Position of the next buffered byte
+    private int         count;               // Number of buffered bytes
+    private boolean     eof;                 // End of stream reached after the buffered bytes
 
     private String      name;
     private boolean     threadIsReading      = false;
@@ -53,9 +64,7 @@ public class NonBlockingInputStreamImpl
 
     private synchronized void startReadingThreadIfNeeded() {
         if (thread == null) {
-            thread = new Thread(this::run);
-            thread.setName(name + " non blocking reader thread");
-            thread.setDaemon(true);
+            thread = Threads.newThread(this::run, name + " non blocking reader thread");
             thread.start();
         }
     }
@@ -81,6 +90,11 @@ public class NonBlockingInputStreamImpl
         shutdown();
     }
 
+    @Override
+    public synchronized int available() throws IOException {
+        return count > 0 ? count : threadIsReading ? 0 : in.available();
+    }
+
     /**
      * Attempts to read a byte from the input stream for a specific
      * period of time.
@@ -91,88 +105,159 @@ public class NonBlockingInputStreamImpl
      * @throws IOException if anything wrong happens
      */
     public synchronized int read(long timeout, boolean isPeek) throws IOException {
+        int res = fill(timeout, isPeek);
+        if (res >= 0) {
+            res = buffer[head] & 0xFF;
+            if (!isPeek) {
+                head++;
+                count--;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Reads the bytes available, waiting for at least one of them if needed.
+     */
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (b == null) {
+            throw new NullPointerException();
+        } else if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        } else if (len == 0) {
+            return 0;
+        }
+        int res = fill(0L, false);
+        if (res < 0) {
+            return res;
+        }
+        int l = Math.min(len, count);
+        System.arraycopy(buffer, head, b, off, l);
+        head += l;
+        count -= l;
+        return l;
+    }
+
+    @Override
+    public int readBuffered(byte[] b) throws IOException {
+        if (b == null) {
+            throw new NullPointerException();
+        }
+        return read(b, 0, b.length);
+    }
+
+    /**
+     * Wait until some bytes are buffered.
+     * @return 0 if some bytes are buffered, -1 if EOF is reached, or -2 if the
+     *   read timed out.
+     */
+    private int fill(long timeout, boolean isPeek) throws IOException {
         /*
-         * If the thread hit an IOException, we report it.
+         * If there are pending bytes from the thread, then we send them.
+         */
+        if (count > 0) {
+            return 0;
+        }
+
+        /*
+         * If the thread hit an IOException or the end of the stream, we report it.
          */
         if (exception != null) {
-            assert b == READ_EXPIRED;
             IOException toBeThrown = exception;
             if (!isPeek)
                 exception = null;
             throw toBeThrown;
         }
+        if (eof) {
+            if (!isPeek)
+                eof = false;
+            return EOF;
+        }
 
         /*
-         * If there was a pending character from the thread, then
-         * we send it. If the timeout is 0L or the thread was shut down
-         * then do a local read.
+         * If the timeout is 0L or the thread was shut down then do a local read.
          */
-        if (b >= -1) {
-            assert exception == null;
+        if (!isPeek && timeout <= 0L && !threadIsReading) {
+            int l = readChunk();
+            if (l < 0) {
+                return EOF;
+            }
+            head = 0;
+            count = l;
+            return 0;
         }
-        else if (!isPeek && timeout <= 0L && !threadIsReading) {
-            b = in.read();
+
+        /*
+         * If the thread isn't reading already, then ask it to do so.
+         */
+        if (!threadIsReading) {
+            threadIsReading = true;
+            startReadingThreadIfNeeded();
+            notifyAll();
         }
-        else {
-            /*
-             * If the thread isn't reading already, then ask it to do so.
-             */
-            if (!threadIsReading) {
-                threadIsReading = true;
-                startReadingThreadIfNeeded();
-                notifyAll();
-            }
 
-            boolean isInfinite = (timeout <= 0L);
+        boolean isInfinite = (timeout <= 0L);
 
-            /*
-             * So the thread is currently doing the reading for us. So
-             * now we play the waiting game.
-             */
-            while (isInfinite || timeout > 0L)  {
-                long start = System.currentTimeMillis ();
+        /*
+         * So the thread is currently doing the reading for us. So
+         * now we play the waiting game.
+         */
+        while (isInfinite || timeout > 0L)  {
+            long start = System.currentTimeMillis ();
 
-                try {
-                    if (Thread.interrupted()) {
-                        throw new InterruptedException();
-                    }
-                    wait(timeout);
-                }
-                catch (InterruptedException e) {
-                    exception = (IOException) new InterruptedIOException().initCause(e);
+            try {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
                 }
+                wait(timeout);
+            }
+            catch (InterruptedException e) {
+                exception = (IOException) new InterruptedIOException().initCause(e);
+            }
 
-                if (exception != null) {
-                    assert b == READ_EXPIRED;
+            if (count > 0) {
+                return 0;
+            }
 
-                    IOException toBeThrown = exception;
-                    if (!isPeek)
-                        exception = null;
-                    throw toBeThrown;
-                }
+            if (exception != null) {
+                IOException toBeThrown = exception;
+                if (!isPeek)
+                    exception = null;
+                throw toBeThrown;
+            }
 
-                if (b >= -1) {
-                    assert exception == null;
-                    break;
-                }
+            if (eof) {
+                if (!isPeek)
+                    eof = false;
+                return EOF;
+            }
 
-                if (!isInfinite) {
-                    timeout -= System.currentTimeMillis() - start;
-                }
+            if (!isInfinite) {
+                timeout -= System.currentTimeMillis() - start;
             }
         }
+        return READ_EXPIRED;
+    }
 
-        /*
-         * b is the character that was just read. Either we set it because
-         * a local read was performed or the read thread set it (or failed to
-         * change it).  We will return it's value, but if this was a peek
-         * operation, then we leave it in place.
-         */
-        int ret = b;
-        if (!isPeek) {
-            b = READ_EXPIRED;
+    /**
+     * Read a chunk of bytes into the buffer, blocking for the first one only.
+     * As the default implementation of {@link InputStream#read(byte[], int, int)}
+     * blocks until the requested length is read, the length is bounded by the
+     * number of bytes available.
+     */
+    private int readChunk() throws IOException {
+        int l = in.read(buffer, 0, Math.max(1, Math.min(in.available(), buffer.length)));
+        if (l > 0 && l < buffer.length) {
+            int available = Math.min(in.available(), buffer.length - l);
+            if (available > 0) {
+                int n = in.read(buffer, l, available);
+                if (n > 0) {
+                    l += n;
+                }
+            }
         }
-        return ret;
+        return l;
     }
 
     private void run () {
@@ -209,11 +294,13 @@ public class NonBlockingInputStreamImpl
                 /*
                  * We're not shutting down, but we need to read. This cannot
                  * happen while we are holding the lock (which we aren't now).
+                 * The buffer is only refilled once empty, and the reading thread
+                 * leaves it alone while we are reading, so we can read into it.
                  */
-                int byteRead = READ_EXPIRED;
+                int bytesRead = READ_EXPIRED;
                 IOException failure = null;
                 try {
-                    byteRead = in.read();
+                    bytesRead = readChunk();
                 } catch (IOException e) {
                     failure = e;
                 }
@@ -223,13 +310,18 @@ public class NonBlockingInputStreamImpl
                  */
                 synchronized (this) {
                     exception = failure;
-                    b = byteRead;
+                    if (bytesRead > 0) {
+                        head = 0;
+                        count = bytesRead;
+                    } else if (bytesRead == EOF) {
+                        eof = true;
+                    }
                     threadIsReading = false;
                     notify();
                 }
 
                 // If end of stream, exit the loop thread
-                if (byteRead < 0) {
+                if (bytesRead < 0) {
                     return;
                 }
             }
@@ -27,6 +27,8 @@ public class NonBlockingPumpInputStream extends NonBlockingInputStream {
 
     private IOException ioException;
 
+    private Runnable spaceCallback;
+
     public NonBlockingPumpInputStream() {
         this(DEFAULT_BUFFER_SIZE);
     }
@@ -94,6 +96,38 @@ public class NonBlockingPumpInputStream extends NonBlockingInputStream {
         return count;
     }
 
+    /**
+     * Returns the number of bytes which can be written without blocking.
+     *
+     * @return the free space in the buffer
+     */
+    public synchronized int free() {
+        return readBuffer.capacity() - available();
+    }
+
+    /**
+     * Register a callback to be called once, as soon as some space is
+     * available for writing, which may be immediately.  The callback is
+     * called by the reading thread while holding the lock of this stream,
+     * so it must not block.
+     *
+     * @param callback the callback
+     */
+    public synchronized void onSpaceAvailable(Runnable callback) {
+        spaceCallback = callback;
+        if (closed || free() > 0) {
+            spaceAvailable();
+        }
+    }
+
+    private void spaceAvailable() {
+        Runnable callback = spaceCallback;
+        if (callback != null) {
+            spaceCallback = null;
+            callback.run();
+        }
+    }
+
     @Override
     public synchronized int read(long timeout, boolean isPeek) throws IOException {
         checkIoException();
@@ -101,6 +135,7 @@ public class NonBlockingPumpInputStream extends NonBlockingInputStream {
         int res = wait(readBuffer, timeout);
         if (res >= 0) {
             res = readBuffer.get() & 0x00FF;
+            spaceAvailable();
         }
         rewind(readBuffer, writeBuffer);
         return res;
@@ -115,6 +150,7 @@ public class NonBlockingPumpInputStream extends NonBlockingInputStream {
             while (res < b.length && readBuffer.hasRemaining()) {
                 b[res++] = (byte) (readBuffer.get() & 0x00FF);
             }
+            spaceAvailable();
         }
         rewind(readBuffer, writeBuffer);
         return res;
@@ -160,6 +196,7 @@ public class NonBlockingPumpInputStream extends NonBlockingInputStream {
     public synchronized void close() throws IOException {
         this.closed = true;
         notifyAll();
+        spaceAvailable();
     }
 
     private class NbpOutputStream extends OutputStream {
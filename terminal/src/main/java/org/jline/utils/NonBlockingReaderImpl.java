@@ -57,9 +57,7 @@ public class NonBlockingReaderImpl
 
     private synchronized void startReadingThreadIfNeeded() {
         if (thread == null) {
-            thread = new Thread(this::run);
-            thread.setName(name + " non blocking reader thread");
-            thread.setDaemon(true);
+            thread = Threads.newThread(this::run, name + " non blocking reader thread");
             thread.start();
         }
     }
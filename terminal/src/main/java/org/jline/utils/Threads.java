@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+import static org.jline.terminal.TerminalBuilder.PROP_THREAD_FACTORY;
+
+/**
+ * Creates the threads used internally by JLine.
+ *
+ * All those threads, such as the terminal input pumps, are created by a
+ * single {@link ThreadFactory}, so that an application can control them,
+ * for example to use virtual threads or threads with a smaller stack.
+ * The factory is set using {@link #setThreadFactory(ThreadFactory)}, or
+ * the {@link org.jline.terminal.TerminalBuilder#PROP_THREAD_FACTORY} system
+ * property which gives either the name of a {@link ThreadFactory} class with
+ * a public no-arg constructor, or {@link #VIRTUAL} to use virtual threads
+ * when the JVM supports them.
+ */
+public final class Threads {
+
+    /**
+     * The value of the {@link org.jline.terminal.TerminalBuilder#PROP_THREAD_FACTORY}
+     * system property selecting virtual threads.
+     */
+    public static final String VIRTUAL = "virtual";
+
+    private static volatile ThreadFactory threadFactory;
+
+    private Threads() {
+    }
+
+    /**
+     * Returns the factory creating the JLine threads.
+     *
+     * @return the thread factory
+     */
+    public static ThreadFactory getThreadFactory() {
+        ThreadFactory factory = threadFactory;
+        if (factory == null) {
+            synchronized (Threads.class) {
+                factory = threadFactory;
+                if (factory == null) {
+                    factory = createThreadFactory(System.getProperty(PROP_THREAD_FACTORY));
+                    threadFactory = factory;
+                }
+            }
+        }
+        return factory;
+    }
+
+    /**
+     * Set the factory creating the JLine threads.  Threads which are already
+     * running are not affected.
+     *
+     * @param factory the thread factory, or <code>null</code> to restore the default one
+     */
+    public static void setThreadFactory(ThreadFactory factory) {
+        threadFactory = factory;
+    }
+
+    /**
+     * Creates a daemon thread.
+     *
+     * @param task the task run by the thread
+     * @param name the name of the thread
+     * @return the thread, which is not started
+     */
+    public static Thread newThread(Runnable task, String name) {
+        Thread thread = getThreadFactory().newThread(task);
+        if (thread == null) {
+            throw new IllegalStateException("The thread factory did not create a thread");
+        }
+        thread.setName(name);
+        if (!thread.isDaemon()) {
+            thread.setDaemon(true);
+        }
+        return thread;
+    }
+
+    static ThreadFactory createThreadFactory(String value) {
+        if (value != null && !value.isEmpty()) {
+            try {
+                if (VIRTUAL.equals(value)) {
+                    Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                    Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+                    return (ThreadFactory) factory.invoke(builder);
+                } else {
+                    ClassLoader cl = Thread.currentThread().getContextClassLoader();
+                    Class<?> clazz = Class.forName(value, true, cl != null ? cl : Threads.class.getClassLoader());
+                    return (ThreadFactory) clazz.getConstructor().newInstance();
+                }
+            } catch (Exception | LinkageError e) {
+                Log.warn("Unable to create the thread factory '", value, "', using the default one", e);
+            }
+        }
+        return Thread::new;
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.terminal.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.jline.terminal.Attributes;
+import org.jline.terminal.Attributes.LocalFlag;
+import org.jline.terminal.Size;
+import org.jline.terminal.Terminal.Signal;
+import org.jline.terminal.Terminal.SignalHandler;
+import org.jline.terminal.spi.Pty;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AbstractPosixTerminalTest {
+
+    /**
+     * A pty counting the reads of its attributes and size.
+     */
+    static class CountingPty implements Pty {
+        final Attributes attributes = new Attributes();
+        final Size size = new Size(80, 24);
+        int attrReads;
+        int sizeReads;
+
+        @Override
+        public InputStream getMasterInput() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public OutputStream getMasterOutput() {
+            return new ByteArrayOutputStream();
+        }
+
+        @Override
+        public InputStream getSlaveInput() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public OutputStream getSlaveOutput() {
+            return new ByteArrayOutputStream();
+        }
+
+        @Override
+        public Attributes getAttr() {
+            attrReads++;
+            return new Attributes(attributes);
+        }
+
+        @Override
+        public void setAttr(Attributes attr) {
+            attributes.copy(attr);
+        }
+
+        @Override
+        public Size getSize() {
+            sizeReads++;
+            return new Size(size.getColumns(), size.getRows());
+        }
+
+        @Override
+        public void setSize(Size size) {
+            this.size.copy(size);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static PosixPtyTerminal terminal(Pty pty) throws IOException {
+        return new PosixPtyTerminal("test", "ansi", pty,
+                new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream(),
+                StandardCharsets.UTF_8, SignalHandler.SIG_DFL, true);
+    }
+
+    @Test
+    public void testAttributesCache() throws IOException {
+        CountingPty pty = new CountingPty();
+        PosixPtyTerminal terminal = terminal(pty);
+        int reads = pty.attrReads;
+
+        Attributes attr = terminal.getAttributes();
+        attr.setLocalFlag(LocalFlag.ECHO, true);
+        assertFalse(terminal.getAttributes().getLocalFlag(LocalFlag.ECHO));
+        assertEquals(reads + 1, pty.attrReads);
+
+        terminal.setAttributes(attr);
+        assertTrue(terminal.getAttributes().getLocalFlag(LocalFlag.ECHO));
+        assertTrue(terminal.getAttributes().getLocalFlag(LocalFlag.ECHO));
+        assertEquals(reads + 2, pty.attrReads);
+    }
+
+    @Test
+    public void testSizeCache() throws IOException {
+        CountingPty pty = new CountingPty();
+        PosixPtyTerminal terminal = terminal(pty);
+
+        // without a WINCH handler, the size changes are not notified
+        terminal.getSize();
+        terminal.getSize();
+        assertEquals(2, pty.sizeReads);
+
+        terminal.handle(Signal.WINCH, s -> { });
+        assertEquals(80, terminal.getSize().getColumns());
+        terminal.getSize().setColumns(10);
+        assertEquals(80, terminal.getSize().getColumns());
+        assertEquals(3, pty.sizeReads);
+
+        // a resize is seen once the signal is raised
+        pty.size.setColumns(100);
+        assertEquals(80, terminal.getSize().getColumns());
+        terminal.raise(Signal.WINCH);
+        assertEquals(100, terminal.getSize().getColumns());
+        assertEquals(4, pty.sizeReads);
+
+        terminal.setSize(new Size(120, 40));
+        assertEquals(120, terminal.getSize().getColumns());
+        assertEquals(120, terminal.getSize().getColumns());
+        assertEquals(5, pty.sizeReads);
+
+        terminal.handle(Signal.WINCH, SignalHandler.SIG_DFL);
+        terminal.getSize();
+        terminal.getSize();
+        assertEquals(7, pty.sizeReads);
+    }
+
+    @Test
+    public void testSizeNotCachedWithoutNativeSignals() throws IOException {
+        CountingPty pty = new CountingPty();
+        // the handler is not registered for the native signals, so resizes are not notified
+        PosixSysTerminal terminal = new PosixSysTerminal("test", "ansi", pty,
+                StandardCharsets.UTF_8, false, s -> { });
+        try {
+            assertEquals(80, terminal.getSize().getColumns());
+            pty.size.setColumns(100);
+            assertEquals(100, terminal.getSize().getColumns());
+            assertEquals(2, pty.sizeReads);
+        } finally {
+            terminal.close();
+        }
+    }
+
+}
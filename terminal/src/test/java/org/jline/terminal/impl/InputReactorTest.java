@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.terminal.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jline.terminal.Terminal;
+import org.jline.terminal.TerminalBuilder;
+import org.jline.utils.NonBlockingReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InputReactorTest {
+
+    private InputReactor reactor;
+
+    @Before
+    public void setUp() throws IOException {
+        reactor = new InputReactor("test", 2);
+    }
+
+    @After
+    public void tearDown() {
+        reactor.close();
+    }
+
+    private Terminal terminal(Pipe pipe, OutputStream out) throws IOException {
+        return TerminalBuilder.builder()
+                .name("test")
+                .type("ansi")
+                .streams(pipe.source(), out, reactor)
+                .build();
+    }
+
+    private static void write(Pipe pipe, String str) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(str.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            pipe.sink().write(buffer);
+        }
+    }
+
+    private static String read(NonBlockingReader reader, int length) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < length) {
+            int c = reader.read(5000);
+            assertFalse("Missing input after " + sb, c < 0);
+            sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testManyTerminals() throws IOException {
+        List<Pipe> pipes = new ArrayList<>();
+        List<ByteArrayOutputStream> outputs = new ArrayList<>();
+        List<Terminal> terminals = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Pipe pipe = Pipe.open();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            pipes.add(pipe);
+            outputs.add(out);
+            terminals.add(terminal(pipe, out));
+        }
+        for (int i = 0; i < 20; i++) {
+            write(pipes.get(i), "line " + i + "\r");
+        }
+        for (int i = 0; i < 20; i++) {
+            String expected = "line " + i + "\n";
+            assertEquals(expected, read(terminals.get(i).reader(), expected.length()));
+            assertEquals("line " + i + "\r\n", outputs.get(i).toString());
+        }
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            assertFalse(thread.getName().startsWith("test input pump thread"));
+        }
+        for (Terminal terminal : terminals) {
+            terminal.close();
+        }
+    }
+
+    @Test
+    public void testUnreadInputDoesNotBlockOtherTerminals() throws IOException {
+        reactor.close();
+        reactor = new InputReactor("test", 1);
+        Pipe pipe1 = Pipe.open();
+        Pipe pipe2 = Pipe.open();
+        Terminal terminal1 = terminal(pipe1, new ByteArrayOutputStream());
+        Terminal terminal2 = terminal(pipe2, new ByteArrayOutputStream());
+
+        // more input than the terminal buffers
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        write(pipe1, sb.toString());
+        write(pipe2, "foo");
+        assertEquals("foo", read(terminal2.reader(), 3));
+        assertEquals(sb.toString(), read(terminal1.reader(), sb.length()));
+    }
+
+    @Test
+    public void testUnreadOutputDoesNotBlockOtherTerminals() throws Exception {
+        reactor.close();
+        reactor = new InputReactor("test", 1);
+        Pipe pipe1 = Pipe.open();
+        Pipe pipe2 = Pipe.open();
+        // the peer of the first terminal does not read its output
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        OutputStream output1 = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+            }
+        };
+        Terminal terminal1 = terminal(pipe1, output1);
+        Terminal terminal2 = terminal(pipe2, new ByteArrayOutputStream());
+        try {
+            write(pipe1, "a");
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+            write(pipe2, "foo");
+            assertEquals("foo", read(terminal2.reader(), 3));
+        } finally {
+            release.countDown();
+        }
+        assertEquals("a", read(terminal1.reader(), 1));
+    }
+
+    @Test
+    public void testPauseResumeAndEof() throws IOException, InterruptedException {
+        Pipe pipe = Pipe.open();
+        Terminal terminal = TerminalBuilder.builder()
+                .type("ansi")
+                .streams(pipe.source(), new ByteArrayOutputStream(), reactor)
+                .paused(true)
+                .build();
+        write(pipe, "abc");
+        assertEquals(NonBlockingReader.READ_EXPIRED, terminal.reader().read(100));
+        terminal.resume();
+        assertEquals("ab", read(terminal.reader(), 2));
+        terminal.pause(true);
+        write(pipe, "d");
+        assertEquals('c', terminal.reader().read(100));
+        assertEquals(NonBlockingReader.READ_EXPIRED, terminal.reader().read(100));
+        terminal.resume();
+        assertEquals('d', terminal.reader().read(5000));
+        pipe.sink().close();
+        assertEquals(NonBlockingReader.EOF, terminal.reader().read(5000));
+    }
+
+    @Test
+    public void testPauseAfterClose() throws Exception {
+        Pipe pipe = Pipe.open();
+        Terminal terminal = terminal(pipe, new ByteArrayOutputStream());
+        reactor.close();
+        Thread thread = new Thread(() -> {
+            try {
+                terminal.pause(true);
+                terminal.resume();
+                terminal.pause(true);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        assertEquals(NonBlockingReader.EOF, terminal.reader().read(5000));
+    }
+
+    @Test
+    public void testNonBlockingOutput() throws Exception {
+        Pipe pipe = Pipe.open();
+        pipe.sink().configureBlocking(false);
+        byte[] data = new byte[1024 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        Thread writer = new Thread(() -> {
+            try (OutputStream out = InputReactor.newOutputStream(pipe.sink())) {
+                out.write(data);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        try (InputStream in = Channels.newInputStream(pipe.source())) {
+            byte[] buf = new byte[8192];
+            int nb;
+            while ((nb = in.read(buf)) >= 0) {
+                received.write(buf, 0, nb);
+            }
+        }
+        writer.join();
+        assertEquals(data.length, received.size());
+        assertEquals(ByteBuffer.wrap(data), ByteBuffer.wrap(received.toByteArray()));
+    }
+
+}
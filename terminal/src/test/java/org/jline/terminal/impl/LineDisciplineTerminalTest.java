@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.terminal.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.jline.terminal.Attributes;
+import org.jline.terminal.Attributes.ControlChar;
+import org.jline.terminal.Attributes.InputFlag;
+import org.jline.terminal.Attributes.LocalFlag;
+import org.jline.terminal.Attributes.OutputFlag;
+import org.jline.terminal.Terminal.Signal;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LineDisciplineTerminalTest {
+
+    private static final String INPUT = "abc\rdef\ng\u0003hi\u001ajk\r\né\u0014l";
+
+    /**
+     * A terminal processing its input byte per byte.
+     */
+    static class PerByteTerminal extends LineDisciplineTerminal {
+        PerByteTerminal(ByteArrayOutputStream out) throws IOException {
+            super("test", "ansi", out, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        protected boolean doProcessInputByte(int c) throws IOException {
+            return super.doProcessInputByte(c);
+        }
+    }
+
+    private static String process(LineDisciplineTerminal terminal, Consumer<Attributes> setup,
+                                  List<Signal> signals) throws IOException {
+        for (Signal signal : Signal.values()) {
+            terminal.handle(signal, signals::add);
+        }
+        Attributes attr = terminal.getAttributes();
+        setup.accept(attr);
+        terminal.setAttributes(attr);
+        byte[] bytes = INPUT.getBytes(StandardCharsets.UTF_8);
+        terminal.processInputBytes(bytes);
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while (terminal.input().available() > 0 && (c = terminal.input().read()) >= 0) {
+            sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+    private static void assertSameProcessing(Consumer<Attributes> setup) throws IOException {
+        ByteArrayOutputStream bulkOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream perByteOut = new ByteArrayOutputStream();
+        List<Signal> bulkSignals = new ArrayList<>();
+        List<Signal> perByteSignals = new ArrayList<>();
+        String bulk = process(new LineDisciplineTerminal("test", "ansi", bulkOut, StandardCharsets.UTF_8),
+                setup, bulkSignals);
+        String perByte = process(new PerByteTerminal(perByteOut), setup, perByteSignals);
+        assertEquals(perByte, bulk);
+        assertEquals(perByteOut.toString("UTF-8"), bulkOut.toString("UTF-8"));
+        assertEquals(perByteSignals, bulkSignals);
+    }
+
+    @Test
+    public void testBulkInput() throws IOException {
+        assertSameProcessing(attr -> { });
+        assertSameProcessing(attr -> attr.setLocalFlag(LocalFlag.ISIG, false));
+        assertSameProcessing(attr -> attr.setLocalFlag(LocalFlag.ECHO, false));
+        assertSameProcessing(attr -> attr.setInputFlag(InputFlag.IGNCR, true));
+        assertSameProcessing(attr -> {
+            attr.setInputFlag(InputFlag.ICRNL, false);
+            attr.setInputFlag(InputFlag.INLCR, true);
+        });
+        assertSameProcessing(attr -> attr.setOutputFlag(OutputFlag.ONLCR, false));
+        assertSameProcessing(attr -> attr.setControlChar(ControlChar.VSTATUS, 'h'));
+    }
+
+    @Test
+    public void testBulkInputSignals() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LineDisciplineTerminal terminal = new LineDisciplineTerminal("test", "ansi", out, StandardCharsets.UTF_8);
+        List<Signal> signals = new ArrayList<>();
+        String input = process(terminal, attr -> { }, signals);
+        assertEquals("abc\ndef\nghijk\n\nÃ©\u0014l", input);
+        assertEquals("abc\r\ndef\r\nghijk\r\n\r\né\u0014l", out.toString("UTF-8"));
+        List<Signal> expected = new ArrayList<>();
+        expected.add(Signal.INT);
+        expected.add(Signal.TSTP);
+        expected.add(Signal.INFO);
+        assertEquals(expected, signals);
+    }
+
+    @Test
+    public void testBulkOutput() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LineDisciplineTerminal terminal = new LineDisciplineTerminal("test", "ansi", out, StandardCharsets.UTF_8);
+        terminal.output().write("foo\nbar\n\nbaz".getBytes(StandardCharsets.UTF_8));
+        assertEquals("foo\r\nbar\r\n\r\nbaz", out.toString("UTF-8"));
+
+        Attributes attr = terminal.getAttributes();
+        attr.setOutputFlag(OutputFlag.OPOST, false);
+        terminal.setAttributes(attr);
+        out.reset();
+        terminal.output().write("foo\nbar".getBytes(StandardCharsets.UTF_8));
+        assertEquals("foo\nbar", out.toString("UTF-8"));
+    }
+
+}
@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 
 public class AttributedStringTest {
 
@@ -145,4 +146,13 @@ public class AttributedStringTest {
         assertEquals("👍", messageAgain.toString());
     }
 
+    @Test
+    public void testHashCode() {
+        AttributedString s1 = new AttributedString("foo bar");
+        AttributedString s2 = new AttributedStringBuilder().append("bar").toAttributedString();
+        assertEquals(s2, s1.substring(4, 7));
+        assertEquals(s2.hashCode(), s1.substring(4, 7).hashCode());
+        assertNotEquals(s2.hashCode(), new AttributedString("bar", AttributedStyle.BOLD).hashCode());
+    }
+
 }
@@ -33,4 +33,86 @@ public class CursesTest {
                 Curses.tputs("\\E]4;%p1%d;rgb\\:%p2%{255}%*%{1000}%/%2.2X/%p3%{255}%*%{1000}%/%2.2X/%p4%{255}%*%{1000}%/%2.2X\\E\\\\", 123, 0xfa, 0x00, 0x89));
     }
 
+    @Test
+    public void testConditionals() throws Exception {
+        String sgr = "\\E[0%?%p6%t;1%;%?%p2%t;4%;m%?%p9%t\\016%e\\017%;";
+        assertEquals("\033[0;1m\017", Curses.tputs(sgr, 0, 0, 0, 0, 0, 1, 0, 0, 0));
+        assertEquals("\033[0;4m\016", Curses.tputs(sgr, 0, 1, 0, 0, 0, 0, 0, 0, 1));
+        // else-if chains
+        String cap = "%?%p1%{1}%=%tone%e%p1%{2}%=%ttwo%eother%;";
+        assertEquals("one", Curses.tputs(cap, 1));
+        assertEquals("two", Curses.tputs(cap, 2));
+        assertEquals("other", Curses.tputs(cap, 3));
+    }
+
+    @Test
+    public void testProgram() throws Exception {
+        Curses.Program program = Curses.compile("\\E[%i%p1%d;%p2%dH");
+        Object[] params = { 4, 9 };
+        StringWriter sw = new StringWriter();
+        program.tputs(sw, params);
+        program.tputs(sw, params);
+        // parameters are not modified by %i
+        assertEquals("\033[5;10H\033[5;10H", sw.toString());
+        assertEquals(4, params[0]);
+        assertEquals("\033[1;1H", program.tputs(0, 0));
+    }
+
+    @Test
+    public void testStringsAndVariables() throws Exception {
+        assertEquals("[abc:3]", Curses.tputs("[%p1%s:%p1%l%d]", "abc"));
+        assertEquals("[ ab]", Curses.tputs("[%p1%3.2s]", "abcd"));
+        assertEquals("7", Curses.tputs("%p1%Pa%p2%Pb%ga%gb%+%d", 3, 4));
+        assertEquals("A", Curses.tputs("%'A'%c"));
+        assertEquals("-42", Curses.tputs("%p1%d", -42));
+        assertEquals("0", Curses.tputs("%p1%{0}%/%d", 5));
+    }
+
+    @Test
+    public void testVariables() throws Exception {
+        assertEquals("[abc]", Curses.tputs("%p1%Pa[%ga%s]", "abc"));
+        // dynamic variables only live for one evaluation
+        assertEquals("0", Curses.tputs("%ga%d"));
+
+        // static variables are kept in the given store
+        Curses.Variables vars1 = new Curses.Variables();
+        Curses.Variables vars2 = new Curses.Variables();
+        Curses.Program set = Curses.compile("%p1%PA%p2%PB");
+        Curses.Program get = Curses.compile("%gA%s:%gB%d");
+        StringWriter sw = new StringWriter();
+        set.tputs(sw, vars1, "foo", 3);
+        get.tputs(sw, vars1);
+        sw.append('|');
+        get.tputs(sw, vars2);
+        assertEquals("foo:3|0:0", sw.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalid() throws Exception {
+        Curses.compile("%t");
+    }
+
+    @Test
+    public void testConcurrentEvaluation() throws Exception {
+        Curses.Program program = Curses.compile("%p1%Pa%ga%ga%*%d");
+        Thread[] threads = new Thread[4];
+        boolean[] failed = new boolean[1];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    int v = id * 10000 + i;
+                    if (!Integer.toString(v * v).equals(program.tputs(v))) {
+                        failed[0] = true;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(false, failed[0]);
+    }
+
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.jline.terminal.Size;
+import org.jline.terminal.impl.ExternalTerminal;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DisplayTest {
+
+    private ByteArrayOutputStream out;
+    private ExternalTerminal terminal;
+
+    @Before
+    public void setUp() throws IOException {
+        out = new ByteArrayOutputStream();
+        terminal = new ExternalTerminal("test", "xterm-256color",
+                new ByteArrayInputStream(new byte[0]), out, StandardCharsets.UTF_8);
+        terminal.setSize(new Size(20, 5));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        terminal.close();
+    }
+
+    private static List<AttributedString> lines(String... strings) {
+        List<AttributedString> lines = new ArrayList<>();
+        for (String s : strings) {
+            lines.add(new AttributedString(s));
+        }
+        return lines;
+    }
+
+    private String output() {
+        String s = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        out.reset();
+        return s;
+    }
+
+    private Display display() {
+        Display display = new Display(terminal, true);
+        display.resize(5, 20);
+        return display;
+    }
+
+    @Test
+    public void testUnchangedLines() {
+        Display display = display();
+        display.update(lines("header", "line 1", "line 2", "line 3", "footer"), 0);
+        assertTrue(output().contains("line 2"));
+        display.update(lines("header", "line 1", "line 2", "line 3", "footer"), 0);
+        assertEquals("", output());
+        display.update(lines("header", "line 1", "line X", "line 3", "footer"), 0);
+        String s = output();
+        assertTrue(s.contains("X"));
+        assertFalse(s.contains("line"));
+    }
+
+    @Test
+    public void testDirtyRows() {
+        Display display = display();
+        display.update(lines("header", "line 1", "line 2", "line 3", "footer"), 0);
+        output();
+
+        BitSet dirty = new BitSet();
+        dirty.set(2);
+        display.update(lines("header", "line 1", "line X", "line Y", "footer"), 0, true, dirty);
+        String s = output();
+        assertTrue(s.contains("X"));
+        // row 3 has not been marked as dirty, so it is not redrawn
+        assertFalse(s.contains("Y"));
+
+        // rows that were not displayed yet are always drawn
+        display.update(lines("header", "line 1", "line X", "line 3", "footer", "more"), 0, true, new BitSet());
+        assertTrue(output().contains("more"));
+    }
+
+    @Test
+    public void testDirtyRowsOutput() {
+        Display full = display();
+        full.update(lines("a", "b", "c", "d", "e"), 0);
+        output();
+        full.update(lines("a", "b", "changed", "d", "e"), 2 * 21 + 3);
+        String expected = output();
+
+        Display partial = display();
+        partial.update(lines("a", "b", "c", "d", "e"), 0);
+        output();
+        BitSet dirty = new BitSet();
+        dirty.set(2);
+        partial.update(lines("a", "b", "changed", "d", "e"), 2 * 21 + 3, true, dirty);
+        assertEquals(expected, output());
+    }
+
+    @Test
+    public void testResizeComparesAll() {
+        Display full = display();
+        full.update(lines("abc", "def"), 0);
+        full.resize(5, 2);
+        output();
+        full.update(lines("ab", "c", "de", "f"), 0);
+        String expected = output();
+
+        Display partial = display();
+        partial.update(lines("abc", "def"), 0);
+        partial.resize(5, 2);
+        output();
+        // the lines have been split again, so the dirty rows are ignored
+        partial.update(lines("ab", "c", "de", "f"), 0, true, new BitSet());
+        assertEquals(expected, output());
+    }
+
+}
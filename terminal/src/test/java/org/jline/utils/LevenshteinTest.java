@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.utils;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LevenshteinTest {
+
+    @Test
+    public void testDistance() {
+        assertEquals(0, Levenshtein.distance("abc", "abc"));
+        assertEquals(1, Levenshtein.distance("abc", "acb"));
+        assertEquals(1, Levenshtein.distance("abc", "ab"));
+        assertEquals(2, Levenshtein.distance("ca", "abc"));
+        assertEquals(3, Levenshtein.distance("", "abc"));
+    }
+
+    @Test
+    public void testBoundedDistance() {
+        assertEquals(1, Levenshtein.distance("abc", "acb", 1));
+        assertEquals(2, Levenshtein.distance("ca", "abc", 2));
+        assertTrue(Levenshtein.distance("ca", "abc", 1) > 1);
+        assertTrue(Levenshtein.distance("a", "abcdef", 2) > 2);
+        assertTrue(Levenshtein.distance("abcdef", "fedcba", 3) > 3);
+    }
+
+    @Test
+    public void testBoundedDistanceRandom() {
+        Random random = new Random(0);
+        for (int i = 0; i < 20000; i++) {
+            String s = word(random);
+            String t = word(random);
+            int d = Levenshtein.distance(s, t);
+            for (int max = 0; max < 5; max++) {
+                int b = Levenshtein.distance(s, t, max);
+                if (d <= max) {
+                    assertEquals(s + "/" + t, d, b);
+                } else {
+                    assertTrue(s + "/" + t, b > max);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBoundedDistanceLongWords() {
+        Random random = new Random(0);
+        for (int i = 0; i < 2000; i++) {
+            String s = word(random, 40);
+            String t = random.nextBoolean() ? word(random, 40) : typo(random, s);
+            int d = Levenshtein.distance(s, t);
+            for (int max = 0; max < 8; max++) {
+                int b = Levenshtein.distance(s, t, max);
+                if (d <= max) {
+                    assertEquals(s + "/" + t, d, b);
+                } else {
+                    assertTrue(s + "/" + t, b > max);
+                }
+            }
+        }
+    }
+
+    private static String typo(Random random, String s) {
+        StringBuilder sb = new StringBuilder(s);
+        for (int i = random.nextInt(5); i > 0 && sb.length() > 1; i--) {
+            int k = random.nextInt(sb.length() - 1);
+            switch (random.nextInt(3)) {
+                case 0:
+                    sb.deleteCharAt(k);
+                    break;
+                case 1:
+                    sb.insert(k, (char) ('a' + random.nextInt(3)));
+                    break;
+                default:
+                    char c = sb.charAt(k);
+                    sb.setCharAt(k, sb.charAt(k + 1));
+                    sb.setCharAt(k + 1, c);
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String word(Random random) {
+        return word(random, 8);
+    }
+
+    private static String word(Random random, int bound) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = random.nextInt(bound); i > 0; i--) {
+            sb.append((char) ('a' + random.nextInt(3)));
+        }
+        return sb.toString();
+    }
+
+}
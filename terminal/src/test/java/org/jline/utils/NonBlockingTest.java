@@ -3,10 +3,15 @@ package org.jline.utils;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InterruptedIOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -107,4 +112,76 @@ public class NonBlockingTest {
         }
         assertEquals(NonBlockingInputStream.READ_EXPIRED, is.read(100));
     }
+
+    @Test
+    public void testNonBlockingStreamImplReadsChunks() throws IOException {
+        int[] reads = new int[1];
+        PipedInputStream pis = new PipedInputStream() {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) throws IOException {
+                reads[0]++;
+                return super.read(b, off, len);
+            }
+        };
+        PipedOutputStream pos = new PipedOutputStream(pis);
+        NonBlockingInputStream is = NonBlocking.nonBlocking("name", pis);
+
+        pos.write("abcdef".getBytes(StandardCharsets.UTF_8));
+        pos.flush();
+        assertEquals('a', is.peek(100));
+        assertEquals('a', is.read(100));
+        assertEquals('b', is.read(100));
+        assertEquals(4, is.available());
+        // the remaining bytes are returned without waiting for a full buffer
+        byte[] buf = new byte[16];
+        assertEquals(3, is.read(buf, 0, 3));
+        assertArrayEquals("cde".getBytes(StandardCharsets.UTF_8), Arrays.copyOf(buf, 3));
+        assertEquals(1, is.readBuffered(buf));
+        assertEquals('f', buf[0]);
+        // all the bytes have been read at once
+        assertEquals(1, reads[0]);
+
+        assertEquals(NonBlockingInputStream.READ_EXPIRED, is.read(100));
+        pos.write('g');
+        pos.flush();
+        pos.close();
+        assertEquals('g', is.read(100));
+        assertEquals(NonBlockingInputStream.EOF, is.peek(100));
+        assertEquals(NonBlockingInputStream.EOF, is.read(100));
+    }
+
+    @Test
+    public void testNonBlockingStreamImplException() throws IOException {
+        InputStream in = new InputStream() {
+            int call = 0;
+            @Override
+            public int read() throws IOException {
+                throw new UnsupportedOperationException();
+            }
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (call++ == 0) {
+                    b[off] = 'a';
+                    return 1;
+                }
+                throw new IOException("broken");
+            }
+        };
+        NonBlockingInputStream is = NonBlocking.nonBlocking("name", in);
+        assertEquals('a', is.read(100));
+        for (int i = 0; i < 2; i++) {
+            try {
+                is.peek(100);
+                fail("Expected an IOException");
+            } catch (IOException e) {
+                assertEquals("broken", e.getMessage());
+            }
+        }
+        try {
+            is.read(100);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertEquals("broken", e.getMessage());
+        }
+    }
 }
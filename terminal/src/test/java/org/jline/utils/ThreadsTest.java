@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2002-2020, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.utils;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+
+import org.jline.terminal.TerminalBuilder;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ThreadsTest {
+
+    public static class CountingThreadFactory implements ThreadFactory {
+        static final List<Thread> threads = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            threads.add(thread);
+            return thread;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        TerminalBuilder.setThreadFactory(null);
+        CountingThreadFactory.threads.clear();
+    }
+
+    @Test
+    public void testThreadFactory() throws IOException {
+        TerminalBuilder.setThreadFactory(new CountingThreadFactory());
+        NonBlockingReader reader = NonBlocking.nonBlocking("test", new StringReader("a"));
+        assertEquals('a', reader.read(1000));
+        reader.close();
+
+        assertEquals(1, CountingThreadFactory.threads.size());
+        Thread thread = CountingThreadFactory.threads.get(0);
+        assertEquals("test non blocking reader thread", thread.getName());
+        assertTrue(thread.isDaemon());
+    }
+
+    @Test
+    public void testThreadFactoryProperty() {
+        ThreadFactory factory = Threads.createThreadFactory(CountingThreadFactory.class.getName());
+        assertEquals(CountingThreadFactory.class, factory.getClass());
+
+        // an invalid factory falls back to the default one
+        factory = Threads.createThreadFactory("org.jline.utils.MissingThreadFactory");
+        assertNotNull(factory.newThread(() -> { }));
+    }
+
+}